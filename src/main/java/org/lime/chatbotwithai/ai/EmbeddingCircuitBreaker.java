@@ -0,0 +1,203 @@
+package org.lime.chatbotwithai.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Guards every call to the {@link org.springframework.ai.embedding.EmbeddingModel}. After {@code failure-threshold}
+ * consecutive failed or slow calls (slower than {@code slow-call}) the breaker opens and calls fail immediately for
+ * {@code open-duration}; then a single trial call is let through, which closes it again on success.
+ * <p>
+ * Request paths use {@link #withinBudget}, which runs the embedding-dependent work on a small pool and gives up
+ * after the per-request {@code budget}, so a slow Ollama costs a request at most the budget. Work that overran keeps
+ * running and still stores its vectors, so the next request finds them. At most {@code queue} tasks wait for a
+ * thread; past that a request falls back at once instead of piling up work that would only run after its caller
+ * gave up. Calls, fallbacks by reason and budget overruns (rejections included) are exported as {@code catalog.embeddings.budget.*} per operation; the breaker state as
+ * {@code catalog.embeddings.breaker.state} (0 closed, 1 half-open, 2 open).
+ */
+@Component
+public class EmbeddingCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingCircuitBreaker.class);
+
+    enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private final MeterRegistry registry;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final long slowCallNanos;
+    private final Duration budget;
+    private final ThreadPoolExecutor pool;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public EmbeddingCircuitBreaker(MeterRegistry registry,
+                                   @Value("${catalog.embeddings.breaker.failure-threshold:5}") int failureThreshold,
+                                   @Value("${catalog.embeddings.breaker.open-duration:30s}") Duration openDuration,
+                                   @Value("${catalog.embeddings.breaker.slow-call:2s}") Duration slowCall,
+                                   @Value("${catalog.embeddings.budget.timeout:800ms}") Duration budget,
+                                   @Value("${catalog.embeddings.budget.threads:8}") int threads,
+                                   @Value("${catalog.embeddings.budget.queue:16}") int queue) {
+        if (failureThreshold < 1 || threads < 1 || queue < 1 || budget.isNegative() || budget.isZero()) {
+            throw new IllegalArgumentException("Invalid catalog.embeddings breaker or budget settings");
+        }
+        this.registry = registry;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.slowCallNanos = slowCall.toNanos();
+        this.budget = budget;
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queue),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "embedding-budget-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Gauge.builder("catalog.embeddings.breaker.state", this, breaker -> breaker.state().ordinal()).register(registry);
+    }
+
+    /**
+     * Runs one embedding call through the breaker. Throws {@link IllegalStateException} without calling when the
+     * breaker is open.
+     */
+    public <T> T call(Supplier<T> call) {
+        if (!tryAcquire()) {
+            throw new IllegalStateException("Embedding service unavailable: circuit breaker open");
+        }
+        long started = System.nanoTime();
+        try {
+            T result = call.get();
+            record(System.nanoTime() - started <= slowCallNanos);
+            return result;
+        } catch (RuntimeException | Error e) {
+            record(false);
+            throw e;
+        }
+    }
+
+    /**
+     * The result of {@code work} if it completes within the budget, otherwise empty: when the breaker is open, when
+     * the budget runs out or when the work fails. The caller then falls back to a local strategy.
+     */
+    public <T> Optional<T> withinBudget(String operation, Supplier<T> work) {
+        counter("catalog.embeddings.budget.calls", operation, null).increment();
+        if (state() == State.OPEN) {
+            return fallback(operation, "breaker_open");
+        }
+        Future<T> future;
+        try {
+            future = pool.submit(work::get);
+        } catch (RejectedExecutionException e) {
+            counter("catalog.embeddings.budget.overruns", operation, null).increment();
+            return fallback(operation, "rejected");
+        }
+        try {
+            return Optional.ofNullable(future.get(budget.toNanos(), TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            // Not interrupted: a running batch still completes and stores its vectors; a queued one is dropped and
+            // frees its queue slot.
+            future.cancel(false);
+            pool.remove((Runnable) future);
+            counter("catalog.embeddings.budget.overruns", operation, null).increment();
+            return fallback(operation, "timeout");
+        } catch (ExecutionException e) {
+            log.debug("Embedding {} failed: {}", operation, e.getCause().toString());
+            return fallback(operation, "error");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            return fallback(operation, "interrupted");
+        }
+    }
+
+    /**
+     * How long {@link #withinBudget} waits for its work before falling back.
+     */
+    public Duration budget() {
+        return budget;
+    }
+
+    synchronized State state() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        return state;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private synchronized boolean tryAcquire() {
+        return switch (state()) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (trialInFlight) {
+                    yield false;
+                }
+                trialInFlight = true;
+                yield true;
+            }
+        };
+    }
+
+    private synchronized void record(boolean success) {
+        if (success) {
+            if (state != State.CLOSED) {
+                log.info("Embedding circuit breaker closed");
+            }
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+            trialInFlight = false;
+            return;
+        }
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            log.warn("Embedding circuit breaker opened after {} failed or slow calls", consecutiveFailures);
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            trialInFlight = false;
+        }
+    }
+
+    private <T> Optional<T> fallback(String operation, String reason) {
+        counter("catalog.embeddings.budget.fallbacks", operation, reason).increment();
+        return Optional.empty();
+    }
+
+    private Counter counter(String name, String operation, String reason) {
+        Counter.Builder builder = Counter.builder(name).tag("operation", operation);
+        if (reason != null) {
+            builder.tag("reason", reason);
+        }
+        return builder.register(registry);
+    }
+}
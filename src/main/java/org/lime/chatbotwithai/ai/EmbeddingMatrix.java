@@ -0,0 +1,65 @@
+package org.lime.chatbotwithai.ai;
+
+/**
+ * Unit-normalized embeddings packed row-major into one float array, so scoring a query walks memory
+ * sequentially instead of chasing one heap array per product.
+ */
+final class EmbeddingMatrix {
+
+    private final int rows;
+    private final int dimension;
+    private final float[] data;
+
+    EmbeddingMatrix(int rows, int dimension) {
+        this.rows = rows;
+        this.dimension = dimension;
+        this.data = new float[rows * dimension];
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    float[] data() {
+        return data;
+    }
+
+    int offset(int row) {
+        return row * dimension;
+    }
+
+    void setRow(int row, float[] unitVector) {
+        if (unitVector.length != dimension) {
+            throw new IllegalStateException("Embedding dimension " + unitVector.length + " does not match " + dimension);
+        }
+        System.arraycopy(unitVector, 0, data, offset(row), dimension);
+    }
+
+    float[] scores(float[] unitQuery, VectorKernel kernel) {
+        float[] out = new float[rows];
+        kernel.dotAll(unitQuery, data, rows, out);
+        return out;
+    }
+
+    /**
+     * Scales {@code vector} to unit length in place and returns it; a zero vector is left as is.
+     */
+    static float[] normalize(float[] vector) {
+        double sum = 0;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        if (sum == 0) {
+            return vector;
+        }
+        float scale = (float) (1 / Math.sqrt(sum));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+}
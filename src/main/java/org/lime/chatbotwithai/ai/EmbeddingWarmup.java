@@ -0,0 +1,225 @@
+package org.lime.chatbotwithai.ai;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.lime.chatbotwithai.product.CatalogSnapshot;
+import org.lime.chatbotwithai.product.CatalogSnapshotPublishedEvent;
+import org.lime.chatbotwithai.product.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embeds the catalog in the background after every snapshot swap, so live requests find their candidates already
+ * in the {@link ProductEmbeddingStore}. Only the first {@code max-products} rows in recommendation (price) order
+ * are warmed when a cap is set. Batches run on a small fixed pool; a failed batch (typically Ollama not reachable
+ * yet) stops the run and the whole pass is retried after {@code retry-delay}.
+ * <p>
+ * As the {@code embeddingWarmup} health contributor it reports OUT_OF_SERVICE until {@code coverage} of the target
+ * products have a stored vector; include it in the readiness group so cold pods get no traffic. After
+ * {@code max-wait} it reports UP regardless, so an embedding outage degrades latency instead of taking the pod out
+ * of rotation forever. Progress is exported as {@code catalog.embeddings.warmup.coverage} and
+ * {@code catalog.embeddings.warmup.embedded}.
+ */
+@Component
+public class EmbeddingWarmup implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingWarmup.class);
+
+    private enum State {
+        IDLE,
+        RUNNING,
+        DONE,
+        RETRY_PENDING
+    }
+
+    private final SemanticRerankService reranker;
+    private final ProductEmbeddingStore embeddingStore;
+    private final boolean enabled;
+    private final int maxProducts;
+    private final int batchSize;
+    private final double requiredCoverage;
+    private final Duration retryDelay;
+    private final Duration maxWait;
+    private final Instant startedAt = Instant.now();
+    private final ScheduledExecutorService coordinator;
+    private final ExecutorService workers;
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicInteger target = new AtomicInteger();
+    private final AtomicInteger covered = new AtomicInteger();
+    private final AtomicLong embedded = new AtomicLong();
+    private volatile State state = State.IDLE;
+    private volatile String lastError;
+
+    public EmbeddingWarmup(SemanticRerankService reranker,
+                           ProductEmbeddingStore embeddingStore,
+                           MeterRegistry registry,
+                           @Value("${catalog.embeddings.warmup.enabled:true}") boolean enabled,
+                           @Value("${catalog.embeddings.warmup.threads:2}") int threads,
+                           @Value("${catalog.embeddings.warmup.max-products:0}") int maxProducts,
+                           @Value("${catalog.embeddings.batch-size:32}") int batchSize,
+                           @Value("${catalog.embeddings.warmup.coverage:0.95}") double requiredCoverage,
+                           @Value("${catalog.embeddings.warmup.retry-delay:30s}") Duration retryDelay,
+                           @Value("${catalog.embeddings.warmup.max-wait:5m}") Duration maxWait) {
+        if (threads < 1 || requiredCoverage < 0 || requiredCoverage > 1) {
+            throw new IllegalArgumentException("Invalid catalog.embeddings.warmup settings");
+        }
+        this.reranker = reranker;
+        this.embeddingStore = embeddingStore;
+        this.enabled = enabled;
+        this.maxProducts = maxProducts;
+        this.batchSize = Math.max(1, batchSize);
+        this.requiredCoverage = requiredCoverage;
+        this.retryDelay = retryDelay;
+        this.maxWait = maxWait;
+        this.coordinator = Executors.newSingleThreadScheduledExecutor(daemon("embedding-warmup"));
+        this.workers = Executors.newFixedThreadPool(threads, daemon("embedding-warmup-worker"));
+        Gauge.builder("catalog.embeddings.warmup.coverage", this, EmbeddingWarmup::coverage).register(registry);
+        Gauge.builder("catalog.embeddings.warmup.embedded", embedded, AtomicLong::get).register(registry);
+    }
+
+    @EventListener
+    public void onSnapshotPublished(CatalogSnapshotPublishedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        long run = generation.incrementAndGet();
+        coordinator.execute(() -> warm(event.current(), run));
+    }
+
+    /**
+     * Share of the warm-up target that has a vector for its current text; 1 when there is nothing to warm.
+     */
+    public double coverage() {
+        int total = target.get();
+        return total == 0 ? 1 : (double) covered.get() / total;
+    }
+
+    @Override
+    public Health health() {
+        double coverage = coverage();
+        Health.Builder health;
+        // IDLE: no snapshot has been looked at yet, so the coverage of 1 only means "nothing measured".
+        if (!enabled || (state != State.IDLE && coverage >= requiredCoverage)) {
+            health = Health.up();
+        } else if (Duration.between(startedAt, Instant.now()).compareTo(maxWait) > 0) {
+            health = Health.up().withDetail("reason", "max-wait elapsed before the coverage threshold");
+        } else {
+            health = Health.outOfService();
+        }
+        health.withDetail("state", state)
+                .withDetail("coverage", Math.round(coverage * 1000) / 1000.0)
+                .withDetail("required", requiredCoverage)
+                .withDetail("products", target.get());
+        if (lastError != null) {
+            health.withDetail("lastError", lastError);
+        }
+        return health.build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void warm(CatalogSnapshot snapshot, long run) {
+        if (run != generation.get()) {
+            return;
+        }
+        long started = System.nanoTime();
+        int limit = maxProducts > 0 ? maxProducts : snapshot.size();
+        List<Product> products = snapshot.index().select(null, 0, limit);
+        List<Product> missing = new ArrayList<>();
+        for (Product product : products) {
+            if (!reranker.hasEmbedding(product)) {
+                missing.add(product);
+            }
+        }
+        // Counters before state: RUNNING with the previous (or no) target would read as fully covered.
+        covered.set(0);
+        target.set(products.size());
+        covered.set(products.size() - missing.size());
+        state = State.RUNNING;
+        if (missing.isEmpty()) {
+            finish(run, snapshot, started);
+            return;
+        }
+        log.info("Embedding warm-up for catalog version {}: {} of {} products to embed",
+                snapshot.version(), missing.size(), products.size());
+
+        List<Future<?>> batches = new ArrayList<>();
+        for (int from = 0; from < missing.size(); from += batchSize) {
+            List<Product> batch = missing.subList(from, Math.min(from + batchSize, missing.size()));
+            batches.add(workers.submit(() -> {
+                if (run != generation.get() || state == State.RETRY_PENDING) {
+                    return;
+                }
+                try {
+                    int done = reranker.refreshEmbeddings(batch);
+                    embedded.addAndGet(done);
+                    covered.addAndGet(batch.size());
+                } catch (RuntimeException e) {
+                    // First failure parks the run; the remaining queued batches see the state and skip.
+                    state = State.RETRY_PENDING;
+                    lastError = e.getMessage();
+                }
+            }));
+        }
+        for (Future<?> batch : batches) {
+            try {
+                batch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                lastError = e.getMessage();
+            }
+        }
+        if (state == State.RETRY_PENDING) {
+            log.warn("Embedding warm-up for catalog version {} stopped at {}% coverage ({}); retrying in {}",
+                    snapshot.version(), Math.round(coverage() * 100), lastError, retryDelay);
+            coordinator.schedule(() -> warm(snapshot, run), retryDelay.toMillis(), TimeUnit.MILLISECONDS);
+            return;
+        }
+        finish(run, snapshot, started);
+    }
+
+    private void finish(long run, CatalogSnapshot snapshot, long started) {
+        if (run != generation.get()) {
+            return;
+        }
+        state = State.DONE;
+        lastError = null;
+        log.info("Embedding warm-up for catalog version {} done: {} products covered in {} ms ({} vectors stored)",
+                snapshot.version(), covered.get(), (System.nanoTime() - started) / 1_000_000, embeddingStore.size());
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,440 @@
+package org.lime.chatbotwithai.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
+
+/**
+ * Hierarchical navigable small world graph over unit-normalized vectors, scored by dot product (= cosine).
+ * <p>
+ * Vectors live in one growing row-major array; node {@code n} links to at most {@code m} neighbours per upper
+ * layer and {@code 2m} on layer 0, chosen with the diversity heuristic of Malkov &amp; Yashunin. Inserts are
+ * incremental. Deletes are tombstones: the node keeps routing searches but never appears in results, and
+ * re-inserting an id tombstones its previous node. Callers rebuild once {@link #deletedCount()} outgrows the live
+ * set. Writers take the write lock; any number of searches run concurrently under the read lock.
+ * <p>
+ * With {@code quantized} the graph keeps {@link Int8Quantizer int8} codes instead of floats, about a quarter of the
+ * heap; scores are then approximate and callers should rescore the hits with full-precision vectors.
+ */
+final class HnswIndex {
+
+    record Hit(long id, float score) {
+    }
+
+    private record Scored(int node, float score) {
+    }
+
+    private static final Comparator<Scored> BEST_FIRST = Comparator.comparingDouble(Scored::score).reversed();
+    private static final Comparator<Scored> WORST_FIRST = Comparator.comparingDouble(Scored::score);
+
+    private final int dimension;
+    private final int m;
+    private final int efConstruction;
+    private final double levelFactor;
+    private final Random random = new Random(42);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final boolean quantized;
+    private float[] vectors;
+    private byte[] codes;
+    private float[] scales;
+    private long[] ids;
+    // links[node][layer] = {count, neighbour...}
+    private int[][][] links;
+    private final BitSet deleted = new BitSet();
+    private final Map<Long, Integer> nodeById = new HashMap<>();
+    private int size;
+    private int entryPoint = -1;
+    private int topLayer = -1;
+
+    HnswIndex(int dimension, int m, int efConstruction) {
+        this(dimension, m, efConstruction, false);
+    }
+
+    HnswIndex(int dimension, int m, int efConstruction, boolean quantized) {
+        if (dimension < 1 || m < 2 || efConstruction < 1) {
+            throw new IllegalArgumentException("Invalid HNSW parameters");
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.levelFactor = 1 / Math.log(m);
+        this.quantized = quantized;
+        if (quantized) {
+            this.codes = new byte[16 * dimension];
+            this.scales = new float[16];
+        } else {
+            this.vectors = new float[16 * dimension];
+        }
+        this.ids = new long[16];
+        this.links = new int[16][][];
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    boolean quantized() {
+        return quantized;
+    }
+
+    /**
+     * Heap held by the stored vectors (links excluded).
+     */
+    long vectorBytes() {
+        lock.readLock().lock();
+        try {
+            return quantized ? (long) size * (dimension + Float.BYTES) : (long) size * dimension * Float.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Live (not deleted) vectors.
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return nodeById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return deleted.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void insert(long id, float[] unitVector) {
+        if (unitVector.length != dimension) {
+            throw new IllegalArgumentException("Vector dimension " + unitVector.length + " does not match " + dimension);
+        }
+        lock.writeLock().lock();
+        try {
+            Integer previous = nodeById.remove(id);
+            if (previous != null) {
+                deleted.set(previous);
+            }
+            int node = allocate(id, unitVector);
+            int layer = (int) (-Math.log(1 - random.nextDouble()) * levelFactor);
+            links[node] = new int[layer + 1][];
+            for (int l = 0; l <= layer; l++) {
+                links[node][l] = new int[maxLinks(l) + 1];
+            }
+            nodeById.put(id, node);
+            if (entryPoint < 0) {
+                entryPoint = node;
+                topLayer = layer;
+                return;
+            }
+            float[] query = unitVector;
+            int entry = entryPoint;
+            for (int l = topLayer; l > layer; l--) {
+                entry = greedy(query, entry, l);
+            }
+            List<Scored> entries = List.of(new Scored(entry, dot(query, entry)));
+            for (int l = Math.min(layer, topLayer); l >= 0; l--) {
+                PriorityQueue<Scored> found = searchLayer(query, entries, efConstruction, l, null);
+                List<Scored> candidates = drainBestFirst(found);
+                List<Scored> neighbours = selectNeighbours(candidates, m);
+                for (Scored neighbour : neighbours) {
+                    addLink(node, neighbour.node(), l);
+                    connectBack(neighbour.node(), node, l);
+                }
+                entries = candidates;
+            }
+            if (layer > topLayer) {
+                entryPoint = node;
+                topLayer = layer;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean delete(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodeById.remove(id);
+            if (node == null) {
+                return false;
+            }
+            deleted.set(node);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The {@code k} best live vectors accepted by {@code filter} (null accepts all). The filter is applied while
+     * walking layer 0, so rejected nodes still route the search but never take a result slot; a very selective
+     * filter therefore widens the walk towards a full scan instead of returning fewer than {@code k} hits.
+     */
+    List<Hit> search(float[] unitQuery, int k, int ef, LongPredicate filter) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return List.of();
+            }
+            int entry = entryPoint;
+            for (int l = topLayer; l > 0; l--) {
+                entry = greedy(unitQuery, entry, l);
+            }
+            PriorityQueue<Scored> found = searchLayer(unitQuery, List.of(new Scored(entry, dot(unitQuery, entry))),
+                    Math.max(ef, k), 0, filter == null ? node -> true : node -> filter.test(ids[node]));
+            List<Scored> best = drainBestFirst(found);
+            List<Hit> hits = new ArrayList<>(Math.min(k, best.size()));
+            for (int i = 0; i < best.size() && hits.size() < k; i++) {
+                hits.add(new Hit(ids[best.get(i).node()], best.get(i).score()));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Exact top-{@code k} by scanning every live vector; the reference for recall measurements.
+     */
+    List<Hit> exactSearch(float[] unitQuery, int k, LongPredicate filter) {
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Scored> best = new PriorityQueue<>(WORST_FIRST);
+            for (int node = 0; node < size; node++) {
+                if (deleted.get(node) || (filter != null && !filter.test(ids[node]))) {
+                    continue;
+                }
+                offer(best, new Scored(node, dot(unitQuery, node)), k);
+            }
+            List<Hit> hits = new ArrayList<>(best.size());
+            for (Scored scored : drainBestFirst(best)) {
+                hits.add(new Hit(ids[scored.node()], scored.score()));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Exact top-{@code k} among the given ids only, for filters selective enough that scoring their matches
+     * directly is cheaper than a filtered graph walk. Ids without a live vector are skipped.
+     */
+    List<Hit> exactSearch(float[] unitQuery, int k, Iterable<Long> candidateIds) {
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Scored> best = new PriorityQueue<>(WORST_FIRST);
+            for (Long id : candidateIds) {
+                Integer node = nodeById.get(id);
+                if (node != null) {
+                    offer(best, new Scored(node, dot(unitQuery, node)), k);
+                }
+            }
+            List<Hit> hits = new ArrayList<>(best.size());
+            for (Scored scored : drainBestFirst(best)) {
+                hits.add(new Hit(ids[scored.node()], scored.score()));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int allocate(long id, float[] vector) {
+        if (size == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            links = Arrays.copyOf(links, capacity);
+            if (quantized) {
+                codes = Arrays.copyOf(codes, capacity * dimension);
+                scales = Arrays.copyOf(scales, capacity);
+            } else {
+                vectors = Arrays.copyOf(vectors, capacity * dimension);
+            }
+        }
+        int node = size++;
+        ids[node] = id;
+        if (quantized) {
+            scales[node] = Int8Quantizer.quantize(vector, codes, node * dimension);
+        } else {
+            System.arraycopy(vector, 0, vectors, node * dimension, dimension);
+        }
+        return node;
+    }
+
+    private int maxLinks(int layer) {
+        return layer == 0 ? 2 * m : m;
+    }
+
+    private int greedy(float[] query, int entry, int layer) {
+        int current = entry;
+        float best = dot(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links[current][layer];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                float score = dot(query, neighbours[i]);
+                if (score > best) {
+                    best = score;
+                    current = neighbours[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first walk of one layer. Returns up to {@code ef} accepted, live nodes in a worst-first heap. Deleted
+     * and rejected nodes are expanded like any other but never enter the result heap.
+     */
+    private PriorityQueue<Scored> searchLayer(float[] query, List<Scored> entries, int ef, int layer,
+                                              IntPredicate accept) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Scored> candidates = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Scored> results = new PriorityQueue<>(WORST_FIRST);
+        for (Scored entry : entries) {
+            visited.set(entry.node());
+            candidates.add(entry);
+            if (eligible(entry.node(), accept)) {
+                offer(results, entry, ef);
+            }
+        }
+        while (!candidates.isEmpty()) {
+            Scored current = candidates.poll();
+            if (results.size() >= ef && current.score() < results.peek().score()) {
+                break;
+            }
+            int[] neighbours = links[current.node()][layer];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                Scored scored = new Scored(neighbour, dot(query, neighbour));
+                if (results.size() < ef || scored.score() > results.peek().score()) {
+                    candidates.add(scored);
+                    if (eligible(neighbour, accept)) {
+                        offer(results, scored, ef);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    // During construction (accept == null) tombstoned nodes stay eligible so new nodes still link into the graph.
+    private boolean eligible(int node, IntPredicate accept) {
+        return accept == null || (!deleted.get(node) && accept.test(node));
+    }
+
+    /**
+     * Keeps a candidate only if it is closer to the base than to every neighbour already kept, which spreads links
+     * across directions; then tops up with the best pruned candidates so well-connected nodes keep their degree.
+     */
+    private List<Scored> selectNeighbours(List<Scored> bestFirst, int limit) {
+        List<Scored> selected = new ArrayList<>(limit);
+        List<Scored> pruned = new ArrayList<>();
+        for (Scored candidate : bestFirst) {
+            if (selected.size() >= limit) {
+                break;
+            }
+            boolean diverse = true;
+            for (Scored kept : selected) {
+                if (dot(candidate.node(), kept.node()) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : pruned).add(candidate);
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < limit; i++) {
+            selected.add(pruned.get(i));
+        }
+        return selected;
+    }
+
+    private void addLink(int from, int to, int layer) {
+        int[] list = links[from][layer];
+        list[++list[0]] = to;
+    }
+
+    private void connectBack(int neighbour, int node, int layer) {
+        int[] list = links[neighbour][layer];
+        if (list[0] < list.length - 1) {
+            list[++list[0]] = node;
+            return;
+        }
+        List<Scored> candidates = new ArrayList<>(list[0] + 1);
+        candidates.add(new Scored(node, dot(neighbour, node)));
+        for (int i = 1; i <= list[0]; i++) {
+            candidates.add(new Scored(list[i], dot(neighbour, list[i])));
+        }
+        candidates.sort(BEST_FIRST);
+        List<Scored> kept = selectNeighbours(candidates, list.length - 1);
+        list[0] = 0;
+        for (Scored scored : kept) {
+            list[++list[0]] = scored.node();
+        }
+    }
+
+    private static void offer(PriorityQueue<Scored> worstFirst, Scored scored, int capacity) {
+        if (worstFirst.size() < capacity) {
+            worstFirst.add(scored);
+        } else if (scored.score() > worstFirst.peek().score()) {
+            worstFirst.poll();
+            worstFirst.add(scored);
+        }
+    }
+
+    private static List<Scored> drainBestFirst(PriorityQueue<Scored> worstFirst) {
+        Scored[] drained = new Scored[worstFirst.size()];
+        for (int i = drained.length - 1; i >= 0; i--) {
+            drained[i] = worstFirst.poll();
+        }
+        return Arrays.asList(drained);
+    }
+
+    private float dot(float[] query, int node) {
+        int base = node * dimension;
+        if (quantized) {
+            return Int8Quantizer.dot(query, codes, base, scales[node], dimension);
+        }
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += query[i] * vectors[base + i];
+        }
+        return sum;
+    }
+
+    private float dot(int a, int b) {
+        int baseA = a * dimension;
+        int baseB = b * dimension;
+        if (quantized) {
+            return Int8Quantizer.dot(codes, baseA, scales[a], codes, baseB, scales[b], dimension);
+        }
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += vectors[baseA + i] * vectors[baseB + i];
+        }
+        return sum;
+    }
+}
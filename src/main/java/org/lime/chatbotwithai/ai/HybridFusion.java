@@ -0,0 +1,124 @@
+package org.lime.chatbotwithai.ai;
+
+import org.lime.chatbotwithai.product.Bm25Index;
+import org.lime.chatbotwithai.product.Product;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Combines cosine scores with BM25 scores from the caller's {@link Bm25Index}, which must come from the same
+ * snapshot as the candidates so a concurrent catalog swap cannot score them against another version. {@code rrf} (reciprocal
+ * rank fusion) adds {@code 1 / (rrf-k + rank)} from each list and needs no score calibration; {@code weighted}
+ * adds the two scores after scaling each to [0, 1] over the candidates; {@code semantic} ignores the lexical side.
+ * Candidates without any query term get no lexical contribution, so a query with no lexical match ranks exactly
+ * as the cosine scores alone would.
+ */
+@Component
+public class HybridFusion {
+
+    public enum Mode {
+        SEMANTIC,
+        WEIGHTED,
+        RRF
+    }
+
+    private final Mode mode;
+    private final double semanticWeight;
+    private final double lexicalWeight;
+    private final int rrfK;
+
+    public HybridFusion(@Value("${catalog.hybrid.mode:rrf}") String mode,
+                        @Value("${catalog.hybrid.semantic-weight:0.7}") double semanticWeight,
+                        @Value("${catalog.hybrid.lexical-weight:0.3}") double lexicalWeight,
+                        @Value("${catalog.hybrid.rrf-k:60}") int rrfK) {
+        if (semanticWeight < 0 || lexicalWeight < 0 || rrfK < 1) {
+            throw new IllegalArgumentException("Invalid catalog.hybrid settings");
+        }
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        this.semanticWeight = semanticWeight;
+        this.lexicalWeight = lexicalWeight;
+        this.rrfK = rrfK;
+    }
+
+    public boolean lexicalEnabled() {
+        return mode != Mode.SEMANTIC;
+    }
+
+    /**
+     * BM25 score of {@code query} for each candidate, in order.
+     */
+    public float[] lexicalScores(Bm25Index lexical, String query, List<Product> candidates) {
+        return lexical.scores(query, candidates.stream().map(Product::getId).toList());
+    }
+
+    /**
+     * Fused score per candidate; higher is better. Both arrays are indexed like the candidate list.
+     */
+    public float[] fuse(float[] semantic, float[] lexical) {
+        return switch (mode) {
+            case SEMANTIC -> semantic;
+            case WEIGHTED -> weighted(semantic, lexical);
+            case RRF -> reciprocalRank(semantic, lexical);
+        };
+    }
+
+    private float[] weighted(float[] semantic, float[] lexical) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        float lexicalMax = 0;
+        for (int i = 0; i < semantic.length; i++) {
+            min = Math.min(min, semantic[i]);
+            max = Math.max(max, semantic[i]);
+            lexicalMax = Math.max(lexicalMax, lexical[i]);
+        }
+        float range = max - min;
+        float[] fused = new float[semantic.length];
+        for (int i = 0; i < fused.length; i++) {
+            double s = range > 0 ? (semantic[i] - min) / range : 1;
+            double l = lexicalMax > 0 ? lexical[i] / lexicalMax : 0;
+            fused[i] = (float) (semanticWeight * s + lexicalWeight * l);
+        }
+        return fused;
+    }
+
+    private float[] reciprocalRank(float[] semantic, float[] lexical) {
+        float[] fused = new float[semantic.length];
+        int[] bySemantic = descending(semantic, false);
+        for (int rank = 0; rank < bySemantic.length; rank++) {
+            fused[bySemantic[rank]] += 1f / (rrfK + rank + 1);
+        }
+        int[] byLexical = descending(lexical, true);
+        for (int rank = 0; rank < byLexical.length; rank++) {
+            fused[byLexical[rank]] += 1f / (rrfK + rank + 1);
+        }
+        return fused;
+    }
+
+    /**
+     * Indexes best first (only those scoring above zero when {@code positiveOnly}); ties keep the lower index first,
+     * the order a stable sort of the candidates would give. Each index is packed below an order-reversed copy of its
+     * score bits into one {@code long}, so a primitive sort ranks the list without boxing.
+     */
+    static int[] descending(float[] scores, boolean positiveOnly) {
+        long[] keys = new long[scores.length];
+        int n = 0;
+        for (int i = 0; i < scores.length; i++) {
+            if (positiveOnly && !(scores[i] > 0)) {
+                continue;
+            }
+            int bits = Float.floatToIntBits(scores[i]);
+            int ascending = bits ^ ((bits >> 31) & 0x7fffffff);
+            keys[n++] = ((long) ~ascending << 32) | i;
+        }
+        Arrays.sort(keys, 0, n);
+        int[] order = new int[n];
+        for (int rank = 0; rank < n; rank++) {
+            order[rank] = (int) keys[rank];
+        }
+        return order;
+    }
+}
@@ -0,0 +1,44 @@
+package org.lime.chatbotwithai.ai;
+
+/**
+ * Symmetric per-vector scalar quantization: each component becomes {@code round(x / scale)} in [-127, 127] with
+ * {@code scale = max|x| / 127}, so one byte per dimension plus one float per vector replaces four bytes per
+ * dimension. Dot products against codes are accurate to well under a percent for unit-length embeddings, enough to
+ * shortlist candidates that are then rescored in full precision.
+ */
+final class Int8Quantizer {
+
+    private Int8Quantizer() {
+    }
+
+    /**
+     * Writes the codes of {@code vector} to {@code target} at {@code offset} and returns the scale.
+     */
+    static float quantize(float[] vector, byte[] target, int offset) {
+        float maxAbs = 0;
+        for (float v : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(v));
+        }
+        float scale = maxAbs == 0 ? 1 : maxAbs / 127f;
+        for (int i = 0; i < vector.length; i++) {
+            target[offset + i] = (byte) Math.round(vector[i] / scale);
+        }
+        return scale;
+    }
+
+    static float dot(float[] query, byte[] codes, int offset, float scale, int dimension) {
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += query[i] * codes[offset + i];
+        }
+        return sum * scale;
+    }
+
+    static float dot(byte[] a, int offsetA, float scaleA, byte[] b, int offsetB, float scaleB, int dimension) {
+        int sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += a[offsetA + i] * b[offsetB + i];
+        }
+        return sum * scaleA * scaleB;
+    }
+}
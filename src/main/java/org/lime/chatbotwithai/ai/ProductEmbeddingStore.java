@@ -0,0 +1,314 @@
+package org.lime.chatbotwithai.ai;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Product embeddings persisted in one memory-mapped file, so a restart does not re-embed the catalog.
+ * <p>
+ * Layout (little-endian): a 16-byte header {@code magic, format, dimension, count} followed by fixed-width
+ * records {@code id:long, textHash:long, vector:float[dimension]}. Records are only appended; a product whose
+ * text changed gets a new record and the id→record index points at the latest one, and a removed product gets a
+ * tombstone record so it stays removed after a restart. {@code count} is written after the record itself, so a
+ * crash mid-write leaves at most an ignored tail. Only the index lives on the heap; vectors are read from the
+ * mapping on demand. Dead records (superseded, removed and tombstones) are compacted away at startup once they
+ * outnumber live ones.
+ */
+@Component
+public class ProductEmbeddingStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductEmbeddingStore.class);
+
+    private static final int MAGIC = 0x454d4231; // "EMB1"
+    private static final int FORMAT = 2; // 2: SemanticRerankService stores unit-normalized vectors
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = 16;
+    private static final int INITIAL_RECORDS = 256;
+    // Text hash of a tombstone record; a real text hashing to it would merely be embedded again after a restart.
+    private static final long TOMBSTONE = Long.MIN_VALUE;
+
+    private record Slot(int record, long textHash) {
+    }
+
+    private final Path path;
+    private final Map<Long, Slot> index = new ConcurrentHashMap<>();
+    private FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+    private volatile int dimension;
+    private int count;
+    private final List<Consumer<Set<Long>>> writeListeners = new CopyOnWriteArrayList<>();
+
+    public ProductEmbeddingStore(@Value("${catalog.embeddings.store-path:data/product-embeddings.bin}") Path path) {
+        this.path = path;
+        long started = System.nanoTime();
+        open();
+        if (count > 2 * index.size() && count > INITIAL_RECORDS) {
+            compact();
+        }
+        log.info("Embedding store {}: {} vectors (dimension {}) loaded in {} ms",
+                path, index.size(), dimension, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Registers {@code listener} to receive the product ids of every write (new vectors and tombstones), in write
+     * order. It runs on the writing thread while the store is locked, so it must only hand the ids off.
+     */
+    public void addWriteListener(Consumer<Set<Long>> listener) {
+        writeListeners.add(listener);
+    }
+
+    public boolean contains(long productId, long textHash) {
+        Slot slot = index.get(productId);
+        return slot != null && slot.textHash() == textHash;
+    }
+
+    /**
+     * The stored vector for {@code productId}, or null when there is none or it was computed from another text.
+     */
+    public float[] get(long productId, long textHash) {
+        Slot slot = index.get(productId);
+        if (slot == null || slot.textHash() != textHash) {
+            return null;
+        }
+        int dim = dimension;
+        float[] vector = new float[dim];
+        vectorView(buffer, slot.record(), dim).get(vector);
+        return vector;
+    }
+
+    /**
+     * Copies the stored vector into {@code target} at {@code offset} without allocating; false when there is no
+     * vector for that text.
+     */
+    public boolean copyInto(long productId, long textHash, float[] target, int offset) {
+        Slot slot = index.get(productId);
+        if (slot == null || slot.textHash() != textHash) {
+            return false;
+        }
+        int dim = dimension;
+        vectorView(buffer, slot.record(), dim).get(target, offset, dim);
+        return true;
+    }
+
+    public void put(long productId, long textHash, float[] vector) {
+        putAll(List.of(new Entry(productId, textHash, vector)));
+    }
+
+    public record Entry(long productId, long textHash, float[] vector) {
+    }
+
+    /**
+     * Appends the entries and flushes the mapping once. A vector of a different dimension than the stored ones
+     * means the embedding model changed: the store is cleared and restarts at the new dimension.
+     */
+    public synchronized void putAll(Collection<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        for (Entry entry : entries) {
+            if (dimension != entry.vector().length) {
+                if (dimension != 0) {
+                    log.warn("Embedding dimension changed from {} to {}, discarding {} stored vectors",
+                            dimension, entry.vector().length, index.size());
+                }
+                reset(entry.vector().length);
+            }
+            append(entry.productId(), entry.textHash(), entry.vector());
+            index.put(entry.productId(), new Slot(count - 1, entry.textHash()));
+        }
+        buffer.force();
+        notifyWritten(entries.stream().map(Entry::productId).collect(Collectors.toSet()));
+    }
+
+    /**
+     * Forgets every product not in {@code liveIds} and appends a tombstone for each, so they are not loaded again
+     * after a restart. Their records stay on disk until the next compaction.
+     */
+    public synchronized void retainAll(Set<Long> liveIds) {
+        List<Long> removed = index.keySet().stream().filter(id -> !liveIds.contains(id)).toList();
+        if (removed.isEmpty()) {
+            return;
+        }
+        float[] empty = new float[dimension];
+        for (Long id : removed) {
+            append(id, TOMBSTONE, empty);
+            index.remove(id);
+        }
+        buffer.force();
+        notifyWritten(Set.copyOf(removed));
+    }
+
+    private void notifyWritten(Set<Long> productIds) {
+        for (Consumer<Set<Long>> listener : writeListeners) {
+            listener.accept(productIds);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        try {
+            if (channel != null && channel.isOpen()) {
+                buffer.force();
+                channel.close();
+            }
+        } catch (IOException e) {
+            log.warn("Cannot close embedding store {}: {}", path, e.getMessage());
+        }
+    }
+
+    private void open() {
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                map(HEADER_BYTES);
+                writeHeader(0, 0);
+                return;
+            }
+            map(size);
+            int storedDimension = buffer.getInt(8);
+            int storedCount = buffer.getInt(12);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT || storedDimension < 0 || storedCount < 0
+                    || recordOffset(storedCount, storedDimension) > size) {
+                log.warn("Embedding store {} is not readable, starting empty", path);
+                writeHeader(0, 0);
+                return;
+            }
+            dimension = storedDimension;
+            count = storedCount;
+            for (int record = 0; record < count; record++) {
+                int offset = (int) recordOffset(record, dimension);
+                long textHash = buffer.getLong(offset + 8);
+                if (textHash == TOMBSTONE) {
+                    index.remove(buffer.getLong(offset));
+                } else {
+                    index.put(buffer.getLong(offset), new Slot(record, textHash));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open embedding store " + path, e);
+        }
+    }
+
+    private synchronized void compact() {
+        Path temp = path.resolveSibling(path.getFileName() + ".compact");
+        int recordBytes = RECORD_HEADER_BYTES + dimension * Float.BYTES;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC).putInt(FORMAT).putInt(dimension).putInt(index.size()).flip();
+            out.write(header);
+            for (Slot slot : index.values().stream().sorted(Comparator.comparingInt(Slot::record)).toList()) {
+                out.write(buffer.slice((int) recordOffset(slot.record(), dimension), recordBytes));
+            }
+            out.force(true);
+        } catch (IOException e) {
+            log.warn("Cannot compact embedding store {}: {}", path, e.getMessage());
+            return;
+        }
+        int live = index.size();
+        close();
+        index.clear();
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replace embedding store " + path, e);
+        }
+        open();
+        log.info("Compacted embedding store {} to {} live vectors", path, live);
+    }
+
+    // Writes one record after the last and publishes the new count; the caller updates the index.
+    private void append(long productId, long textHash, float[] vector) {
+        ensureCapacity(count + 1);
+        MappedByteBuffer target = buffer;
+        int offset = (int) recordOffset(count, dimension);
+        target.putLong(offset, productId);
+        target.putLong(offset + 8, textHash);
+        vectorView(target, count, dimension).put(vector);
+        target.putInt(12, count + 1);
+        count++;
+    }
+
+    private void reset(int newDimension) {
+        index.clear();
+        count = 0;
+        dimension = newDimension;
+        writeHeader(newDimension, 0);
+    }
+
+    private void writeHeader(int dim, int records) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT);
+        buffer.putInt(8, dim);
+        buffer.putInt(12, records);
+    }
+
+    private void ensureCapacity(int records) {
+        long required = recordOffset(records, dimension);
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        long grown = Math.max(required, recordOffset(Math.max(INITIAL_RECORDS, count * 2), dimension));
+        if (grown > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Embedding store " + path + " exceeds 2 GiB");
+        }
+        try {
+            map(grown);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot grow embedding store " + path, e);
+        }
+    }
+
+    private void map(long bytes) throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        buffer = mapped;
+    }
+
+    private static long recordOffset(int record, int dim) {
+        return HEADER_BYTES + (long) record * (RECORD_HEADER_BYTES + dim * Float.BYTES);
+    }
+
+    private static FloatBuffer vectorView(ByteBuffer source, int record, int dim) {
+        return source.slice((int) recordOffset(record, dim) + RECORD_HEADER_BYTES, dim * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asFloatBuffer();
+    }
+}
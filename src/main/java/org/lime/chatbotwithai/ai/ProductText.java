@@ -0,0 +1,45 @@
+package org.lime.chatbotwithai.ai;
+
+import org.lime.chatbotwithai.product.Product;
+
+/**
+ * The text a product is embedded from, and the hash that keys its stored vector.
+ */
+final class ProductText {
+
+    private ProductText() {
+    }
+
+    static String of(Product product) {
+        StringBuilder sb = new StringBuilder();
+        appendToken(sb, product.getBrand());
+        appendToken(sb, product.getModel());
+        appendToken(sb, product.getType());
+        appendToken(sb, product.getDescription());
+        return sb.toString().trim();
+    }
+
+    // 64-bit FNV-1a; only compared against the hash of the same product's previous text.
+    static long hash(String text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static void appendToken(StringBuilder sb, String token) {
+        if (token == null) {
+            return;
+        }
+        String trimmed = token.trim();
+        if (trimmed.isEmpty()) {
+            return;
+        }
+        if (sb.length() > 0) {
+            sb.append(' ');
+        }
+        sb.append(trimmed);
+    }
+}
@@ -0,0 +1,81 @@
+package org.lime.chatbotwithai.ai;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+
+/**
+ * Unit-normalized embeddings of user queries, keyed by the normalized query text. Chip texts and the synthetic
+ * queries built from filters recur constantly, so most reranks skip the embedding round trip. The cache is bounded
+ * by an approximate memory budget (vector plus key bytes) and entries expire after a period without use. Hit/miss
+ * counters are exported as {@code cache.gets{cache="embedding.query"}}.
+ */
+@Component
+public class QueryEmbeddingCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // A number with a single dot: 600.0 -> 600, 649.50 -> 649.5. See foldFraction for thousand groups.
+    private static final Pattern DECIMAL = Pattern.compile("(?<!\\d|\\d[.,])(\\d+)\\.(\\d+)(?!\\d|[.,]\\d)");
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final EmbeddingModel embeddingModel;
+    private final EmbeddingCircuitBreaker breaker;
+    private final Cache<String, float[]> cache;
+
+    public QueryEmbeddingCache(EmbeddingModel embeddingModel,
+                               EmbeddingCircuitBreaker breaker,
+                               MeterRegistry registry,
+                               @Value("${catalog.embeddings.query-cache.max-memory:16MB}") DataSize maxMemory,
+                               @Value("${catalog.embeddings.query-cache.ttl:6h}") Duration ttl) {
+        this.embeddingModel = embeddingModel;
+        this.breaker = breaker;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxMemory.toBytes())
+                .weigher((String key, float[] vector) -> ENTRY_OVERHEAD_BYTES + key.length() * 2 + vector.length * Float.BYTES)
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "embedding.query");
+    }
+
+    /**
+     * The unit-length embedding of {@code query}. The returned array is shared with the cache and must not be
+     * modified.
+     */
+    public float[] unitVector(String query) {
+        String key = normalize(query);
+        return cache.get(key, text -> EmbeddingMatrix.normalize(breaker.call(() -> embeddingModel.embed(text))));
+    }
+
+    /**
+     * Case, whitespace and trailing fraction zeros folded, so "Front load" and " front  LOAD " or "under 600.0" and
+     * "under 600" share one entry. The normalized text is also what gets embedded, so a hit returns exactly the
+     * vector a miss would have computed.
+     */
+    static String normalize(String query) {
+        String text = WHITESPACE.matcher(query == null ? "" : query.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+        return DECIMAL.matcher(text).replaceAll(QueryEmbeddingCache::foldFraction);
+    }
+
+    // "1.500" or "unter 1.000 €" may be a European thousands group rather than a fraction, so one to three digits
+    // followed by exactly three after the dot are left as they are.
+    private static String foldFraction(MatchResult number) {
+        String whole = number.group(1);
+        String fraction = number.group(2);
+        if (whole.length() <= 3 && fraction.length() == 3) {
+            return number.group();
+        }
+        fraction = fraction.replaceFirst("0+$", "");
+        return fraction.isEmpty() ? whole : whole + "." + fraction;
+    }
+}
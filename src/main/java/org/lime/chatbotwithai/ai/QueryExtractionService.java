@@ -1,24 +1,68 @@
 package org.lime.chatbotwithai.ai;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.lime.chatbotwithai.product.BrandCatalog;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Turns an utterance into a {@link QueryFilter} in two tiers. The deterministic heuristics run first and report
+ * which share of the utterance they explained; chip replies such as "≤ 600€", "Front load" or "8kg" are explained
+ * completely and never reach the LLM. Only utterances below {@code heuristic-confidence} go to the model, whose
+ * answer is then completed by the same heuristics.
+ * <p>
+ * LLM results are cached by normalized utterance text (see {@link QueryEmbeddingCache#normalize}) with a size and
+ * TTL bound, and concurrent requests for the same text wait on the one call already in flight. Callers always get
+ * their own copy of a cached filter. {@code extraction.requests{tier=heuristic|cache|llm}} counts the turns served
+ * by each tier, {@code extraction.coalesced} the requests that joined an in-flight call,
+ * {@code cache.gets{cache="extraction.filter"}} the cache hits, and {@code extraction.latency{tier}} times the
+ * parser and the LLM call separately.
+ */
 @Service
 public class QueryExtractionService {
 
+    /**
+     * What the deterministic parser made of an utterance: the filter it filled and the share of the utterance's
+     * words and numbers it accounted for, from 0 (nothing usable) to 1 (fully explained).
+     */
+    public record HeuristicParse(QueryFilter filter, double confidence) {
+    }
+
     private final ChatClient chatClient;
     private final ObjectMapper mapper;
     private final BrandCatalog brandCatalog;
+    private final double heuristicConfidence;
+    private final Cache<String, QueryFilter> llmResults;
+    // Normalized utterances whose LLM extraction is running; identical requests wait on its future.
+    private final Map<String, CompletableFuture<QueryFilter>> inFlight = new ConcurrentHashMap<>();
+    private final Counter heuristicTurns;
+    private final Counter cachedTurns;
+    private final Counter llmTurns;
+    private final Counter coalesced;
+    private final Timer heuristicLatency;
+    private final Timer llmLatency;
+    private static final Pattern TOKEN_PATTERN = Pattern.compile("\\d+[\\d,.]*|\\p{L}+");
     private static final Pattern NUMBER_PATTERN = Pattern.compile("(\\d+[\\d,.]*)");
     private static final Pattern DIMENSION_PATTERN = Pattern.compile("(\\d{2,})\\s*[x×]\\s*(\\d{2,})\\s*[x×]\\s*(\\d{2,})");
     private static final Pattern PRICE_RANGE_PATTERN = Pattern.compile("(\\d{2,})\\s*(?:-|to)\\s*(\\d{2,})(?!\\s*(?:cm|mm|kg|litre|liter))");
@@ -56,16 +100,106 @@ public class QueryExtractionService {
             "任何品牌", "别的品牌", "其他品牌", "还有别的品牌", "还有其他品牌",
             "品牌不限", "品牌无所谓", "没有品牌偏好", "换个品牌", "别的牌子", "其他牌子"
     };
+    // Words that carry no filter value of their own; they neither help nor hurt the parser's confidence.
+    private static final String[] FILLER_WORDS = {
+            "a", "an", "the", "i", "m", "im", "want", "need", "would", "like", "looking", "for", "with", "and", "or",
+            "please", "washing", "machine", "machines", "washer", "washers", "load", "loader", "one", "something",
+            "me", "show", "find", "my", "is", "it", "of", "in", "to", "that", "this", "ok", "okay", "yes",
+            "eur", "euro", "euros", "price", "cost", "kg", "kilo", "kilos", "cm", "x"
+    };
+    private static final List<String> TYPE_PHRASES = phrases(TOP_LOAD_HINTS_NORMALIZED, TOP_LOAD_HINTS_LOCALE,
+            FRONT_LOAD_HINTS_NORMALIZED, FRONT_LOAD_HINTS_LOCALE);
+    private static final List<String> PRICE_PHRASES = phrases(MAX_PRICE_HINTS_NORMALIZED, MAX_PRICE_HINTS_LOCALE,
+            MIN_PRICE_HINTS_NORMALIZED, MIN_PRICE_HINTS_LOCALE);
+    private static final List<String> RELAX_PHRASES = phrases(BRAND_RELAX_PHRASES);
+    private static final List<String> FILLER_PHRASES = phrases(FILLER_WORDS);
 
     public QueryExtractionService(ChatClient.Builder builder,
                                   ObjectMapper mapper,
-                                  BrandCatalog brandCatalog) {
+                                  BrandCatalog brandCatalog,
+                                  MeterRegistry registry,
+                                  @Value("${catalog.extraction.heuristic-confidence:0.8}") double heuristicConfidence,
+                                  @Value("${catalog.extraction.cache.maximum-size:10000}") long cacheSize,
+                                  @Value("${catalog.extraction.cache.ttl:1h}") Duration cacheTtl) {
         this.chatClient = builder.build();
         this.mapper = mapper;
         this.brandCatalog = brandCatalog;
+        this.heuristicConfidence = heuristicConfidence;
+        this.llmResults = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, llmResults, "extraction.filter");
+        this.heuristicTurns = Counter.builder("extraction.requests").tag("tier", "heuristic").register(registry);
+        this.cachedTurns = Counter.builder("extraction.requests").tag("tier", "cache").register(registry);
+        this.llmTurns = Counter.builder("extraction.requests").tag("tier", "llm").register(registry);
+        this.coalesced = Counter.builder("extraction.coalesced").register(registry);
+        this.heuristicLatency = Timer.builder("extraction.latency").tag("tier", "heuristic").register(registry);
+        this.llmLatency = Timer.builder("extraction.latency").tag("tier", "llm").register(registry);
     }
 
     public QueryFilter extract(String userQuery) {
+        HeuristicParse parsed = heuristicLatency.record(() -> parse(userQuery));
+        if (parsed.confidence() >= heuristicConfidence) {
+            heuristicTurns.increment();
+            return parsed.filter();
+        }
+        return extractWithCache(QueryEmbeddingCache.normalize(userQuery), userQuery).copy();
+    }
+
+    // The normalized text is only the cache key; the LLM and the heuristics see the utterance as typed, since
+    // folding case or number formats could change what it means.
+    private QueryFilter extractWithCache(String text, String utterance) {
+        QueryFilter cached = llmResults.getIfPresent(text);
+        if (cached != null) {
+            cachedTurns.increment();
+            return cached;
+        }
+        CompletableFuture<QueryFilter> mine = new CompletableFuture<>();
+        CompletableFuture<QueryFilter> theirs = inFlight.putIfAbsent(text, mine);
+        if (theirs != null) {
+            coalesced.increment();
+            cachedTurns.increment();
+            try {
+                return theirs.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            // A call that finished between the cache lookup and the claim has already stored its result.
+            cached = llmResults.getIfPresent(text);
+            if (cached != null) {
+                cachedTurns.increment();
+            } else {
+                llmTurns.increment();
+                cached = enrichWithHeuristics(llmLatency.record(() -> extractWithLlm(utterance)), utterance);
+                llmResults.put(text, cached);
+            }
+            mine.complete(cached);
+            return cached;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(text, mine);
+        }
+    }
+
+    /**
+     * The heuristics alone, with their confidence. An utterance that sets nothing (and does not relax the brand)
+     * has confidence 0 however short it is, so small talk and unknown wording still reach the LLM.
+     */
+    public HeuristicParse parse(String userQuery) {
+        if (userQuery == null || userQuery.isBlank()) {
+            return new HeuristicParse(QueryFilter.builder().build(), 0);
+        }
+        QueryFilter filter = enrichWithHeuristics(null, userQuery);
+        return new HeuristicParse(filter, confidence(filter, userQuery.toLowerCase(Locale.ROOT)));
+    }
+
+    private QueryFilter extractWithLlm(String userQuery) {
         var tmpl = new PromptTemplate("""
             You are an assistant that extracts **structured filters** for washing-machine shopping.
 
@@ -90,8 +224,82 @@ public class QueryExtractionService {
         var resp = chatClient.prompt(prompt)
                 .call()
                 .content();
-        QueryFilter filter = parseFilter(resp);
-        return enrichWithHeuristics(filter, userQuery);
+        return parseFilter(resp);
+    }
+
+    /**
+     * Share of the utterance's tokens that the parse accounts for: phrases of a slot count only when that slot
+     * was filled, numbers only when their value ended up in the filter, and filler words always.
+     */
+    private double confidence(QueryFilter filter, String lower) {
+        boolean anyValue = filter.getBrand() != null || filter.getType() != null
+                || filter.getMinPrice() != null || filter.getMaxPrice() != null
+                || filter.getMinCapacityKg() != null || filter.getMaxCapacityKg() != null
+                || filter.getWidthCm() != null || filter.getHeightCm() != null || filter.getDepthCm() != null;
+        if (!anyValue && !filter.isBrandFlexible()) {
+            return 0;
+        }
+        List<String> tokens = tokens(lower);
+        if (tokens.isEmpty()) {
+            return 0;
+        }
+        String remainder = " " + String.join(" ", tokens) + " ";
+        if (filter.getBrand() != null) {
+            remainder = removePhrases(remainder, phrases(brandCatalog.getBrands().toArray(String[]::new)));
+        }
+        if (filter.getType() != null) {
+            remainder = removePhrases(remainder, TYPE_PHRASES);
+        }
+        if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
+            remainder = removePhrases(remainder, PRICE_PHRASES);
+        }
+        if (filter.isBrandFlexible()) {
+            remainder = removePhrases(remainder, RELAX_PHRASES);
+        }
+        remainder = removePhrases(remainder, FILLER_PHRASES);
+        List<Double> values = Stream.of(filter.getMinPrice(), filter.getMaxPrice(), filter.getWidthCm(),
+                        filter.getHeightCm(), filter.getDepthCm(),
+                        filter.getMinCapacityKg() == null ? null : filter.getMinCapacityKg().doubleValue(),
+                        filter.getMaxCapacityKg() == null ? null : filter.getMaxCapacityKg().doubleValue())
+                .filter(value -> value != null)
+                .toList();
+        int unexplained = 0;
+        for (String token : remainder.trim().split(" ")) {
+            if (!token.isEmpty() && !values.contains(parseLocaleNumber(token))) {
+                unexplained++;
+            }
+        }
+        return 1 - (double) unexplained / tokens.size();
+    }
+
+    private static List<String> tokens(String lower) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN_PATTERN.matcher(lower);
+        while (matcher.find()) {
+            tokens.add(matcher.group());
+        }
+        return tokens;
+    }
+
+    // Hint lists tokenized like utterances, longest first so "front load" is removed before "front".
+    private static List<String> phrases(String[]... lists) {
+        return Stream.of(lists)
+                .flatMap(Stream::of)
+                .map(phrase -> String.join(" ", tokens(phrase.toLowerCase(Locale.ROOT))))
+                .filter(phrase -> !phrase.isEmpty())
+                .distinct()
+                .sorted(Comparator.comparingInt(String::length).reversed())
+                .toList();
+    }
+
+    private static String removePhrases(String padded, List<String> phrases) {
+        for (String phrase : phrases) {
+            String needle = " " + phrase + " ";
+            while (padded.contains(needle)) {
+                padded = padded.replace(needle, " ");
+            }
+        }
+        return padded;
     }
 
     private QueryFilter parseFilter(String response) {
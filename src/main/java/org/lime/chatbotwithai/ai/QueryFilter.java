@@ -2,7 +2,7 @@ package org.lime.chatbotwithai.ai;
 
 import lombok.*;
 
-@Data @NoArgsConstructor @AllArgsConstructor @Builder
+@Data @NoArgsConstructor @AllArgsConstructor @Builder(toBuilder = true)
 public class QueryFilter {
     private String brand;       // e.g. Bosch
     private String type;        // front|top
@@ -14,4 +14,9 @@ public class QueryFilter {
     private Double heightCm;
     private Double depthCm;
     private boolean brandFlexible; // true if user explicitly accepts any brand
+
+    // Every field is immutable, so a field-by-field copy shares no mutable state with the original.
+    public QueryFilter copy() {
+        return toBuilder().build();
+    }
 }
@@ -0,0 +1,36 @@
+package org.lime.chatbotwithai.ai;
+
+/**
+ * Plain Java kernel. Four independent float accumulators break the add dependency chain so the JIT can keep
+ * several multiply-adds in flight; it is the fallback whenever the Vector API is not available.
+ */
+final class ScalarVectorKernel implements VectorKernel {
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public void dot(float[] query, float[] matrix, int fromRow, int toRow, float[] out) {
+        int dim = query.length;
+        int unrolled = dim & ~3;
+        for (int row = fromRow, base = fromRow * dim; row < toRow; row++, base += dim) {
+            float s0 = 0;
+            float s1 = 0;
+            float s2 = 0;
+            float s3 = 0;
+            int i = 0;
+            for (; i < unrolled; i += 4) {
+                s0 += query[i] * matrix[base + i];
+                s1 += query[i + 1] * matrix[base + i + 1];
+                s2 += query[i + 2] * matrix[base + i + 2];
+                s3 += query[i + 3] * matrix[base + i + 3];
+            }
+            for (; i < dim; i++) {
+                s0 += query[i] * matrix[base + i];
+            }
+            out[row] = (s0 + s1) + (s2 + s3);
+        }
+    }
+}
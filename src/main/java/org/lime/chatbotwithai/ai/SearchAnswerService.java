@@ -1,5 +1,6 @@
 package org.lime.chatbotwithai.ai;
 
+import org.lime.chatbotwithai.product.DimensionBox;
 import org.lime.chatbotwithai.product.Product;
 import org.springframework.stereotype.Service;
 
@@ -257,25 +258,8 @@ public class SearchAnswerService {
     }
 
     private static boolean matchesDimensions(Product product, QueryFilter filter) {
-        if (!hasDimensionFilter(filter)) {
-            return true;
-        }
-        Double w = product.getWidthCm();
-        Double h = product.getHeightCm();
-        Double d = product.getDepthCm();
-        if (w == null || h == null || d == null) {
-            return false;
-        }
-        return withinTolerance(w, filter.getWidthCm())
-                && withinTolerance(h, filter.getHeightCm())
-                && withinTolerance(d, filter.getDepthCm());
-    }
-
-    private static boolean withinTolerance(Double actual, Double requested) {
-        if (requested == null) {
-            return true;
-        }
-        return Math.abs(actual - requested) <= DIMENSION_TOLERANCE_CM;
+        DimensionBox box = DimensionBox.of(filter);
+        return box == null || box.fits(product, DIMENSION_TOLERANCE_CM);
     }
 
     private static boolean hasDimensionFilter(QueryFilter filter) {
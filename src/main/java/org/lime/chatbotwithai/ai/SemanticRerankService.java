@@ -1,91 +1,282 @@
 package org.lime.chatbotwithai.ai;
 
+import org.lime.chatbotwithai.product.Bm25Index;
+import org.lime.chatbotwithai.product.CatalogSnapshotPublishedEvent;
 import org.lime.chatbotwithai.product.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class SemanticRerankService {
 
+    private static final Logger log = LoggerFactory.getLogger(SemanticRerankService.class);
+
     private final EmbeddingModel embeddingModel;
-    private final Map<Long, float[]> productEmbeddingCache = new ConcurrentHashMap<>();
+    private final QueryEmbeddingCache queryEmbeddings;
+    // Vectors are stored with a hash of the text they were computed from, so an edited product can never be
+    // ranked with its old description; entries of removed products are dropped on every snapshot swap.
+    private final ProductEmbeddingStore embeddingStore;
+    private final HybridFusion fusion;
+    private final EmbeddingCircuitBreaker breaker;
+    private final int batchSize;
+    private final TopKScorer scorer;
+    private final long inFlightWaitNanos;
+    // Product texts currently being embedded by some request; others needing the same text wait on its future.
+    private final Map<PendingKey, CompletableFuture<float[]>> inFlight = new ConcurrentHashMap<>();
+
+    private record PendingKey(long productId, long textHash) {
+    }
 
-    public SemanticRerankService(EmbeddingModel embeddingModel) {
+    public SemanticRerankService(EmbeddingModel embeddingModel, QueryEmbeddingCache queryEmbeddings,
+                                 ProductEmbeddingStore embeddingStore, HybridFusion fusion,
+                                 EmbeddingCircuitBreaker breaker,
+                                 @Value("${catalog.embeddings.batch-size:32}") int batchSize,
+                                 @Value("${catalog.embeddings.kernel:auto}") String kernel,
+                                 @Value("${catalog.embeddings.parallel-threshold:4096}") int parallelThreshold,
+                                 @Value("${catalog.embeddings.in-flight-wait:30s}") Duration inFlightWait) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("catalog.embeddings.batch-size must be positive");
+        }
         this.embeddingModel = embeddingModel;
+        this.queryEmbeddings = queryEmbeddings;
+        this.embeddingStore = embeddingStore;
+        this.fusion = fusion;
+        this.breaker = breaker;
+        this.batchSize = batchSize;
+        this.inFlightWaitNanos = inFlightWait.toNanos();
+        VectorKernel vectorKernel = VectorKernel.forName(kernel);
+        this.scorer = new TopKScorer(vectorKernel, ForkJoinPool.commonPool(), parallelThreshold);
+        log.info("Scoring embeddings with the {} kernel", vectorKernel.name());
     }
 
-    public List<Product> rerank(String userQuery, List<Product> candidates, int topK) {
+    /**
+     * A rerank's order, and whether it is the local fallback ranking rather than a semantic one.
+     */
+    public record Ranking(List<Product> products, boolean fallback) {
+    }
+
+    /**
+     * The {@code topK} candidates closest to {@code userQuery}. Unless hybrid fusion is set to {@code semantic},
+     * the cosine scores are fused with the BM25 scores of the same candidates, so exact terms such as a series
+     * name or "1600 rpm" lift the products that actually mention them. The embedding work runs under the
+     * per-request budget of the {@link EmbeddingCircuitBreaker}; when it overruns, fails or the breaker is open the
+     * candidates are ranked locally instead. {@code lexical} is the BM25 index of the snapshot the candidates were
+     * taken from.
+     */
+    public List<Product> rerank(Bm25Index lexical, String userQuery, List<Product> candidates, int topK) {
+        return rank(lexical, userQuery, candidates, topK).products();
+    }
+
+    /**
+     * Like {@link #rerank}, and says whether the order is the local fallback. Callers that cache rankings must not
+     * keep a fallback one, or it would outlive the embedding service's recovery.
+     */
+    public Ranking rank(Bm25Index lexical, String userQuery, List<Product> candidates, int topK) {
         if (candidates.isEmpty()) {
-            return candidates;
+            return new Ranking(candidates, false);
         }
-        float[] queryVec = embeddingModel.embed(userQuery);
+        // Waits on other requests' embeddings end with the budget: past it this request has fallen back, and the
+        // wait would only pin one of the breaker's few threads.
+        long deadline = System.nanoTime() + Math.min(inFlightWaitNanos, breaker.budget().toNanos());
+        return breaker.withinBudget("rerank", () -> semanticRerank(lexical, userQuery, candidates, topK, deadline))
+                .map(ranked -> new Ranking(ranked, false))
+                .orElseGet(() -> new Ranking(localRerank(lexical, userQuery, candidates, topK), true));
+    }
 
-        record Scored(Product p, double score) {
+    private List<Product> semanticRerank(Bm25Index lexical, String userQuery, List<Product> candidates, int topK,
+                                         long deadline) {
+        float[] queryVec = queryEmbeddings.unitVector(userQuery);
+        EmbeddingMatrix matrix = new EmbeddingMatrix(candidates.size(), queryVec.length);
+        embeddingsFor(candidates, matrix, deadline);
+        int[] best;
+        if (fusion.lexicalEnabled()) {
+            float[] fused = fusion.fuse(scorer.scores(matrix, queryVec), fusion.lexicalScores(lexical, userQuery, candidates));
+            best = scorer.topK(fused, topK);
+        } else {
+            best = scorer.topK(matrix, queryVec, topK);
         }
+        return pick(candidates, best);
+    }
 
-        List<Scored> scored = new ArrayList<>(candidates.size());
-        for (var product : candidates) {
-            float[] vec = embeddingForProduct(product);
-            double sim = cosine(queryVec, vec);
-            scored.add(new Scored(product, sim));
-        }
-        scored.sort(Comparator.comparingDouble(Scored::score).reversed());
-        int limit = Math.min(topK, scored.size());
-        List<Product> ranked = new ArrayList<>(limit);
-        for (int i = 0; i < limit; i++) {
-            ranked.add(scored.get(i).p());
+    /**
+     * Fallback without the embedding service: BM25 score first, then the order the candidates came in, which is
+     * the attribute order of the retriever (price for exact matches, attribute distance for nearest matches).
+     */
+    private List<Product> localRerank(Bm25Index lexical, String userQuery, List<Product> candidates, int topK) {
+        return pick(candidates, scorer.topK(fusion.lexicalScores(lexical, userQuery, candidates), topK));
+    }
+
+    private static List<Product> pick(List<Product> candidates, int[] rows) {
+        List<Product> ranked = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            ranked.add(candidates.get(row));
         }
         return ranked;
     }
 
-    private static double cosine(float[] a, float[] b) {
-        double dot = 0;
-        double na = 0;
-        double nb = 0;
-        for (int i = 0; i < a.length; i++) {
-            float x = a[i];
-            float y = b[i];
-            dot += x * y;
-            na += x * x;
-            nb += y * y;
-        }
-        return dot / (Math.sqrt(na) * Math.sqrt(nb) + 1e-9);
+    /**
+     * Embeds the products whose current text has no stored vector yet, in batched calls. Products already
+     * persisted with the same text (for instance from before a restart) are skipped. Returns how many were embedded.
+     */
+    public int refreshEmbeddings(List<Product> products) {
+        return embeddingsFor(products, null, System.nanoTime() + inFlightWaitNanos);
+    }
+
+    /**
+     * Whether {@code product} already has a stored vector for its current text.
+     */
+    public boolean hasEmbedding(Product product) {
+        return product.getId() != null && embeddingStore.contains(product.getId(), ProductText.hash(ProductText.of(product)));
     }
 
-    private float[] embeddingForProduct(Product product) {
-        Long id = product.getId();
-        if (id == null) {
-            return embeddingModel.embed(productText(product));
+    // The first snapshot of a run can be built before the startup import has loaded anything, so only later
+    // swaps are trusted to say which products were removed.
+    @EventListener
+    public void onSnapshotPublished(CatalogSnapshotPublishedEvent event) {
+        if (event.previous() != null) {
+            embeddingStore.retainAll(event.current().productIds());
         }
-        return productEmbeddingCache.computeIfAbsent(id, key -> embeddingModel.embed(productText(product)));
     }
 
-    private static String productText(Product product) {
-        StringBuilder sb = new StringBuilder();
-        appendToken(sb, product.getBrand());
-        appendToken(sb, product.getModel());
-        appendToken(sb, product.getType());
-        appendToken(sb, product.getDescription());
-        return sb.toString().trim();
+    /**
+     * Fills row {@code i} of {@code target} (when given) with the unit vector of {@code products[i]} and returns
+     * how many products this call embedded. Stored vectors are copied straight from the store; the misses this
+     * call is first to ask for are embedded in {@code batchSize} chunks, and misses another request is already
+     * embedding are awaited until {@code deadline} (a {@link System#nanoTime()} value) rather than embedded twice.
+     */
+    private int embeddingsFor(List<Product> products, EmbeddingMatrix target, long deadline) {
+        // Stored vectors of another dimension belong to a previous model; treat them as misses.
+        boolean readStore = target == null || embeddingStore.dimension() == target.dimension();
+        float[][] vectors = new float[products.size()][];
+        CompletableFuture<?>[] awaited = new CompletableFuture<?>[products.size()];
+        List<Integer> owned = new ArrayList<>();
+        List<String> ownedTexts = new ArrayList<>();
+        List<CompletableFuture<float[]>> ownedFutures = new ArrayList<>();
+        try {
+            for (int i = 0; i < products.size(); i++) {
+                Product product = products.get(i);
+                String text = ProductText.of(product);
+                Long id = product.getId();
+                if (id == null) {
+                    owned.add(i);
+                    ownedTexts.add(text);
+                    ownedFutures.add(null);
+                    continue;
+                }
+                long hash = ProductText.hash(text);
+                if (readStore && (target == null
+                        ? embeddingStore.contains(id, hash)
+                        : embeddingStore.copyInto(id, hash, target.data(), target.offset(i)))) {
+                    continue;
+                }
+                CompletableFuture<float[]> mine = new CompletableFuture<>();
+                CompletableFuture<float[]> theirs = inFlight.putIfAbsent(new PendingKey(id, hash), mine);
+                if (theirs != null) {
+                    awaited[i] = theirs;
+                } else {
+                    owned.add(i);
+                    ownedTexts.add(text);
+                    ownedFutures.add(mine);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            // A later product failed to read or hash; release what this call already claimed.
+            for (int j = 0; j < owned.size(); j++) {
+                release(products.get(owned.get(j)), ownedTexts.get(j), ownedFutures.get(j), null, e);
+            }
+            throw e;
+        }
+
+        for (int from = 0; from < owned.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, owned.size());
+            try {
+                List<String> texts = ownedTexts.subList(from, to);
+                List<float[]> batch = breaker.call(() -> embeddingModel.embed(texts));
+                if (batch.size() != texts.size()) {
+                    throw new IllegalStateException("Embedding model returned " + batch.size() + " vectors for "
+                            + texts.size() + " texts");
+                }
+                List<ProductEmbeddingStore.Entry> entries = new ArrayList<>(to - from);
+                for (int j = from; j < to; j++) {
+                    Product product = products.get(owned.get(j));
+                    float[] vector = EmbeddingMatrix.normalize(batch.get(j - from));
+                    vectors[owned.get(j)] = vector;
+                    if (product.getId() != null) {
+                        long hash = ProductText.hash(ownedTexts.get(j));
+                        entries.add(new ProductEmbeddingStore.Entry(product.getId(), hash, vector));
+                    }
+                }
+                embeddingStore.putAll(entries);
+            } catch (RuntimeException | Error e) {
+                // Release every claim still held, this batch included, so waiting and later requests can retry.
+                for (int j = from; j < owned.size(); j++) {
+                    release(products.get(owned.get(j)), ownedTexts.get(j), ownedFutures.get(j), null, e);
+                }
+                throw e;
+            }
+            for (int j = from; j < to; j++) {
+                release(products.get(owned.get(j)), ownedTexts.get(j), ownedFutures.get(j), vectors[owned.get(j)], null);
+            }
+        }
+
+        for (int i = 0; i < awaited.length; i++) {
+            if (awaited[i] != null) {
+                vectors[i] = await(awaited[i], deadline);
+            }
+        }
+        if (target != null) {
+            for (int i = 0; i < vectors.length; i++) {
+                if (vectors[i] != null) {
+                    target.setRow(i, vectors[i]);
+                }
+            }
+        }
+        return owned.size();
     }
 
-    private static void appendToken(StringBuilder sb, String token) {
-        if (token == null) {
-            return;
+    /**
+     * Waits for another request's claim until {@code deadline}, at most {@code in-flight-wait}, so a stuck owner
+     * costs this request a bounded delay instead of a pinned thread.
+     */
+    @SuppressWarnings("unchecked")
+    private float[] await(CompletableFuture<?> theirs, long deadline) {
+        try {
+            return ((CompletableFuture<float[]>) theirs).get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out waiting for an embedding another request is computing", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for an embedding", e);
         }
-        String trimmed = token.trim();
-        if (trimmed.isEmpty()) {
+    }
+
+    private void release(Product product, String text, CompletableFuture<float[]> future, float[] vector,
+                         Throwable failure) {
+        if (future == null) {
             return;
         }
-        if (sb.length() > 0) {
-            sb.append(' ');
+        inFlight.remove(new PendingKey(product.getId(), ProductText.hash(text)), future);
+        if (failure != null) {
+            future.completeExceptionally(failure);
+        } else {
+            future.complete(vector);
         }
-        sb.append(trimmed);
     }
 }
@@ -0,0 +1,489 @@
+package org.lime.chatbotwithai.ai;
+
+import org.lime.chatbotwithai.product.CatalogSnapshot;
+import org.lime.chatbotwithai.product.CatalogSnapshotPublishedEvent;
+import org.lime.chatbotwithai.product.CatalogSnapshots;
+import org.lime.chatbotwithai.product.Product;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongPredicate;
+
+/**
+ * Semantic retrieval over the whole catalog through an in-process {@link HnswIndex} of the stored product
+ * embeddings. The graph mirrors the {@link ProductEmbeddingStore} on a single background thread: a snapshot swap
+ * reconciles every product, and a store write re-checks only the written ids, so the graph is never rebuilt from
+ * scratch unless tombstones outnumber live nodes or the embedding model changes. Products without a stored vector
+ * yet are simply not retrievable until they are embedded. Searches never sync; they read the published graph and
+ * its coverage, the set of the synced snapshot's products that are not in the graph with their current text.
+ */
+@Service
+public class SemanticSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(SemanticSearchService.class);
+
+    /**
+     * {@code PRE} applies the filter during the graph walk (or scores the matches exactly when there are few of
+     * them), so it always returns k matching products if they exist. {@code POST} walks the unfiltered graph for
+     * {@code k * overfetch} neighbours and drops non-matching ones: cheaper, but may return fewer than k.
+     */
+    public enum FilterMode {
+        PRE,
+        POST;
+
+        public static FilterMode of(String value) {
+            return value == null ? PRE : valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * {@code recall} is the final answer against full-precision exact search; with int8 quantization
+     * {@code firstPassRecall} is the graph's own top-k before rescoring, so the difference is what rescoring
+     * recovers. {@code vectorBytes} is the graph's vector heap, against {@code fullPrecisionBytes} for floats.
+     */
+    public record RecallReport(int vectors, int queries, int k, int ef, boolean quantized,
+                               double recall, double firstPassRecall,
+                               double hnswMicros, double exactMicros,
+                               long vectorBytes, long fullPrecisionBytes) {
+    }
+
+    /**
+     * Semantic hits and whether they can stand alone: {@code complete} only when every product matching the filter
+     * had a stored vector, so no match was left out merely for not being embedded yet. {@code fallback} when the
+     * query could not be embedded within the budget (or the breaker is open), so the empty hits say nothing about
+     * the catalog.
+     */
+    public record Hits(List<Product> products, boolean complete, boolean fallback) {
+    }
+
+    private final CatalogSnapshots snapshots;
+    private final ProductEmbeddingStore embeddingStore;
+    private final QueryEmbeddingCache queryEmbeddings;
+    private final EmbeddingCircuitBreaker breaker;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final int postFilterOverfetch;
+    private final int exactThreshold;
+    private final boolean quantized;
+    private final int rescoreMultiplier;
+
+    /**
+     * Products of snapshot {@code version} missing from the graph. Replaced on every reconcile; between reconciles
+     * the indexer updates {@code missing} in place as written ids are indexed.
+     */
+    private record Coverage(long version, Set<Long> missing) {
+    }
+
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "semantic-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicReference<CatalogSnapshot> pendingSnapshot = new AtomicReference<>();
+    private final Set<Long> pendingIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private volatile HnswIndex index;
+    private volatile Coverage coverage;
+    // Written only by the indexer; read concurrently to look up full-precision vectors for rescoring.
+    private final Map<Long, Long> indexedHashes = new ConcurrentHashMap<>();
+    // Indexer-thread state: the snapshot the graph was last reconciled against.
+    private CatalogSnapshot synced;
+
+    public SemanticSearchService(CatalogSnapshots snapshots,
+                                 ProductEmbeddingStore embeddingStore,
+                                 QueryEmbeddingCache queryEmbeddings,
+                                 EmbeddingCircuitBreaker breaker,
+                                 @Value("${catalog.semantic.hnsw.m:16}") int m,
+                                 @Value("${catalog.semantic.hnsw.ef-construction:100}") int efConstruction,
+                                 @Value("${catalog.semantic.hnsw.ef-search:64}") int efSearch,
+                                 @Value("${catalog.semantic.post-filter-overfetch:4}") int postFilterOverfetch,
+                                 @Value("${catalog.semantic.exact-threshold:1000}") int exactThreshold,
+                                 @Value("${catalog.semantic.quantization:none}") String quantization,
+                                 @Value("${catalog.semantic.rescore-multiplier:4}") int rescoreMultiplier) {
+        this.snapshots = snapshots;
+        this.embeddingStore = embeddingStore;
+        this.queryEmbeddings = queryEmbeddings;
+        this.breaker = breaker;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.postFilterOverfetch = Math.max(1, postFilterOverfetch);
+        this.exactThreshold = exactThreshold;
+        this.quantized = switch (quantization.trim().toLowerCase(Locale.ROOT)) {
+            case "none" -> false;
+            case "int8" -> true;
+            default -> throw new IllegalArgumentException("Unknown quantization: " + quantization);
+        };
+        this.rescoreMultiplier = Math.max(1, rescoreMultiplier);
+        embeddingStore.addWriteListener(this::onEmbeddingsWritten);
+    }
+
+    /**
+     * The {@code k} products semantically closest to {@code query} that match {@code filter} (null for the whole
+     * catalog), best first. Empty when no product has been embedded yet, or when the query cannot be embedded
+     * within the request budget (callers then fall back to their attribute or lexical candidates).
+     */
+    public List<Product> search(String query, QueryFilter filter, double dimensionTolerance, int k, FilterMode mode) {
+        return search(snapshots.current(), query, filter, dimensionTolerance, k, mode).products();
+    }
+
+    /**
+     * Like {@link #search(String, QueryFilter, double, int, FilterMode)} against the snapshot the caller pinned,
+     * and says whether the hits cover every matching product. While the catalog is only partly embedded (lazy
+     * rerank embeddings, warm-up still running or capped) they do not, and callers should merge them with their
+     * attribute candidates rather than use them as the whole answer.
+     */
+    public Hits search(CatalogSnapshot snapshot, String query, QueryFilter filter, double dimensionTolerance, int k,
+                       FilterMode mode) {
+        Coverage covered = coverage;
+        if (covered == null || covered.version() < snapshot.version()) {
+            requestSync(snapshot);
+        }
+        HnswIndex graph = index;
+        if (graph == null || k <= 0 || query == null || query.isBlank()) {
+            return new Hits(List.of(), false, false);
+        }
+        float[] unitQuery = breaker.withinBudget("semantic-search", () -> queryEmbeddings.unitVector(query))
+                .orElse(null);
+        if (unitQuery == null || unitQuery.length != graph.dimension()) {
+            return new Hits(List.of(), false, unitQuery == null);
+        }
+        boolean stale = false;
+        List<HnswIndex.Hit> hits;
+        if (graph.quantized()) {
+            List<HnswIndex.Hit> approximate = nearest(graph, snapshot, unitQuery, filter, dimensionTolerance,
+                    k * rescoreMultiplier, mode);
+            hits = rescore(unitQuery, approximate);
+            stale = hits.size() < approximate.size();
+            hits = hits.size() > k ? hits.subList(0, k) : hits;
+        } else {
+            hits = nearest(graph, snapshot, unitQuery, filter, dimensionTolerance, k, mode);
+        }
+        List<Long> ids = new ArrayList<>(k);
+        for (HnswIndex.Hit hit : hits) {
+            ids.add(hit.id());
+        }
+        List<Product> products = snapshot.index().products(ids);
+        return new Hits(products, !products.isEmpty() && !stale
+                && covers(covered, snapshot, filter, dimensionTolerance), false);
+    }
+
+    // Whether every product of the snapshot matching the filter is in the graph with its current text. Only the
+    // missing ids are looked at, so a fully indexed catalog answers without touching it.
+    private static boolean covers(Coverage covered, CatalogSnapshot snapshot, QueryFilter filter,
+                                  double dimensionTolerance) {
+        if (covered == null || covered.version() != snapshot.version()) {
+            return false;
+        }
+        if (covered.missing().isEmpty()) {
+            return true;
+        }
+        if (filter == null) {
+            return false;
+        }
+        LongPredicate matches = snapshot.index().matcher(filter, dimensionTolerance);
+        for (Long id : covered.missing()) {
+            if (matches.test(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Recall@k of the graph (after rescoring, when quantized) against exact full-precision search, averaged over
+     * {@code queries} stored product vectors perturbed with noise so no query sits exactly on a node, plus the mean
+     * latency of both. The exact side scores every stored float vector packed into one matrix.
+     */
+    public RecallReport recall(int queries, int k, Integer ef) {
+        if (queries <= 0 || k <= 0) {
+            throw new IllegalArgumentException("queries and k must be positive");
+        }
+        requestSync(snapshots.current());
+        HnswIndex graph = index;
+        int effectiveEf = ef == null ? efSearch : ef;
+        List<Map.Entry<Long, Long>> indexed = new ArrayList<>(indexedHashes.entrySet());
+        if (graph == null || indexed.isEmpty()) {
+            return new RecallReport(0, 0, k, effectiveEf, quantized, 0, 0, 0, 0, 0, 0);
+        }
+        EmbeddingMatrix all = new EmbeddingMatrix(indexed.size(), graph.dimension());
+        long[] ids = new long[indexed.size()];
+        for (int row = 0; row < ids.length; row++) {
+            ids[row] = indexed.get(row).getKey();
+            embeddingStore.copyInto(ids[row], indexed.get(row).getValue(), all.data(), all.offset(row));
+        }
+        VectorKernel kernel = VectorKernel.forName("auto");
+        int fetch = graph.quantized() ? k * rescoreMultiplier : k;
+        Random random = new Random(17);
+        double recallSum = 0;
+        double firstPassSum = 0;
+        long hnswNanos = 0;
+        long exactNanos = 0;
+        for (int q = 0; q < queries; q++) {
+            int sampled = random.nextInt(ids.length);
+            float[] query = Arrays.copyOfRange(all.data(), all.offset(sampled), all.offset(sampled) + all.dimension());
+            for (int i = 0; i < query.length; i++) {
+                query[i] += (float) (random.nextGaussian() * 0.05);
+            }
+            EmbeddingMatrix.normalize(query);
+
+            long started = System.nanoTime();
+            List<HnswIndex.Hit> approximate = graph.search(query, fetch, Math.max(effectiveEf, fetch), null);
+            List<HnswIndex.Hit> answer = graph.quantized() ? rescore(query, approximate) : approximate;
+            hnswNanos += System.nanoTime() - started;
+
+            started = System.nanoTime();
+            Set<Long> expected = exactTopK(all.scores(query, kernel), ids, k);
+            exactNanos += System.nanoTime() - started;
+
+            recallSum += overlap(answer, expected, k);
+            firstPassSum += overlap(approximate, expected, k);
+        }
+        long fullPrecisionBytes = (long) graph.size() * graph.dimension() * Float.BYTES;
+        return new RecallReport(graph.size(), queries, k, effectiveEf, graph.quantized(),
+                recallSum / queries, firstPassSum / queries,
+                hnswNanos / 1_000.0 / queries, exactNanos / 1_000.0 / queries,
+                graph.vectorBytes(), fullPrecisionBytes);
+    }
+
+    @EventListener
+    public void onSnapshotPublished(CatalogSnapshotPublishedEvent event) {
+        requestSync(event.current());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexer.shutdownNow();
+    }
+
+    private void onEmbeddingsWritten(Set<Long> productIds) {
+        pendingIds.addAll(productIds);
+        schedule();
+    }
+
+    // Queues a reconcile against the snapshot unless a newer one is already queued; never blocks the caller.
+    private void requestSync(CatalogSnapshot snapshot) {
+        pendingSnapshot.accumulateAndGet(snapshot,
+                (queued, offered) -> queued != null && queued.version() >= offered.version() ? queued : offered);
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            indexer.execute(this::drain);
+        }
+    }
+
+    private List<HnswIndex.Hit> nearest(HnswIndex graph, CatalogSnapshot snapshot, float[] unitQuery,
+                                        QueryFilter filter, double dimensionTolerance, int k, FilterMode mode) {
+        if (filter == null) {
+            return graph.search(unitQuery, k, efSearch, null);
+        }
+        LongPredicate matches = snapshot.index().matcher(filter, dimensionTolerance);
+        if (mode == FilterMode.POST) {
+            int fetch = k * postFilterOverfetch;
+            return graph.search(unitQuery, fetch, Math.max(efSearch, fetch), null).stream()
+                    .filter(hit -> matches.test(hit.id()))
+                    .limit(k)
+                    .toList();
+        }
+        List<Product> selected = snapshot.index().select(filter, dimensionTolerance, exactThreshold + 1);
+        if (selected.size() <= exactThreshold) {
+            return graph.exactSearch(unitQuery, k, selected.stream().map(Product::getId).toList());
+        }
+        return graph.search(unitQuery, k, efSearch, matches);
+    }
+
+    /**
+     * Re-ranks approximate (int8) hits by their full-precision score from the embedding store, best first. A hit
+     * whose indexed vector is no longer in the store (its text changed or it was removed since the last sync) is
+     * dropped: its int8 score is on another scale and would be ranked against the rescored ones.
+     */
+    private List<HnswIndex.Hit> rescore(float[] unitQuery, List<HnswIndex.Hit> hits) {
+        float[] vector = new float[unitQuery.length];
+        List<HnswIndex.Hit> rescored = new ArrayList<>(hits.size());
+        for (HnswIndex.Hit hit : hits) {
+            Long hash = indexedHashes.get(hit.id());
+            if (hash == null || !embeddingStore.copyInto(hit.id(), hash, vector, 0)) {
+                continue;
+            }
+            float score = 0;
+            for (int i = 0; i < vector.length; i++) {
+                score += unitQuery[i] * vector[i];
+            }
+            rescored.add(new HnswIndex.Hit(hit.id(), score));
+        }
+        rescored.sort(Comparator.comparingDouble(HnswIndex.Hit::score).reversed());
+        return rescored;
+    }
+
+    private static Set<Long> exactTopK(float[] scores, long[] ids, int k) {
+        Integer[] order = new Integer[scores.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+        Set<Long> top = new HashSet<>();
+        for (int i = 0; i < Math.min(k, order.length); i++) {
+            top.add(ids[order[i]]);
+        }
+        return top;
+    }
+
+    private static double overlap(List<HnswIndex.Hit> hits, Set<Long> expected, int k) {
+        if (expected.isEmpty()) {
+            return 1;
+        }
+        long found = hits.stream().limit(k).filter(hit -> expected.contains(hit.id())).count();
+        return (double) found / expected.size();
+    }
+
+    private void drain() {
+        // Cleared first, so anything queued from here on schedules another pass.
+        scheduled.set(false);
+        try {
+            CatalogSnapshot snapshot = pendingSnapshot.getAndSet(null);
+            // A caller still holding an older snapshot must not roll the graph back to it.
+            if (snapshot != null && (synced == null || snapshot.version() > synced.version())) {
+                pendingIds.clear();
+                reconcile(snapshot);
+            } else if (synced != null && !pendingIds.isEmpty()) {
+                List<Long> written = new ArrayList<>(pendingIds);
+                pendingIds.removeAll(written);
+                indexWritten(written);
+            }
+        } catch (RuntimeException e) {
+            log.warn("HNSW index sync failed: {}", e.toString());
+        }
+    }
+
+    // Walks the whole snapshot; runs only when a new snapshot is published.
+    private void reconcile(CatalogSnapshot snapshot) {
+        long started = System.nanoTime();
+        int[] changes = new int[2];
+        Set<Long> missing = ConcurrentHashMap.newKeySet();
+        HnswIndex graph = index;
+        if (graph != null && embeddingStore.dimension() != graph.dimension()) {
+            graph = null;
+            indexedHashes.clear();
+        }
+        for (Long id : snapshot.productIds()) {
+            graph = apply(snapshot, id, graph, missing, changes);
+        }
+        Set<Long> live = snapshot.productIds();
+        var removed = indexedHashes.keySet().iterator();
+        while (removed.hasNext()) {
+            Long id = removed.next();
+            if (!live.contains(id)) {
+                graph.delete(id);
+                removed.remove();
+                changes[1]++;
+            }
+        }
+        publish(snapshot, graph, missing, changes, started);
+        synced = snapshot;
+        coverage = new Coverage(snapshot.version(), missing);
+    }
+
+    // Re-checks only the ids the store just wrote, against the snapshot the graph was last reconciled with.
+    private void indexWritten(List<Long> productIds) {
+        HnswIndex graph = index;
+        if (graph != null && embeddingStore.dimension() != graph.dimension()) {
+            reconcile(synced);
+            return;
+        }
+        long started = System.nanoTime();
+        int[] changes = new int[2];
+        Set<Long> missing = coverage.missing();
+        for (Long id : productIds) {
+            graph = apply(synced, id, graph, missing, changes);
+        }
+        publish(synced, graph, missing, changes, started);
+    }
+
+    // Brings one product's node in line with the store; counts inserts in changes[0] and deletes in changes[1].
+    private HnswIndex apply(CatalogSnapshot snapshot, Long id, HnswIndex graph, Set<Long> missing, int[] changes) {
+        Product product = snapshot.product(id);
+        Long indexedHash = indexedHashes.get(id);
+        float[] vector = null;
+        long hash = 0;
+        if (product != null) {
+            hash = ProductText.hash(ProductText.of(product));
+            if (indexedHash != null && indexedHash == hash) {
+                missing.remove(id);
+                return graph;
+            }
+            vector = embeddingStore.get(id, hash);
+        }
+        if (vector == null) {
+            if (indexedHash != null && graph != null) {
+                graph.delete(id);
+                indexedHashes.remove(id);
+                changes[1]++;
+            }
+            if (product != null) {
+                missing.add(id);
+            }
+            return graph;
+        }
+        if (graph == null) {
+            graph = new HnswIndex(vector.length, m, efConstruction, quantized);
+        }
+        graph.insert(id, vector);
+        indexedHashes.put(id, hash);
+        missing.remove(id);
+        changes[0]++;
+        return graph;
+    }
+
+    private void publish(CatalogSnapshot snapshot, HnswIndex graph, Set<Long> missing, int[] changes, long started) {
+        if (graph != null && graph.deletedCount() > graph.size()) {
+            graph = rebuild(missing);
+        }
+        index = graph;
+        if (changes[0] > 0 || changes[1] > 0) {
+            log.info("HNSW index at catalog version {}: {} inserted, {} deleted, {} vectors in {} ms",
+                    snapshot.version(), changes[0], changes[1], graph == null ? 0 : graph.size(),
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    private HnswIndex rebuild(Set<Long> missing) {
+        HnswIndex graph = null;
+        var entries = indexedHashes.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Long, Long> entry = entries.next();
+            float[] vector = embeddingStore.get(entry.getKey(), entry.getValue());
+            if (vector == null) {
+                entries.remove();
+                missing.add(entry.getKey());
+                continue;
+            }
+            if (graph == null) {
+                graph = new HnswIndex(vector.length, m, efConstruction, quantized);
+            }
+            graph.insert(entry.getKey(), vector);
+        }
+        return graph;
+    }
+}
@@ -0,0 +1,203 @@
+package org.lime.chatbotwithai.ai;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scores a query against every row of an {@link EmbeddingMatrix} and returns the row numbers of the {@code k}
+ * best, best first. Matrices above {@code parallelThreshold} rows are split into ranges on a {@link ForkJoinPool};
+ * each range is scored with the kernel and reduced to its own top-K in a primitive bounded heap, and the partial
+ * results are merged pairwise. Cost is O(rows/cores * dim + rows/cores * log k) with no per-row objects; ties are
+ * broken by the lower row number, the same order a stable sort would give.
+ */
+final class TopKScorer {
+
+    private final VectorKernel kernel;
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+
+    TopKScorer(VectorKernel kernel, ForkJoinPool pool, int parallelThreshold) {
+        this.kernel = kernel;
+        this.pool = pool;
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+    }
+
+    int[] topK(EmbeddingMatrix matrix, float[] unitQuery, int k) {
+        int rows = matrix.rows();
+        if (rows == 0 || k <= 0) {
+            return new int[0];
+        }
+        return score(matrix, unitQuery, new float[rows], k).drainBestFirst();
+    }
+
+    /**
+     * Cosine score of every row, computed on the same ranges as {@link #topK(EmbeddingMatrix, float[], int)} but
+     * without keeping a heap.
+     */
+    float[] scores(EmbeddingMatrix matrix, float[] unitQuery) {
+        float[] scores = new float[matrix.rows()];
+        score(matrix, unitQuery, scores, 0);
+        return scores;
+    }
+
+    /**
+     * Row numbers of the {@code k} highest of already computed {@code scores}, best first, with the same tie-break.
+     */
+    int[] topK(float[] scores, int k) {
+        Heap heap = new Heap(Math.max(0, Math.min(k, scores.length)));
+        for (int row = 0; row < scores.length; row++) {
+            heap.offer(row, scores[row]);
+        }
+        return heap.drainBestFirst();
+    }
+
+    private Heap score(EmbeddingMatrix matrix, float[] query, float[] scores, int k) {
+        int rows = matrix.rows();
+        return rows <= parallelThreshold
+                ? scoreRange(matrix, query, scores, 0, rows, k)
+                : pool.invoke(new RangeTask(matrix, query, scores, 0, rows, k));
+    }
+
+    private Heap scoreRange(EmbeddingMatrix matrix, float[] query, float[] scores, int from, int to, int k) {
+        kernel.dot(query, matrix.data(), from, to, scores);
+        Heap heap = new Heap(Math.min(k, to - from));
+        if (k == 0) {
+            return heap;
+        }
+        for (int row = from; row < to; row++) {
+            heap.offer(row, scores[row]);
+        }
+        return heap;
+    }
+
+    private final class RangeTask extends RecursiveTask<Heap> {
+
+        private final EmbeddingMatrix matrix;
+        private final float[] query;
+        private final float[] scores;
+        private final int from;
+        private final int to;
+        private final int k;
+
+        RangeTask(EmbeddingMatrix matrix, float[] query, float[] scores, int from, int to, int k) {
+            this.matrix = matrix;
+            this.query = query;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+            this.k = k;
+        }
+
+        @Override
+        protected Heap compute() {
+            if (to - from <= parallelThreshold) {
+                return scoreRange(matrix, query, scores, from, to, k);
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask left = new RangeTask(matrix, query, scores, from, middle, k);
+            left.fork();
+            Heap right = new RangeTask(matrix, query, scores, middle, to, k).compute();
+            Heap merged = left.join();
+            merged.absorb(right, k);
+            return merged;
+        }
+    }
+
+    /**
+     * Min-heap of (row, score) in parallel primitive arrays; the root is the worst kept row.
+     */
+    private static final class Heap {
+
+        private int[] rows;
+        private float[] scores;
+        private int size;
+        private int capacity;
+
+        Heap(int capacity) {
+            this.capacity = capacity;
+            this.rows = new int[capacity];
+            this.scores = new float[capacity];
+        }
+
+        void offer(int row, float score) {
+            if (size < capacity) {
+                rows[size] = row;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (capacity > 0 && better(row, score, rows[0], scores[0])) {
+                rows[0] = row;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        void absorb(Heap other, int k) {
+            if (capacity < k) {
+                int grown = Math.min(k, size + other.size);
+                rows = Arrays.copyOf(rows, grown);
+                scores = Arrays.copyOf(scores, grown);
+                capacity = grown;
+            }
+            for (int i = 0; i < other.size; i++) {
+                offer(other.rows[i], other.scores[i]);
+            }
+        }
+
+        int[] drainBestFirst() {
+            int[] ordered = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                ordered[i] = rows[0];
+                size--;
+                rows[0] = rows[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            return ordered;
+        }
+
+        // Higher score wins; on equal scores the lower row wins.
+        private static boolean better(int rowA, float scoreA, int rowB, float scoreB) {
+            return scoreA > scoreB || (scoreA == scoreB && rowA < rowB);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!better(rows[parent], scores[parent], rows[i], scores[i])) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) {
+                    return;
+                }
+                int worst = left;
+                int right = left + 1;
+                if (right < size && better(rows[left], scores[left], rows[right], scores[right])) {
+                    worst = right;
+                }
+                if (!better(rows[i], scores[i], rows[worst], scores[worst])) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int row = rows[a];
+            rows[a] = rows[b];
+            rows[b] = row;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
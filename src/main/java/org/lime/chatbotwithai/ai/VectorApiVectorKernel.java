@@ -0,0 +1,39 @@
+package org.lime.chatbotwithai.ai;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD kernel on jdk.incubator.vector. Excluded from the default build; compile it with {@code -Pvector-api} and
+ * start the JVM with {@code --add-modules jdk.incubator.vector}. Loaded reflectively by {@link VectorKernel#forName}.
+ */
+final class VectorApiVectorKernel implements VectorKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public String name() {
+        return "vector-" + SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public void dot(float[] query, float[] matrix, int fromRow, int toRow, float[] out) {
+        int dim = query.length;
+        int bound = SPECIES.loopBound(dim);
+        for (int row = fromRow, base = fromRow * dim; row < toRow; row++, base += dim) {
+            FloatVector acc = FloatVector.zero(SPECIES);
+            int i = 0;
+            for (; i < bound; i += SPECIES.length()) {
+                FloatVector q = FloatVector.fromArray(SPECIES, query, i);
+                FloatVector m = FloatVector.fromArray(SPECIES, matrix, base + i);
+                acc = q.fma(m, acc);
+            }
+            float sum = acc.reduceLanes(VectorOperators.ADD);
+            for (; i < dim; i++) {
+                sum += query[i] * matrix[base + i];
+            }
+            out[row] = sum;
+        }
+    }
+}
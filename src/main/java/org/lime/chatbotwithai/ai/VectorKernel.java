@@ -0,0 +1,63 @@
+package org.lime.chatbotwithai.ai;
+
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+
+/**
+ * Dot products of one query against every row of a row-major matrix. With unit-normalized rows and query the
+ * dot product is the cosine similarity, so kernels never compute norms.
+ */
+public interface VectorKernel {
+
+    String name();
+
+    /**
+     * Writes {@code query · row(i)} to {@code out[i]} for each row in {@code [fromRow, toRow)} of {@code matrix},
+     * which holds {@code query.length} floats per row.
+     */
+    void dot(float[] query, float[] matrix, int fromRow, int toRow, float[] out);
+
+    default void dotAll(float[] query, float[] matrix, int rows, float[] out) {
+        dot(query, matrix, 0, rows, out);
+    }
+
+    /**
+     * {@code scalar}, {@code vector} (the jdk.incubator.vector kernel, which must be compiled in with the
+     * {@code vector-api} Maven profile and enabled with {@code --add-modules jdk.incubator.vector}) or
+     * {@code auto}, which picks the vector kernel when it is available.
+     */
+    static VectorKernel forName(String name) {
+        String normalized = name == null ? "auto" : name.trim().toLowerCase(Locale.ROOT);
+        return switch (normalized) {
+            case "scalar" -> new ScalarVectorKernel();
+            case "vector" -> {
+                VectorKernel kernel = vectorApi();
+                if (kernel == null) {
+                    throw new IllegalArgumentException("Vector API kernel is not available: build with -Pvector-api"
+                            + " and run with --add-modules jdk.incubator.vector");
+                }
+                yield kernel;
+            }
+            case "auto" -> {
+                VectorKernel kernel = vectorApi();
+                yield kernel != null ? kernel : new ScalarVectorKernel();
+            }
+            default -> throw new IllegalArgumentException("Unknown vector kernel: " + name);
+        };
+    }
+
+    private static VectorKernel vectorApi() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (VectorKernel) Class.forName("org.lime.chatbotwithai.ai.VectorApiVectorKernel")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LoggerFactory.getLogger(VectorKernel.class).debug("Vector API kernel not compiled in: {}", e.toString());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.lime.chatbotwithai.catalog;
+
+public record CatalogImportResult(String location,
+                                  long recordsRead,
+                                  long recordsSkipped,
+                                  long recordsRejected,
+                                  long rowsWritten,
+                                  long productsEmbedded,
+                                  long embeddingFailures,
+                                  long elapsedMillis,
+                                  double rowsPerSecond) {
+}
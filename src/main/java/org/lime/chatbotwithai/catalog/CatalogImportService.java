@@ -0,0 +1,278 @@
+package org.lime.chatbotwithai.catalog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.lime.chatbotwithai.ai.SemanticRerankService;
+import org.lime.chatbotwithai.product.CatalogSnapshots;
+import org.lime.chatbotwithai.product.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Streams a CSV or JSONL product feed into the product table. Records are read one at a time, upserted in JDBC
+ * batches (one transaction per batch) and the checkpoint is advanced after every commit. Products that are new
+ * or whose embedding text changed are re-embedded in batches once their rows are written. Records that cannot be
+ * parsed or have no id are skipped and counted rather than failing the import. Searches see none of it until the
+ * import finishes and a new {@link org.lime.chatbotwithai.product.CatalogSnapshot} is published.
+ */
+@Service
+public class CatalogImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogImportService.class);
+
+    private static final String UPSERT = """
+            MERGE INTO product (id, brand, model, type, brand_key, type_key, price, capacity_kg, width_cm, height_cm,
+                                depth_cm, description)
+            KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+    private static final String EXISTING_TEXT = """
+            SELECT id, brand, model, type, description FROM product WHERE id IN (:ids)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper mapper;
+    private final ImportCheckpointStore checkpoints;
+    private final SemanticRerankService reranker;
+    private final CatalogSnapshots snapshots;
+    private final int batchSize;
+    private final int embedBatchSize;
+    private final Counter rowsCounter;
+    private final Counter rejectedCounter;
+    private final AtomicReference<Double> lastRowsPerSecond = new AtomicReference<>(0d);
+    private final ReentrantLock running = new ReentrantLock();
+
+    public CatalogImportService(JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                ObjectMapper mapper,
+                                ImportCheckpointStore checkpoints,
+                                SemanticRerankService reranker,
+                                CatalogSnapshots snapshots,
+                                MeterRegistry registry,
+                                @Value("${catalog.ingest.batch-size:500}") int batchSize,
+                                @Value("${catalog.ingest.embed-batch-size:32}") int embedBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = transactionTemplate;
+        this.mapper = mapper;
+        this.checkpoints = checkpoints;
+        this.reranker = reranker;
+        this.snapshots = snapshots;
+        this.batchSize = Math.max(1, batchSize);
+        this.embedBatchSize = Math.max(1, embedBatchSize);
+        this.rowsCounter = Counter.builder("catalog.ingest.rows")
+                .description("Product rows written by catalog imports")
+                .register(registry);
+        this.rejectedCounter = Counter.builder("catalog.ingest.rejected")
+                .description("Feed records skipped because they could not be parsed or had no id")
+                .register(registry);
+        registry.gauge("catalog.ingest.rows.per.second", lastRowsPerSecond, AtomicReference::get);
+    }
+
+    public CatalogImportResult importFeed(Resource feed, ProductFeedFormat format, boolean resume, boolean embed) {
+        if (!running.tryLock()) {
+            throw new IllegalStateException("A catalog import is already running");
+        }
+        try {
+            return runImport(feed, format, resume, embed);
+        } finally {
+            try {
+                // Readers keep the previous snapshot until the rebuilt one is swapped in.
+                snapshots.refresh();
+            } finally {
+                running.unlock();
+            }
+        }
+    }
+
+    private CatalogImportResult runImport(Resource feed, ProductFeedFormat format, boolean resume, boolean embed) {
+        String location = describe(feed);
+        String fingerprint = fingerprint(feed);
+        long skip = resume ? checkpoints.resumeFrom(location, fingerprint) : 0;
+        if (skip > 0) {
+            log.info("Resuming import of {} after {} committed records", location, skip);
+        }
+        long started = System.nanoTime();
+        ImportProgress progress = new ImportProgress(embed);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(feed.getInputStream(), StandardCharsets.UTF_8));
+             ProductFeedReader records = ProductFeedReader.open(reader, format, mapper)) {
+            List<Product> batch = new ArrayList<>(batchSize);
+            while (records.hasNext()) {
+                Product product;
+                try {
+                    product = records.next();
+                } catch (IllegalArgumentException e) {
+                    product = null;
+                    log.debug("Rejected record {} of {}: {}", progress.recordsRead + 1, location, e.getMessage());
+                }
+                progress.recordsRead++;
+                if (progress.recordsRead <= skip) {
+                    progress.recordsSkipped++;
+                    continue;
+                }
+                if (product == null || product.getId() == null) {
+                    progress.recordsRejected++;
+                    rejectedCounter.increment();
+                    continue;
+                }
+                batch.add(product);
+                if (batch.size() == batchSize) {
+                    commit(batch, location, fingerprint, progress);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                commit(batch, location, fingerprint, progress);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read catalog feed " + location, e);
+        }
+        progress.embed(reranker, embedBatchSize);
+        checkpoints.clear(location);
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        double rowsPerSecond = progress.rowsWritten * 1000.0 / elapsedMillis;
+        lastRowsPerSecond.set(rowsPerSecond);
+        log.info("Imported {} rows from {} in {} ms ({} rows/s, {} embedded, {} skipped, {} rejected)",
+                progress.rowsWritten, location, elapsedMillis, Math.round(rowsPerSecond),
+                progress.productsEmbedded, progress.recordsSkipped, progress.recordsRejected);
+        return new CatalogImportResult(location, progress.recordsRead, progress.recordsSkipped,
+                progress.recordsRejected, progress.rowsWritten, progress.productsEmbedded, progress.embeddingFailures,
+                elapsedMillis, rowsPerSecond);
+    }
+
+    private void commit(List<Product> batch, String location, String fingerprint, ImportProgress progress) {
+        List<Product> changed = transactionTemplate.execute(status -> {
+            List<Product> needsEmbedding = changedEmbeddingText(batch);
+            jdbcTemplate.batchUpdate(UPSERT, batch, batch.size(), (ps, product) -> {
+                ps.setLong(1, product.getId());
+                ps.setString(2, product.getBrand());
+                ps.setString(3, product.getModel());
+                ps.setString(4, product.getType());
+                ps.setString(5, Product.normalizeKey(product.getBrand()));
+                ps.setString(6, Product.normalizeKey(product.getType()));
+                ps.setObject(7, product.getPrice(), Types.DOUBLE);
+                ps.setObject(8, product.getCapacityKg(), Types.INTEGER);
+                ps.setObject(9, product.getWidthCm(), Types.DOUBLE);
+                ps.setObject(10, product.getHeightCm(), Types.DOUBLE);
+                ps.setObject(11, product.getDepthCm(), Types.DOUBLE);
+                ps.setString(12, product.getDescription());
+            });
+            return needsEmbedding;
+        });
+        progress.rowsWritten += batch.size();
+        rowsCounter.increment(batch.size());
+        checkpoints.save(new ImportCheckpointStore.Checkpoint(location, fingerprint, progress.recordsRead));
+        progress.queue(changed);
+        progress.embedFullBatches(reranker, embedBatchSize);
+    }
+
+    private List<Product> changedEmbeddingText(List<Product> batch) {
+        Map<Long, List<String>> existing = new HashMap<>();
+        namedJdbcTemplate.query(EXISTING_TEXT,
+                new MapSqlParameterSource("ids", batch.stream().map(Product::getId).toList()),
+                rs -> {
+                    existing.put(rs.getLong("id"), List.of(
+                            String.valueOf(rs.getString("brand")),
+                            String.valueOf(rs.getString("model")),
+                            String.valueOf(rs.getString("type")),
+                            String.valueOf(rs.getString("description"))));
+                });
+        return batch.stream()
+                .filter(product -> !Objects.equals(existing.get(product.getId()), List.of(
+                        String.valueOf(product.getBrand()),
+                        String.valueOf(product.getModel()),
+                        String.valueOf(product.getType()),
+                        String.valueOf(product.getDescription()))))
+                .toList();
+    }
+
+    private static String describe(Resource feed) {
+        try {
+            return feed.getURI().toString();
+        } catch (IOException e) {
+            return feed.getDescription();
+        }
+    }
+
+    private static String fingerprint(Resource feed) {
+        try {
+            return feed.contentLength() + ":" + feed.lastModified();
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    /**
+     * Mutable counters of one import run plus the queue of products waiting for an embedding batch. Once an
+     * embedding call fails the remaining products are left for lazy embedding instead of failing every batch.
+     */
+    private static final class ImportProgress {
+        private final List<Product> pendingEmbeddings = new ArrayList<>();
+        private boolean embeddingEnabled;
+        private long recordsRead;
+        private long recordsSkipped;
+        private long recordsRejected;
+        private long rowsWritten;
+        private long productsEmbedded;
+        private long embeddingFailures;
+
+        ImportProgress(boolean embeddingEnabled) {
+            this.embeddingEnabled = embeddingEnabled;
+        }
+
+        void queue(List<Product> products) {
+            if (embeddingEnabled) {
+                pendingEmbeddings.addAll(products);
+            }
+        }
+
+        void embedFullBatches(SemanticRerankService reranker, int size) {
+            while (embeddingEnabled && pendingEmbeddings.size() >= size) {
+                embedNext(reranker, size);
+            }
+        }
+
+        void embed(SemanticRerankService reranker, int size) {
+            while (embeddingEnabled && !pendingEmbeddings.isEmpty()) {
+                embedNext(reranker, size);
+            }
+        }
+
+        private void embedNext(SemanticRerankService reranker, int size) {
+            List<Product> chunk = pendingEmbeddings.subList(0, Math.min(size, pendingEmbeddings.size()));
+            try {
+                productsEmbedded += reranker.refreshEmbeddings(List.copyOf(chunk));
+            } catch (RuntimeException e) {
+                embeddingFailures += chunk.size();
+                embeddingEnabled = false;
+                log.warn("Embedding during import failed, remaining products will be embedded on first use: {}",
+                        e.getMessage());
+            }
+            chunk.clear();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.lime.chatbotwithai.catalog;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads the configured product feed once the schema exists. The run starts from the first record because the
+ * in-memory database is empty on every boot; admin imports are the ones that resume from a checkpoint.
+ */
+@Component
+@ConditionalOnProperty(prefix = "catalog.ingest.startup", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CatalogStartupImporter implements ApplicationRunner {
+
+    private final CatalogImportService importService;
+    private final ResourceLoader resourceLoader;
+    private final String location;
+    private final boolean embed;
+
+    public CatalogStartupImporter(CatalogImportService importService,
+                                  ResourceLoader resourceLoader,
+                                  @Value("${catalog.ingest.startup.location:classpath:catalog/products.csv}") String location,
+                                  @Value("${catalog.ingest.startup.embed:false}") boolean embed) {
+        this.importService = importService;
+        this.resourceLoader = resourceLoader;
+        this.location = location;
+        this.embed = embed;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        importService.importFeed(resourceLoader.getResource(location), ProductFeedFormat.fromLocation(location), false, embed);
+    }
+}
@@ -0,0 +1,182 @@
+package org.lime.chatbotwithai.catalog;
+
+import org.lime.chatbotwithai.product.Product;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * RFC 4180 style CSV with a header row. Quoted fields may contain commas, doubled quotes and line breaks; a record
+ * continues over as many lines as its open quote spans. Columns are matched by name, accepting both the table names
+ * ({@code capacity_kg}) and the entity property names ({@code capacityKg}); unknown columns are ignored.
+ */
+class CsvProductFeedReader implements ProductFeedReader {
+
+    private final BufferedReader reader;
+    private final Map<String, Integer> columns = new HashMap<>();
+    // The next non-blank record, parsed only when it is handed out so a bad row fails alone.
+    private String next;
+    private long nextLine;
+    private long line;
+
+    CsvProductFeedReader(BufferedReader reader) throws IOException {
+        this.reader = reader;
+        String header = readRecord();
+        if (header == null) {
+            return;
+        }
+        List<String> names = parse(header.replace("\uFEFF", ""));
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().replace("_", "").toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("id")) {
+            throw new IllegalArgumentException("CSV feed has no id column");
+        }
+        advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    /**
+     * The next record; throws {@link IllegalArgumentException} for a row that is not a valid product, after which
+     * reading can continue with the following row.
+     */
+    @Override
+    public Product next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        String row = next;
+        long rowLine = nextLine;
+        try {
+            advance();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return toProduct(parse(row), rowLine);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void advance() throws IOException {
+        String row;
+        long rowLine;
+        do {
+            rowLine = line + 1;
+            row = readRecord();
+        } while (row != null && row.isBlank());
+        next = row;
+        nextLine = rowLine;
+    }
+
+    // One record: a line, joined with the following ones while a quoted field is still open. Escaped quotes come
+    // in pairs, so an odd count of quote characters means the record goes on. An unterminated quote ends at EOF.
+    private String readRecord() throws IOException {
+        String record = reader.readLine();
+        if (record == null) {
+            return null;
+        }
+        line++;
+        boolean open = quoteOpen(record, false);
+        while (open) {
+            String continuation = reader.readLine();
+            if (continuation == null) {
+                break;
+            }
+            line++;
+            record = record + "\n" + continuation;
+            open = quoteOpen(continuation, true);
+        }
+        return record;
+    }
+
+    private static boolean quoteOpen(String text, boolean open) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                open = !open;
+            }
+        }
+        return open;
+    }
+
+    private Product toProduct(List<String> fields, long rowLine) {
+        try {
+            return Product.builder()
+                    .id(integral(field(fields, "id")))
+                    .brand(field(fields, "brand"))
+                    .model(field(fields, "model"))
+                    .type(field(fields, "type"))
+                    .price(decimal(field(fields, "price")))
+                    .capacityKg(integer(field(fields, "capacitykg")))
+                    .widthCm(decimal(field(fields, "widthcm")))
+                    .heightCm(decimal(field(fields, "heightcm")))
+                    .depthCm(decimal(field(fields, "depthcm")))
+                    .description(field(fields, "description"))
+                    .build();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number on CSV line " + rowLine + ": " + e.getMessage(), e);
+        }
+    }
+
+    private String field(List<String> fields, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Long integral(String value) {
+        return value == null ? null : Long.valueOf(value);
+    }
+
+    private static Double decimal(String value) {
+        return value == null ? null : Double.valueOf(value);
+    }
+
+    private static Integer integer(String value) {
+        return value == null ? null : (int) Math.round(Double.parseDouble(value));
+    }
+
+    private static List<String> parse(String row) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < row.length(); i++) {
+            char c = row.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < row.length() && row.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+}
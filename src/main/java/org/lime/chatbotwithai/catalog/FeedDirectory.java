@@ -0,0 +1,53 @@
+package org.lime.chatbotwithai.catalog;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The only place admin imports may read feeds from. Locations are plain paths relative to
+ * {@code catalog.ingest.feed-dir}; URLs, other schemes, absolute paths and paths escaping the directory are
+ * rejected, so an import request can neither make the server fetch a remote URL nor read an arbitrary local file.
+ */
+@Component
+public class FeedDirectory {
+
+    private final Path root;
+
+    public FeedDirectory(@Value("${catalog.ingest.feed-dir:data/feeds}") Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    public Resource resolve(String location) {
+        if (location == null || location.isBlank()) {
+            throw new IllegalArgumentException("A feed location is required");
+        }
+        // Any colon means a scheme (http:, file:, classpath:) or a drive letter; neither is a relative path.
+        if (location.indexOf(':') >= 0 || location.startsWith("/") || location.startsWith("\\")) {
+            throw new IllegalArgumentException("Feed location must be a path relative to the feed directory");
+        }
+        Path resolved = root.resolve(location).normalize();
+        if (!resolved.startsWith(root) || resolved.equals(root)) {
+            throw new IllegalArgumentException("Feed location must be inside the feed directory");
+        }
+        // A symlink inside the directory must not lead back out of it.
+        if (Files.exists(resolved) && !realPath(resolved).startsWith(realPath(root))) {
+            throw new IllegalArgumentException("Feed location must be inside the feed directory");
+        }
+        return new FileSystemResource(resolved);
+    }
+
+    private static Path realPath(Path path) {
+        try {
+            return path.toRealPath();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot resolve feed location " + path, e);
+        }
+    }
+}
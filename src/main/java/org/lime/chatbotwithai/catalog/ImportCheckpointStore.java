@@ -0,0 +1,80 @@
+package org.lime.chatbotwithai.catalog;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Remembers how many records of a feed have been committed, so an interrupted import can resume after the last
+ * committed batch. A checkpoint only applies to the exact feed it was written for (same location, size and
+ * modification time); anything else starts from the first record.
+ */
+@Component
+public class ImportCheckpointStore {
+
+    public record Checkpoint(String location, String fingerprint, long committedRecords) {
+    }
+
+    private final Path directory;
+
+    public ImportCheckpointStore(@Value("${catalog.ingest.checkpoint-dir:${java.io.tmpdir}/chatbot-catalog-import}") Path directory) {
+        this.directory = directory;
+    }
+
+    public long resumeFrom(String location, String fingerprint) {
+        Path file = fileFor(location);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            return 0;
+        }
+        if (!fingerprint.equals(properties.getProperty("fingerprint"))) {
+            return 0;
+        }
+        return Long.parseLong(properties.getProperty("committedRecords", "0"));
+    }
+
+    public void save(Checkpoint checkpoint) {
+        Properties properties = new Properties();
+        properties.setProperty("location", checkpoint.location());
+        properties.setProperty("fingerprint", checkpoint.fingerprint());
+        properties.setProperty("committedRecords", Long.toString(checkpoint.committedRecords()));
+        try {
+            Files.createDirectories(directory);
+            Path file = fileFor(checkpoint.location());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                properties.store(writer, "catalog import checkpoint");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write import checkpoint for " + checkpoint.location(), e);
+        }
+    }
+
+    public void clear(String location) {
+        try {
+            Files.deleteIfExists(fileFor(location));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot clear import checkpoint for " + location, e);
+        }
+    }
+
+    private Path fileFor(String location) {
+        return directory.resolve(UUID.nameUUIDFromBytes(location.getBytes(StandardCharsets.UTF_8)) + ".checkpoint");
+    }
+}
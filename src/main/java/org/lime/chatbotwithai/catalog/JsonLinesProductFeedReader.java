@@ -0,0 +1,47 @@
+package org.lime.chatbotwithai.catalog;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import org.lime.chatbotwithai.product.Product;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * One JSON object per line with the {@link Product} property names ({@code capacityKg}, {@code widthCm}, ...).
+ */
+class JsonLinesProductFeedReader implements ProductFeedReader {
+
+    private final MappingIterator<Product> records;
+
+    JsonLinesProductFeedReader(BufferedReader reader, ObjectMapper mapper) throws IOException {
+        this.records = mapper.readerFor(Product.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .readValues(reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return records.hasNext();
+    }
+
+    /**
+     * The next record; throws {@link IllegalArgumentException} for a line that does not map to a product, after
+     * which the iterator resynchronizes on the following object.
+     */
+    @Override
+    public Product next() {
+        try {
+            return records.next();
+        } catch (RuntimeJsonMappingException e) {
+            throw new IllegalArgumentException("Invalid JSON record: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        records.close();
+    }
+}
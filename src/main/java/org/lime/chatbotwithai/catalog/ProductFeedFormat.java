@@ -0,0 +1,19 @@
+package org.lime.chatbotwithai.catalog;
+
+import java.util.Locale;
+
+public enum ProductFeedFormat {
+    CSV,
+    JSONL;
+
+    public static ProductFeedFormat fromLocation(String location) {
+        String lower = location == null ? "" : location.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".csv")) {
+            return CSV;
+        }
+        if (lower.endsWith(".jsonl") || lower.endsWith(".ndjson")) {
+            return JSONL;
+        }
+        throw new IllegalArgumentException("Cannot infer feed format from: " + location);
+    }
+}
@@ -0,0 +1,22 @@
+package org.lime.chatbotwithai.catalog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.lime.chatbotwithai.product.Product;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Forward-only reader over a product feed. Implementations hold at most one record in memory at a time.
+ */
+public interface ProductFeedReader extends Iterator<Product>, Closeable {
+
+    static ProductFeedReader open(BufferedReader reader, ProductFeedFormat format, ObjectMapper mapper) throws IOException {
+        return switch (format) {
+            case CSV -> new CsvProductFeedReader(reader);
+            case JSONL -> new JsonLinesProductFeedReader(reader, mapper);
+        };
+    }
+}
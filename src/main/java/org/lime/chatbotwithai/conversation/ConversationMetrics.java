@@ -4,6 +4,10 @@ import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Per-session counters. A turn updates them from the request thread, from pipeline threads (final retrieval) and,
+ * for streamed turns, from whichever thread completes the stream, so every method is synchronized.
+ */
 public class ConversationMetrics {
 
     private int turnCount;
@@ -13,35 +17,54 @@ public class ConversationMetrics {
     private int finalRetrievals;
     private int finalRetrievalWithHits;
     private int addToCartClicks;
+    private int transcriptRescans;
+    private long lastExtractionMillis;
+    private long maxExtractionMillis;
+    private long lastTurnMillis;
+    private long lastTurnStagesMillis;
     private final Instant createdAt = Instant.now();
 
-    public void incrementTurn() {
+    public synchronized void incrementTurn() {
         turnCount++;
     }
 
-    public void incrementSlotsCompleted() {
+    public synchronized void incrementSlotsCompleted() {
         slotsCompleted++;
     }
 
-    public void previewTriggered(boolean hadHits) {
+    public synchronized void previewTriggered(boolean hadHits) {
         previewsTriggered++;
         if (hadHits) {
             previewWithHits++;
         }
     }
 
-    public void finalRetrieval(boolean hadHits) {
+    public synchronized void finalRetrieval(boolean hadHits) {
         finalRetrievals++;
         if (hadHits) {
             finalRetrievalWithHits++;
         }
     }
 
-    public void addToCartClick() {
+    public synchronized void extraction(long nanos, boolean transcriptRescan) {
+        lastExtractionMillis = nanos / 1_000_000;
+        maxExtractionMillis = Math.max(maxExtractionMillis, lastExtractionMillis);
+        if (transcriptRescan) {
+            transcriptRescans++;
+        }
+    }
+
+    // Critical path of the last turn next to what its stages would have cost in sequence.
+    public synchronized void turnTiming(long criticalPathMillis, long stagesMillis) {
+        lastTurnMillis = criticalPathMillis;
+        lastTurnStagesMillis = stagesMillis;
+    }
+
+    public synchronized void addToCartClick() {
         addToCartClicks++;
     }
 
-    public Map<String, Object> snapshot() {
+    public synchronized Map<String, Object> snapshot() {
         Map<String, Object> payload = new HashMap<>();
         payload.put("turnCount", turnCount);
         payload.put("slotsCompleted", slotsCompleted);
@@ -50,6 +73,11 @@ public class ConversationMetrics {
         payload.put("finalRetrievals", finalRetrievals);
         payload.put("finalRetrievalHitRate", finalRetrievals == 0 ? 0d : finalRetrievalWithHits * 1.0 / finalRetrievals);
         payload.put("addToCartClicks", addToCartClicks);
+        payload.put("transcriptRescans", transcriptRescans);
+        payload.put("lastExtractionMs", lastExtractionMillis);
+        payload.put("maxExtractionMs", maxExtractionMillis);
+        payload.put("lastTurnMs", lastTurnMillis);
+        payload.put("lastTurnStagesMs", lastTurnStagesMillis);
         payload.put("conversationAgeSeconds", Math.max(0, Instant.now().getEpochSecond() - createdAt.getEpochSecond()));
         return payload;
     }
@@ -1,22 +1,37 @@
 package org.lime.chatbotwithai.conversation;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.lime.chatbotwithai.ai.QueryExtractionService;
 import org.lime.chatbotwithai.ai.QueryFilter;
 import org.lime.chatbotwithai.ai.SearchAnswerService;
 import org.lime.chatbotwithai.product.BrandCatalog;
+import org.lime.chatbotwithai.product.DimensionBox;
 import org.lime.chatbotwithai.product.Product;
+import org.lime.chatbotwithai.product.ProductFacetService;
+import org.lime.chatbotwithai.product.ProductFacets;
+import org.lime.chatbotwithai.product.ProductSummary;
 import org.lime.chatbotwithai.product.ProductSearchService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -30,12 +45,22 @@ public class ConversationService {
     private static final int PREVIEW_LIMIT = 3;
     private static final int FINAL_LIMIT = 5;
     private static final Pattern QUOTED_SELECTION = Pattern.compile("\"([^\"]+)\"");
+    // Corrections and relaxations that can change how earlier utterances should be read. Plain negations ("not too
+    // loud", "no dryer") and "any" are new constraints, not corrections, and must not trigger a transcript rescan.
+    private static final Pattern CORRECTION_PHRASES = Pattern.compile(
+            "\\b(?:actually|instead|i meant|i mean|rather than|correction|scratch that|never mind|changed my mind"
+                    + "|change (?:that|it) to|forget (?:that|the|about)|that's wrong|doesn't matter|does not matter"
+                    + "|don't care)\\b"
+                    + "|改成|换成|算了|其实|无所谓|不限");
 
     private final QueryExtractionService extractor;
     private final ProductSearchService productSearchService;
     private final BrandCatalog brandCatalog;
+    private final ProductFacetService facetService;
     private final QuestionGenerationService questionGenerationService;
     private final SearchAnswerService answerService;
+    private final MeterRegistry registry;
+    private final ExecutorService pipelinePool;
     private final Map<String, ConversationSession> sessions = new ConcurrentHashMap<>();
     private static final String[] PURCHASE_KEY_PHRASES = {
             "i'll take", "i will take", "lets take", "let's take", "take the", "take that one",
@@ -49,13 +74,29 @@ public class ConversationService {
     public ConversationService(QueryExtractionService extractor,
                                ProductSearchService productSearchService,
                                BrandCatalog brandCatalog,
+                               ProductFacetService facetService,
                                QuestionGenerationService questionGenerationService,
-                               SearchAnswerService answerService) {
+                               SearchAnswerService answerService,
+                               MeterRegistry registry,
+                               @Value("${conversation.pipeline.threads:16}") int pipelineThreads) {
         this.extractor = extractor;
         this.productSearchService = productSearchService;
         this.brandCatalog = brandCatalog;
+        this.facetService = facetService;
         this.questionGenerationService = questionGenerationService;
         this.answerService = answerService;
+        this.registry = registry;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pipelinePool = Executors.newFixedThreadPool(pipelineThreads, runnable -> {
+            Thread thread = new Thread(runnable, "conversation-turn-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pipelinePool.shutdownNow();
     }
 
     public ConversationTurnResponse startConversation(String localeHint) {
@@ -81,7 +122,7 @@ public class ConversationService {
                 .sessionId(session.getId())
                 .status("collecting")
                 .assistant(question)
-                .chips(chipsFor(nextSlot))
+                .chips(chipsFor(nextSlot, session.getFilter()))
                 .slots(buildSlotSnapshots(session))
                 .metrics(session.getMetrics().snapshot())
                 .build();
@@ -91,122 +132,185 @@ public class ConversationService {
         ConversationSession session = requireSession(sessionId);
         String userText = resolveUserText(request);
         if (!StringUtils.hasText(userText)) {
-            return ConversationTurnResponse.builder()
-                    .sessionId(session.getId())
-                    .status(session.isCompleted() ? "completed" : "collecting")
-                    .assistant(new AssistantMessage("I did not catch that — could you rephrase?", null))
-                    .chips(List.of())
-                    .slots(buildSlotSnapshots(session))
-                    .metrics(session.getMetrics().snapshot())
-                    .build();
+            return notUnderstood(session);
+        }
+
+        TurnPipeline pipeline = new TurnPipeline(pipelinePool, registry);
+        PreparedTurn turn = prepareTurn(session, userText, pipeline);
+        CompletableFuture<AssistantMessage> assistant = turn.assistant().get();
+        ResultBlock result = TurnPipeline.join(turn.result());
+        return turn.head().toBuilder()
+                .assistant(TurnPipeline.join(assistant))
+                .chips(TurnPipeline.join(turn.chips()))
+                .result(result)
+                .metrics(finish(pipeline, session))
+                .build();
+    }
+
+    /**
+     * Applies the reply like {@link #applyUserReply} but returns as soon as the payload that does not depend on
+     * the model is known, so the caller can send the preview and slots at roughly the extraction latency and then
+     * relay the assistant message token by token.
+     */
+    public StreamedTurn streamUserReply(String sessionId, UserReplyRequest request) {
+        ConversationSession session = requireSession(sessionId);
+        String userText = resolveUserText(request);
+        if (!StringUtils.hasText(userText)) {
+            ConversationTurnResponse response = notUnderstood(session);
+            return new StreamedTurn(response.toBuilder().assistant(null).build(),
+                    Flux.just(response.assistant().text()), CompletableFuture.completedFuture(null), text -> response);
         }
 
+        TurnPipeline pipeline = new TurnPipeline(pipelinePool, registry);
+        PreparedTurn turn = prepareTurn(session, userText, pipeline);
+        ConversationTurnResponse head = turn.head().toBuilder()
+                .chips(TurnPipeline.join(turn.chips()))
+                .metrics(session.getMetrics().snapshot())
+                .build();
+        return new StreamedTurn(head, turn.assistantTokens().get(), turn.result(), text -> head.toBuilder()
+                .assistant(new AssistantMessage(text.trim(), turn.assistantHint()))
+                .result(TurnPipeline.join(turn.result()))
+                .metrics(finish(pipeline, session))
+                .build());
+    }
+
+    /**
+     * Everything a turn decides before its assistant message is written. The message itself is only started by
+     * the caller, either whole ({@code assistant}) or as a token stream ({@code assistantTokens}).
+     */
+    private record PreparedTurn(ConversationTurnResponse head,
+                                CompletableFuture<List<String>> chips,
+                                CompletableFuture<ResultBlock> result,
+                                Supplier<CompletableFuture<AssistantMessage>> assistant,
+                                Supplier<Flux<String>> assistantTokens,
+                                String assistantHint) {
+    }
+
+    private PreparedTurn prepareTurn(ConversationSession session, String userText, TurnPipeline pipeline) {
         session.getMetrics().incrementTurn();
         session.getUserUtterances().add(userText);
         detectLocale(session, userText);
 
         QueryFilter previousFilter = copyFilter(session.getFilter());
-        QueryFilter merged = mergeFilters(session, extractor.extract(String.join("\n", session.getUserUtterances())));
+        QueryFilter merged = pipeline.run("extract", () -> extractTurn(session, userText));
         session.setFilter(merged);
         updateSlotStages(session);
         boolean brandRelaxed = previousFilter != null
                 && previousFilter.getBrand() != null
                 && merged.getBrand() == null;
         String contextHint = brandRelaxed ? "brand_relaxed:" + previousFilter.getBrand() : null;
+        String transcript = String.join(". ", session.getUserUtterances());
 
-        List<Product> preview = producePreviewIfUseful(session);
+        // The shortlist depends only on the filter, so a turn that is about to finish starts it before the preview.
+        CompletableFuture<List<Product>> shortlist = shouldFinalize(session) || isPurchaseIntent(userText, null)
+                ? startShortlist(pipeline, transcript, merged)
+                : null;
+
+        List<ProductSummary> preview = pipeline.run("preview", () -> producePreviewIfUseful(session));
         session.getMetrics().previewTriggered(!preview.isEmpty());
 
         String selectionHint = extractSelection(userText, session.getFilter(), preview, null);
+        String localeHint = session.getLocaleHint();
+        CompletableFuture<List<String>> noChips = CompletableFuture.completedFuture(List.of());
 
         if (isPurchaseIntent(userText, selectionHint)) {
             session.setCompleted(true);
-            List<Product> results = productSearchService.finalResults(
-                    String.join(". ", session.getUserUtterances()),
-                    session.getFilter(),
-                    FINAL_LIMIT,
-                    DIMENSION_TOLERANCE_CM
-            );
-            session.getMetrics().finalRetrieval(!results.isEmpty());
-            String selection = selectionHint != null
-                    ? selectionHint
-                    : extractSelection(userText, session.getFilter(), preview, results);
-            ResultBlock resultBlock = results.isEmpty() ? null : new ResultBlock(
-                    answerService.explain(
-                            String.join(". ", session.getUserUtterances()),
-                            session.getFilter(),
-                            results
-                    ),
-                    toPreviewItems(results, session.getFilter())
-            );
-            AssistantMessage closing = new AssistantMessage(
-                    buildPurchaseClosing(selection, session.getLocaleHint()),
+            CompletableFuture<List<Product>> results = shortlist != null
+                    ? shortlist
+                    : startShortlist(pipeline, transcript, merged);
+            CompletableFuture<ResultBlock> resultBlock = results.thenApplyAsync(found -> {
+                session.getMetrics().finalRetrieval(!found.isEmpty());
+                return found.isEmpty() ? null : new ResultBlock(
+                        pipeline.run("explain", () -> answerService.explain(transcript, merged, found)),
+                        toPreviewItems(summaries(found), merged)
+                );
+            }, pipelinePool);
+            CompletableFuture<AssistantMessage> closing = results.thenApply(found -> new AssistantMessage(
+                    buildPurchaseClosing(selectionHint != null
+                            ? selectionHint
+                            : extractSelection(userText, merged, preview, summaries(found)), localeHint),
                     null
-            );
-            return ConversationTurnResponse.builder()
-                    .sessionId(session.getId())
-                    .status("completed")
-                    .assistant(closing)
-                    .result(resultBlock)
-                    .preview(previewBlock(preview, session))
-                    .slots(buildSlotSnapshots(session))
-                    .metrics(session.getMetrics().snapshot())
-                    .build();
+            ));
+            return new PreparedTurn(head(session, "completed", preview), noChips, resultBlock,
+                    () -> closing, () -> Mono.fromFuture(closing).map(AssistantMessage::text).flux(), null);
         }
 
         if (shouldFinalize(session)) {
             session.setCompleted(true);
-            List<Product> results = productSearchService.finalResults(
-                    String.join(". ", session.getUserUtterances()),
-                    session.getFilter(),
-                    FINAL_LIMIT,
-                    DIMENSION_TOLERANCE_CM
-            );
-            session.getMetrics().finalRetrieval(!results.isEmpty());
-            ResultBlock resultBlock = new ResultBlock(
-                    answerService.explain(
-                            String.join(". ", session.getUserUtterances()),
-                            session.getFilter(),
-                            results
-                    ),
-                    toPreviewItems(results, session.getFilter())
-            );
-            return ConversationTurnResponse.builder()
-                    .sessionId(session.getId())
-                    .status("completed")
-                    .assistant(questionGenerationService.generateCompletion(
-                            previewHighlights(results),
-                            session.getLocaleHint()
-                    ))
-                    .result(resultBlock)
-                    .preview(previewBlock(preview, session))
-                    .slots(buildSlotSnapshots(session))
-                    .metrics(session.getMetrics().snapshot())
-                    .build();
+            CompletableFuture<List<Product>> results = shortlist != null
+                    ? shortlist
+                    : startShortlist(pipeline, transcript, merged);
+            CompletableFuture<ResultBlock> resultBlock = results.thenApplyAsync(found -> {
+                session.getMetrics().finalRetrieval(!found.isEmpty());
+                return new ResultBlock(
+                        pipeline.run("explain", () -> answerService.explain(transcript, merged, found)),
+                        toPreviewItems(summaries(found), merged)
+                );
+            }, pipelinePool);
+            // The closing sentence only needs example products: with a preview it is written while the shortlist
+            // is still being reranked, otherwise from the shortlist itself.
+            Supplier<CompletableFuture<AssistantMessage>> completion = preview.isEmpty()
+                    ? () -> results.thenApplyAsync(found -> pipeline.run("completion",
+                            () -> questionGenerationService.generateCompletion(
+                                    previewHighlights(summaries(found)), localeHint)), pipelinePool)
+                    : () -> pipeline.async("completion",
+                            () -> questionGenerationService.generateCompletion(previewHighlights(preview), localeHint));
+            Supplier<Flux<String>> completionTokens = preview.isEmpty()
+                    ? () -> Mono.fromFuture(results).flatMapMany(found -> questionGenerationService.streamCompletion(
+                            previewHighlights(summaries(found)), localeHint))
+                    : () -> questionGenerationService.streamCompletion(previewHighlights(preview), localeHint);
+            return new PreparedTurn(head(session, "completed", preview), noChips, resultBlock,
+                    completion, completionTokens, null);
         }
 
         SlotType nextSlot = determineNextSlot(session);
-        AssistantMessage assistantMessage = questionGenerationService.generateQuestion(
-                nextSlot,
-                session.getSlotStages().getOrDefault(nextSlot, SlotStage.MISSING),
-                session.getFilter(),
-                previewHighlights(preview),
-                session.getLocaleHint(),
-                userText,
-                contextHint
-        );
-
+        SlotStage nextStage = session.getSlotStages().getOrDefault(nextSlot, SlotStage.MISSING);
+        CompletableFuture<List<String>> chips = pipeline.async("chips", () -> chipsFor(nextSlot, merged));
+        List<String> highlights = previewHighlights(preview);
+        return new PreparedTurn(head(session, "collecting", preview), chips, CompletableFuture.completedFuture(null),
+                () -> pipeline.async("question", () -> questionGenerationService.generateQuestion(
+                        nextSlot, nextStage, merged, highlights, localeHint, userText, contextHint)),
+                () -> questionGenerationService.streamQuestion(
+                        nextSlot, nextStage, merged, highlights, localeHint, userText, contextHint),
+                questionGenerationService.hintFor(nextSlot, localeHint));
+    }
+
+    private ConversationTurnResponse head(ConversationSession session, String status, List<ProductSummary> preview) {
         return ConversationTurnResponse.builder()
                 .sessionId(session.getId())
-                .status("collecting")
-                .assistant(assistantMessage)
-                .chips(chipsFor(nextSlot))
+                .status(status)
                 .preview(previewBlock(preview, session))
                 .slots(buildSlotSnapshots(session))
+                .build();
+    }
+
+    private ConversationTurnResponse notUnderstood(ConversationSession session) {
+        return ConversationTurnResponse.builder()
+                .sessionId(session.getId())
+                .status(session.isCompleted() ? "completed" : "collecting")
+                .assistant(new AssistantMessage("I did not catch that — could you rephrase?", null))
+                .chips(List.of())
+                .slots(buildSlotSnapshots(session))
                 .metrics(session.getMetrics().snapshot())
                 .build();
     }
 
+    private CompletableFuture<List<Product>> startShortlist(TurnPipeline pipeline, String transcript,
+                                                            QueryFilter filter) {
+        return pipeline.async("final-results", () -> productSearchService.finalResults(
+                transcript,
+                filter,
+                FINAL_LIMIT,
+                DIMENSION_TOLERANCE_CM
+        ));
+    }
+
+    private static Map<String, Object> finish(TurnPipeline pipeline, ConversationSession session) {
+        TurnPipeline.Timing timing = pipeline.finish();
+        session.getMetrics().turnTiming(timing.criticalPathMillis(), timing.stagesMillis());
+        return session.getMetrics().snapshot();
+    }
+
     private static QueryFilter copyFilter(QueryFilter original) {
         if (original == null) {
             return null;
@@ -261,8 +365,28 @@ public class ConversationService {
         session.setLocaleHint("en");
     }
 
-    private QueryFilter mergeFilters(ConversationSession session, QueryFilter incoming) {
-        QueryFilter baseline = Optional.ofNullable(session.getFilter()).orElseGet(QueryFilter::new);
+    /**
+     * Extracts only the newest utterance and merges it into the session filter as a delta, so the prompt and the
+     * extraction latency stay the same size on turn 20 as on turn 1. When the utterance corrects or relaxes
+     * something ("actually", "instead", "doesn't matter"), the whole transcript is extracted once more so earlier
+     * turns can be reread, and the newest utterance is still applied last.
+     */
+    private QueryFilter extractTurn(ConversationSession session, String userText) {
+        long started = System.nanoTime();
+        QueryFilter delta = extractor.extract(userText);
+        boolean rescan = session.getUserUtterances().size() > 1
+                && CORRECTION_PHRASES.matcher(userText.toLowerCase(Locale.ROOT)).find();
+        QueryFilter baseline = session.getFilter();
+        if (rescan) {
+            baseline = mergeFilters(baseline, extractor.extract(String.join("\n", session.getUserUtterances())));
+        }
+        QueryFilter merged = mergeFilters(baseline, delta);
+        session.getMetrics().extraction(System.nanoTime() - started, rescan);
+        return merged;
+    }
+
+    private QueryFilter mergeFilters(QueryFilter current, QueryFilter incoming) {
+        QueryFilter baseline = Optional.ofNullable(current).orElseGet(QueryFilter::new);
         if (incoming == null) {
             return baseline;
         }
@@ -311,14 +435,14 @@ public class ConversationService {
                 || filter.getWidthCm() != null || filter.getHeightCm() != null || filter.getDepthCm() != null;
     }
 
-    private List<Product> producePreviewIfUseful(ConversationSession session) {
+    private List<ProductSummary> producePreviewIfUseful(ConversationSession session) {
         if (!hasAtLeastOneValue(session.getFilter())) {
             return List.of();
         }
         return productSearchService.preview(session.getFilter(), PREVIEW_LIMIT);
     }
 
-    private PreviewBlock previewBlock(List<Product> preview, ConversationSession session) {
+    private PreviewBlock previewBlock(List<ProductSummary> preview, ConversationSession session) {
         if (preview == null || preview.isEmpty()) {
             return null;
         }
@@ -326,65 +450,51 @@ public class ConversationService {
         return new PreviewBlock(headline, toPreviewItems(preview, session.getFilter()));
     }
 
-    private static List<PreviewItem> toPreviewItems(List<Product> products, QueryFilter filter) {
+    // Final results are full entities (they went through rerank); the payload only needs the summary fields.
+    private static List<ProductSummary> summaries(List<Product> products) {
+        return products.stream().map(ProductSummary::of).toList();
+    }
+
+    private static List<PreviewItem> toPreviewItems(List<ProductSummary> products, QueryFilter filter) {
         if (products == null) {
             return List.of();
         }
         return products.stream()
                 .map(product -> new PreviewItem(
-                        product.getId(),
-                        product.getBrand(),
-                        product.getModel(),
-                        product.getPrice(),
-                        product.getType(),
-                        product.getCapacityKg(),
+                        product.id(),
+                        product.brand(),
+                        product.model(),
+                        product.price(),
+                        product.type(),
+                        product.capacityKg(),
                         deriveBadges(product, filter)
                 ))
                 .toList();
     }
 
-    private static List<String> deriveBadges(Product product, QueryFilter filter) {
+    private static List<String> deriveBadges(ProductSummary product, QueryFilter filter) {
         List<String> badges = new ArrayList<>();
         if (filter != null) {
-            if (filter.getMaxPrice() != null && product.getPrice() != null && product.getPrice() <= filter.getMaxPrice()) {
+            if (filter.getMaxPrice() != null && product.price() != null && product.price() <= filter.getMaxPrice()) {
                 badges.add("Within budget");
             }
-            if (filter.getMinCapacityKg() != null && product.getCapacityKg() != null && product.getCapacityKg() >= filter.getMinCapacityKg()) {
+            if (filter.getMinCapacityKg() != null && product.capacityKg() != null && product.capacityKg() >= filter.getMinCapacityKg()) {
                 badges.add("Capacity match");
             }
-            if (filter.getType() != null && Objects.equals(filter.getType().toLowerCase(), String.valueOf(product.getType()).toLowerCase())) {
+            if (filter.getType() != null && Objects.equals(filter.getType().toLowerCase(), String.valueOf(product.type()).toLowerCase())) {
                 badges.add("Type match");
             }
-            if (hasDimensionConstraints(filter) && dimensionsMatch(filter, product)) {
+            DimensionBox box = DimensionBox.of(filter);
+            if (box != null && box.fits(product, DIMENSION_TOLERANCE_CM)) {
                 badges.add("Dimension fit");
             }
-            if (filter.getBrand() != null && product.getBrand() != null && filter.getBrand().equalsIgnoreCase(product.getBrand())) {
+            if (filter.getBrand() != null && product.brand() != null && filter.getBrand().equalsIgnoreCase(product.brand())) {
                 badges.add("Brand match");
             }
         }
         return badges;
     }
 
-    private static boolean hasDimensionConstraints(QueryFilter filter) {
-        return filter.getWidthCm() != null || filter.getHeightCm() != null || filter.getDepthCm() != null;
-    }
-
-    private static boolean dimensionsMatch(QueryFilter filter, Product product) {
-        return matchesDimension(filter.getWidthCm(), product.getWidthCm())
-                && matchesDimension(filter.getHeightCm(), product.getHeightCm())
-                && matchesDimension(filter.getDepthCm(), product.getDepthCm());
-    }
-
-    private static boolean matchesDimension(Double expected, Double actual) {
-        if (expected == null) {
-            return true;
-        }
-        if (actual == null) {
-            return false;
-        }
-        return Math.abs(actual - expected) <= DIMENSION_TOLERANCE_CM;
-    }
-
     private void updateSlotStages(ConversationSession session) {
         QueryFilter filter = session.getFilter();
         Map<SlotType, SlotStage> updated = new EnumMap<>(SlotType.class);
@@ -476,7 +586,80 @@ public class ConversationService {
         return budgetReady && typeReady && capacityReady;
     }
 
-    private List<String> chipsFor(SlotType slotType) {
+    public QueryFilter currentFilter(String sessionId) {
+        return copyFilter(requireSession(sessionId).getFilter());
+    }
+
+    /**
+     * Chips come from facet counts over the products that match every other slot, so each chip leads to at least
+     * one product. The static suggestions are only used when nothing matches.
+     */
+    private List<String> chipsFor(SlotType slotType, QueryFilter filter) {
+        ProductFacets facets = facetService.facets(withoutSlot(filter, slotType), DIMENSION_TOLERANCE_CM);
+        List<String> chips = switch (slotType) {
+            case BUDGET -> budgetChips(facets);
+            case TYPE -> facets.types().stream()
+                    .map(type -> StringUtils.capitalize(type.value()) + " load")
+                    .toList();
+            case CAPACITY -> facets.capacities().stream()
+                    .sorted(Comparator.comparingInt(ProductFacets.CapacityCount::count).reversed())
+                    .limit(3)
+                    .sorted(Comparator.comparingInt(ProductFacets.CapacityCount::capacityKg))
+                    .map(capacity -> capacity.capacityKg() + "kg")
+                    .toList();
+            case BRAND -> facets.brands().stream()
+                    .limit(5)
+                    .map(ProductFacets.ValueCount::value)
+                    .toList();
+            case DIMENSIONS -> facets.footprints().stream()
+                    .limit(2)
+                    .map(f -> f.widthCm() + "×" + f.heightCm() + "×" + f.depthCm() + " cm")
+                    .toList();
+        };
+        return chips.isEmpty() ? defaultChips(slotType) : chips;
+    }
+
+    // Price ceilings at the quartiles of the matching products, rounded up to the facet bucket edge.
+    private static List<String> budgetChips(ProductFacets facets) {
+        List<String> chips = new ArrayList<>();
+        int cumulative = 0;
+        int quartile = 1;
+        for (ProductFacets.PriceBucketCount bucket : facets.priceBuckets()) {
+            cumulative += bucket.count();
+            String chip = "≤ " + bucket.toEur() + "€";
+            while (quartile <= 3 && cumulative * 4 >= facets.matches() * quartile) {
+                if (!chips.contains(chip)) {
+                    chips.add(chip);
+                }
+                quartile++;
+            }
+        }
+        return chips;
+    }
+
+    private static QueryFilter withoutSlot(QueryFilter filter, SlotType slotType) {
+        QueryFilter open = filter == null ? new QueryFilter() : copyFilter(filter);
+        switch (slotType) {
+            case BUDGET -> {
+                open.setMinPrice(null);
+                open.setMaxPrice(null);
+            }
+            case TYPE -> open.setType(null);
+            case CAPACITY -> {
+                open.setMinCapacityKg(null);
+                open.setMaxCapacityKg(null);
+            }
+            case BRAND -> open.setBrand(null);
+            case DIMENSIONS -> {
+                open.setWidthCm(null);
+                open.setHeightCm(null);
+                open.setDepthCm(null);
+            }
+        }
+        return open;
+    }
+
+    private List<String> defaultChips(SlotType slotType) {
         return switch (slotType) {
             case BUDGET -> List.of("≤ 500€", "≤ 600€", "≤ 700€");
             case TYPE -> List.of("Front load", "Top load");
@@ -512,8 +695,8 @@ public class ConversationService {
 
     private String extractSelection(String text,
                                     QueryFilter filter,
-                                    List<Product> preview,
-                                    List<Product> results) {
+                                    List<ProductSummary> preview,
+                                    List<ProductSummary> results) {
         if (!StringUtils.hasText(text)) {
             return null;
         }
@@ -526,25 +709,25 @@ public class ConversationService {
                 && lower.contains(filter.getBrand().toLowerCase(Locale.ROOT))) {
             return filter.getBrand();
         }
-        List<Product> candidates = new ArrayList<>();
+        List<ProductSummary> candidates = new ArrayList<>();
         if (preview != null) {
             candidates.addAll(preview);
         }
         if (results != null) {
             candidates.addAll(results);
         }
-        for (Product product : candidates) {
+        for (ProductSummary product : candidates) {
             if (product == null) {
                 continue;
             }
-            if (product.getModel() != null
-                    && lower.contains(product.getModel().toLowerCase(Locale.ROOT))) {
-                return (product.getBrand() == null ? "" : product.getBrand() + " ")
-                        + product.getModel();
+            if (product.model() != null
+                    && lower.contains(product.model().toLowerCase(Locale.ROOT))) {
+                return (product.brand() == null ? "" : product.brand() + " ")
+                        + product.model();
             }
-            if (product.getBrand() != null
-                    && lower.contains(product.getBrand().toLowerCase(Locale.ROOT))) {
-                return product.getBrand();
+            if (product.brand() != null
+                    && lower.contains(product.brand().toLowerCase(Locale.ROOT))) {
+                return product.brand();
             }
         }
         return null;
@@ -605,12 +788,12 @@ public class ConversationService {
         return w + "×" + h + "×" + d + " cm";
     }
 
-    private static List<String> previewHighlights(List<Product> preview) {
+    private static List<String> previewHighlights(List<ProductSummary> preview) {
         if (preview == null || preview.isEmpty()) {
             return List.of();
         }
         return preview.stream()
-                .map(product -> product.getBrand() + " " + product.getModel())
+                .map(product -> product.brand() + " " + product.model())
                 .toList();
     }
 
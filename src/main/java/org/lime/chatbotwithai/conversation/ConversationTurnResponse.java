@@ -6,7 +6,7 @@ import lombok.Singular;
 import java.util.List;
 import java.util.Map;
 
-@Builder
+@Builder(toBuilder = true)
 public record ConversationTurnResponse(
         String sessionId,
         String status,
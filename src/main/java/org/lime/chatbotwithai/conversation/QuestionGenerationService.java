@@ -2,9 +2,11 @@ package org.lime.chatbotwithai.conversation;
 
 import org.lime.chatbotwithai.ai.QueryFilter;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.Locale;
@@ -82,43 +84,82 @@ public class QuestionGenerationService {
                                              String localeHint,
                                              String latestUserMessage,
                                              String contextHint) {
-        String language = resolveLanguage(localeHint);
-        String filters = renderFilterSummary(currentFilter);
-        String preview = previewHighlights == null || previewHighlights.isEmpty()
-                ? "none"
-                : previewHighlights.stream().limit(3).collect(Collectors.joining("\n"));
+        String message = chatClient.prompt(questionPrompt(slot, stage, currentFilter, previewHighlights, localeHint,
+                        latestUserMessage, contextHint))
+                .call()
+                .content()
+                .trim();
+        return new AssistantMessage(message, hintFor(slot, localeHint));
+    }
+
+    /**
+     * The same message as {@link #generateQuestion}, as the model produces it. The hint is not part of the
+     * stream; use {@link #hintFor}.
+     */
+    public Flux<String> streamQuestion(SlotType slot,
+                                       SlotStage stage,
+                                       QueryFilter currentFilter,
+                                       List<String> previewHighlights,
+                                       String localeHint,
+                                       String latestUserMessage,
+                                       String contextHint) {
+        return chatClient.prompt(questionPrompt(slot, stage, currentFilter, previewHighlights, localeHint,
+                        latestUserMessage, contextHint))
+                .stream()
+                .content();
+    }
+
+    public AssistantMessage generateCompletion(List<String> previewHighlights, String localeHint) {
+        String message = chatClient.prompt(completionPrompt(previewHighlights, localeHint))
+                .call()
+                .content()
+                .trim();
+        return new AssistantMessage(message, null);
+    }
+
+    public Flux<String> streamCompletion(List<String> previewHighlights, String localeHint) {
+        return chatClient.prompt(completionPrompt(previewHighlights, localeHint))
+                .stream()
+                .content();
+    }
+
+    public String hintFor(SlotType slot, String localeHint) {
+        return hintForSlot(slot, resolveLanguage(localeHint));
+    }
+
+    private static Prompt questionPrompt(SlotType slot,
+                                         SlotStage stage,
+                                         QueryFilter currentFilter,
+                                         List<String> previewHighlights,
+                                         String localeHint,
+                                         String latestUserMessage,
+                                         String contextHint) {
         String lastMessage = StringUtils.hasText(latestUserMessage) ? latestUserMessage : "none";
         String context = StringUtils.hasText(contextHint) ? contextHint : "none";
         Map<String, Object> vars = Map.of(
-                "language", language,
+                "language", resolveLanguage(localeHint),
                 "slot_description", slotDescription(slot),
                 "stage", stage.name().toLowerCase(Locale.ROOT),
-                "filters", filters,
-                "preview", preview,
+                "filters", renderFilterSummary(currentFilter),
+                "preview", renderPreview(previewHighlights),
                 "latest_user_message", lastMessage,
                 "context_hint", context
         );
-        String message = chatClient.prompt(QUESTION_TEMPLATE.create(vars))
-                .call()
-                .content()
-                .trim();
-        return new AssistantMessage(message, hintForSlot(slot, language));
+        return QUESTION_TEMPLATE.create(vars);
     }
 
-    public AssistantMessage generateCompletion(List<String> previewHighlights, String localeHint) {
-        String language = resolveLanguage(localeHint);
-        String preview = previewHighlights == null || previewHighlights.isEmpty()
-                ? "none"
-                : previewHighlights.stream().limit(3).collect(Collectors.joining("\n"));
+    private static Prompt completionPrompt(List<String> previewHighlights, String localeHint) {
         Map<String, Object> vars = Map.of(
-                "language", language,
-                "preview", preview
+                "language", resolveLanguage(localeHint),
+                "preview", renderPreview(previewHighlights)
         );
-        String message = chatClient.prompt(COMPLETION_TEMPLATE.create(vars))
-                .call()
-                .content()
-                .trim();
-        return new AssistantMessage(message, null);
+        return COMPLETION_TEMPLATE.create(vars);
+    }
+
+    private static String renderPreview(List<String> previewHighlights) {
+        return previewHighlights == null || previewHighlights.isEmpty()
+                ? "none"
+                : previewHighlights.stream().limit(3).collect(Collectors.joining("\n"));
     }
 
     private static String resolveLanguage(String hint) {
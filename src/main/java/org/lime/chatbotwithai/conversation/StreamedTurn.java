@@ -0,0 +1,21 @@
+package org.lime.chatbotwithai.conversation;
+
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static org.lime.chatbotwithai.conversation.ConversationTurnResponse.ResultBlock;
+
+/**
+ * A turn whose assistant message is still being written. {@code head} is everything decided before the model is
+ * asked (status, preview, chips, slots); {@code assistantTokens} is the message as the model produces it;
+ * {@code result} completes with the shortlist block, or {@code null} when the turn has none. Once the tokens and
+ * the result are both in, {@code complete} turns the full message text into the same response the blocking
+ * endpoint would have returned.
+ */
+public record StreamedTurn(ConversationTurnResponse head,
+                           Flux<String> assistantTokens,
+                           CompletableFuture<ResultBlock> result,
+                           Function<String, ConversationTurnResponse> complete) {
+}
@@ -0,0 +1,67 @@
+package org.lime.chatbotwithai.conversation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The stages of one conversation turn. Stages started with {@link #async} run on the shared pool and overlap with
+ * whatever the request thread does next; {@link #run} stages run inline. Every stage is timed as
+ * {@code conversation.turn.stage{stage}}. Because the request thread only ever waits for stages it needs, the
+ * turn's wall-clock time is its critical path ({@code conversation.turn}); the sum of the stage times is what the
+ * same turn would have cost run strictly in sequence.
+ */
+final class TurnPipeline {
+
+    record Timing(long criticalPathMillis, long stagesMillis) {
+    }
+
+    private final Executor pool;
+    private final MeterRegistry registry;
+    private final long started = System.nanoTime();
+    private final AtomicLong stageNanos = new AtomicLong();
+
+    TurnPipeline(Executor pool, MeterRegistry registry) {
+        this.pool = pool;
+        this.registry = registry;
+    }
+
+    <T> CompletableFuture<T> async(String stage, Supplier<T> work) {
+        return CompletableFuture.supplyAsync(() -> run(stage, work), pool);
+    }
+
+    <T> T run(String stage, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            stageNanos.addAndGet(elapsed);
+            Timer.builder("conversation.turn.stage").tag("stage", stage).register(registry)
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Waits for a stage, rethrowing its own exception rather than the {@link CompletionException} wrapper.
+     */
+    static <T> T join(CompletableFuture<T> stage) {
+        try {
+            return stage.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    Timing finish() {
+        long elapsed = System.nanoTime() - started;
+        Timer.builder("conversation.turn").register(registry).record(elapsed, TimeUnit.NANOSECONDS);
+        return new Timing(elapsed / 1_000_000, stageNanos.get() / 1_000_000);
+    }
+}
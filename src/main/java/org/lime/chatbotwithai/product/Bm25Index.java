@@ -0,0 +1,199 @@
+package org.lime.chatbotwithai.product;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongPredicate;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable inverted index over brand, model, type and description with Okapi BM25 scoring, built with every
+ * {@link CatalogSnapshot}. It keeps the exact terms embeddings tend to blur ("ecosilence", "steam", "1600rpm",
+ * "wifi") and needs no external service. Field matches are weighted (brand and model count double) before the
+ * BM25 saturation; postings are primitive arrays sorted by document, so a query touches only the postings of its
+ * own terms.
+ * <p>
+ * Tokens are accent-folded, lower-cased alphanumeric runs. Hyphenated words are also indexed joined
+ * ({@code wi-fi} -> {@code wifi}) and a number followed by a unit word is also indexed as one token
+ * ({@code 1600 rpm} -> {@code 1600rpm}), so both spellings of a query match.
+ */
+public final class Bm25Index {
+
+    public record Hit(long id, float score) {
+    }
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int BRAND_WEIGHT = 2;
+    private static final int MODEL_WEIGHT = 2;
+    private static final int TYPE_WEIGHT = 1;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern HYPHENATED = Pattern.compile("[\\p{Alnum}]+(?:-[\\p{Alnum}]+)+");
+    private static final Pattern NUMBER_UNIT = Pattern.compile("(\\d+)\\s+(rpm|kg|cm|mm|db|l|w|kwh|min)\\b");
+    private static final Pattern NON_ALNUM = Pattern.compile("[^\\p{Alnum}]+");
+
+    private record Postings(int[] docs, float[] weights) {
+    }
+
+    private final long[] ids;
+    private final float[] lengthNorm;
+    private final Map<String, Postings> postings;
+    private final Map<Long, Integer> docById;
+
+    private Bm25Index(List<Product> products) {
+        int size = products.size();
+        this.ids = new long[size];
+        int[] lengths = new int[size];
+        Map<String, List<int[]>> building = new HashMap<>();
+        Map<Long, Integer> docs = new HashMap<>();
+        long totalLength = 0;
+        for (int doc = 0; doc < size; doc++) {
+            Product product = products.get(doc);
+            ids[doc] = product.getId() == null ? -1 : product.getId();
+            docs.put(ids[doc], doc);
+            Map<String, Integer> termWeights = new HashMap<>();
+            lengths[doc] += addField(termWeights, product.getBrand(), BRAND_WEIGHT);
+            lengths[doc] += addField(termWeights, product.getModel(), MODEL_WEIGHT);
+            lengths[doc] += addField(termWeights, product.getType(), TYPE_WEIGHT);
+            lengths[doc] += addField(termWeights, product.getDescription(), DESCRIPTION_WEIGHT);
+            totalLength += lengths[doc];
+            for (Map.Entry<String, Integer> term : termWeights.entrySet()) {
+                building.computeIfAbsent(term.getKey(), t -> new ArrayList<>()).add(new int[]{doc, term.getValue()});
+            }
+        }
+        double averageLength = size == 0 ? 1 : Math.max(1, (double) totalLength / size);
+        this.lengthNorm = new float[size];
+        for (int doc = 0; doc < size; doc++) {
+            lengthNorm[doc] = (float) (K1 * (1 - B + B * lengths[doc] / averageLength));
+        }
+        Map<String, Postings> index = new HashMap<>(building.size() * 2);
+        for (Map.Entry<String, List<int[]>> term : building.entrySet()) {
+            List<int[]> entries = term.getValue();
+            int[] postingDocs = new int[entries.size()];
+            float[] weights = new float[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                postingDocs[i] = entries.get(i)[0];
+                weights[i] = entries.get(i)[1];
+            }
+            index.put(term.getKey(), new Postings(postingDocs, weights));
+        }
+        this.postings = Map.copyOf(index);
+        this.docById = Map.copyOf(docs);
+    }
+
+    public static Bm25Index build(List<Product> products) {
+        return new Bm25Index(products);
+    }
+
+    /**
+     * The {@code k} best-scoring products for {@code query} accepted by {@code filter} (null accepts all), best
+     * first. Products that share no term with the query are never returned.
+     */
+    public List<Hit> search(String query, int k, LongPredicate filter) {
+        if (k <= 0) {
+            return List.of();
+        }
+        float[] scores = new float[ids.length];
+        int[] touched = new int[ids.length];
+        int touchedCount = 0;
+        for (String term : queryTerms(query)) {
+            Postings list = postings.get(term);
+            if (list == null) {
+                continue;
+            }
+            float idf = idf(list.docs().length);
+            for (int i = 0; i < list.docs().length; i++) {
+                int doc = list.docs()[i];
+                if (scores[doc] == 0) {
+                    touched[touchedCount++] = doc;
+                }
+                scores[doc] += termScore(idf, list.weights()[i], doc);
+            }
+        }
+        List<Hit> hits = new ArrayList<>();
+        for (int i = 0; i < touchedCount; i++) {
+            int doc = touched[i];
+            if (filter == null || filter.test(ids[doc])) {
+                hits.add(new Hit(ids[doc], scores[doc]));
+            }
+        }
+        hits.sort((a, b) -> a.score() != b.score() ? Float.compare(b.score(), a.score()) : Long.compare(a.id(), b.id()));
+        return hits.size() > k ? List.copyOf(hits.subList(0, k)) : hits;
+    }
+
+    /**
+     * BM25 score of {@code query} for each of {@code productIds}, in order; 0 for products outside the index or
+     * without a shared term.
+     */
+    public float[] scores(String query, List<Long> productIds) {
+        float[] scores = new float[productIds.size()];
+        int[] docs = new int[productIds.size()];
+        for (int i = 0; i < docs.length; i++) {
+            docs[i] = docById.getOrDefault(productIds.get(i), -1);
+        }
+        for (String term : queryTerms(query)) {
+            Postings list = postings.get(term);
+            if (list == null) {
+                continue;
+            }
+            float idf = idf(list.docs().length);
+            for (int i = 0; i < docs.length; i++) {
+                int at = docs[i] < 0 ? -1 : Arrays.binarySearch(list.docs(), docs[i]);
+                if (at >= 0) {
+                    scores[i] += termScore(idf, list.weights()[at], docs[i]);
+                }
+            }
+        }
+        return scores;
+    }
+
+    private float idf(int documentFrequency) {
+        return (float) Math.log(1 + (ids.length - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private float termScore(float idf, float weight, int doc) {
+        return (float) (idf * weight * (K1 + 1) / (weight + lengthNorm[doc]));
+    }
+
+    private static Set<String> queryTerms(String query) {
+        return new LinkedHashSet<>(tokenize(query));
+    }
+
+    private static int addField(Map<String, Integer> termWeights, String value, int weight) {
+        List<String> tokens = tokenize(value);
+        for (String token : tokens) {
+            termWeights.merge(token, weight, Integer::sum);
+        }
+        return tokens.size();
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_ALNUM.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        var hyphenated = HYPHENATED.matcher(folded);
+        while (hyphenated.find()) {
+            tokens.add(hyphenated.group().replace("-", ""));
+        }
+        var numberUnit = NUMBER_UNIT.matcher(folded);
+        while (numberUnit.find()) {
+            tokens.add(numberUnit.group(1) + numberUnit.group(2));
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,93 @@
+package org.lime.chatbotwithai.product;
+
+/**
+ * Fixed-capacity max-heap of (row, distance) pairs that keeps the {@code n} rows with the smallest distance; the
+ * current worst entry sits at the root and is replaced in O(log n). Ties prefer the lower row, i.e. the higher
+ * price in a {@link ColumnarProductIndex}.
+ */
+final class BoundedRowHeap {
+
+    private final int[] rows;
+    private final double[] distances;
+    private int size;
+
+    BoundedRowHeap(int capacity) {
+        this.rows = new int[capacity];
+        this.distances = new double[capacity];
+    }
+
+    boolean isFull() {
+        return size == rows.length;
+    }
+
+    double worst() {
+        return distances[0];
+    }
+
+    void offer(int row, double distance) {
+        if (!isFull()) {
+            rows[size] = row;
+            distances[size] = distance;
+            siftUp(size++);
+        } else if (distance < distances[0] || (distance == distances[0] && row < rows[0])) {
+            rows[0] = row;
+            distances[0] = distance;
+            siftDown(0);
+        }
+    }
+
+    int[] drain() {
+        int[] ordered = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            ordered[i] = rows[0];
+            rows[0] = rows[size - 1];
+            distances[0] = distances[size - 1];
+            size--;
+            siftDown(0);
+        }
+        return ordered;
+    }
+
+    private boolean after(int a, int b) {
+        return distances[a] > distances[b] || (distances[a] == distances[b] && rows[a] > rows[b]);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!after(i, parent)) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            int largest = left;
+            int right = left + 1;
+            if (right < size && after(right, left)) {
+                largest = right;
+            }
+            if (!after(largest, i)) {
+                return;
+            }
+            swap(i, largest);
+            i = largest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int row = rows[a];
+        rows[a] = rows[b];
+        rows[b] = row;
+        double distance = distances[a];
+        distances[a] = distances[b];
+        distances[b] = distance;
+    }
+}
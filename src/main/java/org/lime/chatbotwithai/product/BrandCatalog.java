@@ -3,42 +3,20 @@ package org.lime.chatbotwithai.product;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
-import java.util.Objects;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
 
 /**
- * Caches distinct product brands to avoid repeated database lookups across services.
+ * Distinct product brands of the current catalog snapshot, sorted case-insensitively.
  */
 @Component
 public class BrandCatalog {
 
-    private final ProductRepository repository;
-    private final AtomicReference<List<String>> cache = new AtomicReference<>();
+    private final CatalogSnapshots snapshots;
 
-    public BrandCatalog(ProductRepository repository) {
-        this.repository = repository;
+    public BrandCatalog(CatalogSnapshots snapshots) {
+        this.snapshots = snapshots;
     }
 
     public List<String> getBrands() {
-        List<String> cached = cache.get();
-        if (cached != null) {
-            return cached;
-        }
-        List<String> loaded = repository.findDistinctBrandNames().stream()
-                .filter(Objects::nonNull)
-                .map(String::trim)
-                .filter(it -> !it.isEmpty())
-                .sorted(String.CASE_INSENSITIVE_ORDER)
-                .collect(Collectors.toList());
-        List<String> immutable = List.copyOf(loaded);
-        if (cache.compareAndSet(null, immutable)) {
-            return immutable;
-        }
-        return cache.get();
-    }
-
-    public void evict() {
-        cache.set(null);
+        return snapshots.current().brands();
     }
 }
@@ -0,0 +1,44 @@
+package org.lime.chatbotwithai.product;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The whole catalog at one version: the columnar index used for filtering and hydration, the BM25 index over the
+ * product texts and the derived brand list. A reader takes one snapshot per operation and uses only that, so a
+ * concurrent catalog update can never mix rows from two versions into one answer.
+ * <p>
+ * The snapshot holds its own detached copies of the loaded entities, so no persistence context can change them.
+ * The {@link Product}s it hands out are still shared by every reader and cache of this version: callers must not
+ * call their setters, and should copy one ({@code toBuilder()}) before changing it.
+ */
+public record CatalogSnapshot(long version, ColumnarProductIndex index, Bm25Index lexical,
+                              List<String> brands) {
+
+    static CatalogSnapshot build(long version, List<Product> loaded) {
+        List<Product> products = loaded.stream().map(product -> product.toBuilder().build()).toList();
+        List<String> brands = products.stream()
+                .map(Product::getBrand)
+                .filter(Objects::nonNull)
+                .map(String::trim)
+                .filter(it -> !it.isEmpty())
+                .distinct()
+                .sorted(String.CASE_INSENSITIVE_ORDER)
+                .toList();
+        return new CatalogSnapshot(version, ColumnarProductIndex.build(products),
+                Bm25Index.build(products), brands);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public Product product(long id) {
+        return index.product(id);
+    }
+
+    public Set<Long> productIds() {
+        return index.productIds();
+    }
+}
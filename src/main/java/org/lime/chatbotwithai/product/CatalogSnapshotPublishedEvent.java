@@ -0,0 +1,7 @@
+package org.lime.chatbotwithai.product;
+
+/**
+ * Published after a new {@link CatalogSnapshot} became current. {@code previous} is null for the first snapshot.
+ */
+public record CatalogSnapshotPublishedEvent(CatalogSnapshot previous, CatalogSnapshot current) {
+}
@@ -0,0 +1,58 @@
+package org.lime.chatbotwithai.product;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link CatalogSnapshot}. {@link #refresh()} loads and indexes the catalog on the calling
+ * thread (the importer, never a request) and then swaps the reference, so readers keep using the previous
+ * version until the new one is complete. Only the very first read builds a snapshot inline, and only if no
+ * import has published one yet.
+ */
+@Component
+public class CatalogSnapshots {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogSnapshots.class);
+
+    private final ProductRepository repository;
+    private final ApplicationEventPublisher events;
+    private final AtomicReference<CatalogSnapshot> current = new AtomicReference<>();
+    private final Object refreshLock = new Object();
+
+    public CatalogSnapshots(ProductRepository repository, ApplicationEventPublisher events) {
+        this.repository = repository;
+        this.events = events;
+    }
+
+    public CatalogSnapshot current() {
+        CatalogSnapshot snapshot = current.get();
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (refreshLock) {
+            snapshot = current.get();
+            return snapshot != null ? snapshot : publish(null);
+        }
+    }
+
+    public CatalogSnapshot refresh() {
+        synchronized (refreshLock) {
+            return publish(current.get());
+        }
+    }
+
+    private CatalogSnapshot publish(CatalogSnapshot previous) {
+        long version = previous == null ? 1 : previous.version() + 1;
+        long started = System.nanoTime();
+        CatalogSnapshot next = CatalogSnapshot.build(version, repository.findAll());
+        current.set(next);
+        log.info("Catalog snapshot v{} published with {} products in {} ms",
+                version, next.size(), (System.nanoTime() - started) / 1_000_000);
+        events.publishEvent(new CatalogSnapshotPublishedEvent(previous, next));
+        return next;
+    }
+}
@@ -0,0 +1,432 @@
+package org.lime.chatbotwithai.product;
+
+import org.lime.chatbotwithai.ai.QueryFilter;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.LongPredicate;
+
+/**
+ * Immutable column-oriented copy of the catalog that answers {@link QueryFilter} predicates without a database
+ * round trip. Rows are laid out in price-descending order, so the first {@code limit} matches of a scan are
+ * already the price-descending top-K returned by the Specification path. Queries start from the
+ * {@link ProductBitmapIndex} candidate set and only run the exact range checks on those rows.
+ */
+public final class ColumnarProductIndex {
+
+    static final int NO_VALUE = -1;
+    static final int NO_CAPACITY = Integer.MIN_VALUE;
+    static final Comparator<Product> PRICE_ORDER =
+            Comparator.comparing(Product::getPrice, Comparator.nullsLast(Comparator.<Double>reverseOrder()))
+                    .thenComparing(Product::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final Product[] rows;
+    private final double[] price;
+    private final int[] capacityKg;
+    private final double[] widthCm;
+    private final double[] heightCm;
+    private final double[] depthCm;
+    private final int[] brandOrdinal;
+    private final int[] typeOrdinal;
+    private final Map<String, Integer> brandDictionary;
+    private final Map<String, Integer> typeDictionary;
+    // Facet label per ordinal: the first spelling of a brand in price order, and the normalized key of a type.
+    private final String[] brandLabel;
+    private final String[] typeLabel;
+    private final DimensionKdTree dimensionTree;
+    private final ProductBitmapIndex bitmaps;
+    private final Map<Long, Integer> rowById;
+
+    private ColumnarProductIndex(List<Product> products) {
+        List<Product> sorted = new ArrayList<>(products);
+        sorted.sort(PRICE_ORDER);
+        int size = sorted.size();
+        this.rows = sorted.toArray(new Product[0]);
+        this.price = new double[size];
+        this.capacityKg = new int[size];
+        this.widthCm = new double[size];
+        this.heightCm = new double[size];
+        this.depthCm = new double[size];
+        this.brandOrdinal = new int[size];
+        this.typeOrdinal = new int[size];
+        Map<String, Integer> brands = new HashMap<>();
+        Map<String, Integer> types = new HashMap<>();
+        Map<Long, Integer> ids = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Product product = rows[i];
+            if (product.getId() != null) {
+                ids.put(product.getId(), i);
+            }
+            price[i] = column(product.getPrice());
+            capacityKg[i] = product.getCapacityKg() == null ? NO_CAPACITY : product.getCapacityKg();
+            widthCm[i] = column(product.getWidthCm());
+            heightCm[i] = column(product.getHeightCm());
+            depthCm[i] = column(product.getDepthCm());
+            brandOrdinal[i] = encode(brands, product.getBrand());
+            typeOrdinal[i] = encode(types, product.getType());
+        }
+        this.brandDictionary = Map.copyOf(brands);
+        this.typeDictionary = Map.copyOf(types);
+        this.brandLabel = new String[brands.size()];
+        for (int i = size - 1; i >= 0; i--) {
+            if (brandOrdinal[i] >= 0) {
+                brandLabel[brandOrdinal[i]] = rows[i].getBrand().trim();
+            }
+        }
+        this.typeLabel = new String[types.size()];
+        types.forEach((key, ordinal) -> typeLabel[ordinal] = key);
+        this.rowById = Map.copyOf(ids);
+        this.dimensionTree = DimensionKdTree.build(widthCm, heightCm, depthCm);
+        this.bitmaps = ProductBitmapIndex.build(brandOrdinal, brands.size(), typeOrdinal, types.size(), price, capacityKg);
+    }
+
+    public static ColumnarProductIndex build(List<Product> products) {
+        return new ColumnarProductIndex(products);
+    }
+
+    public int size() {
+        return rows.length;
+    }
+
+    public Set<Long> productIds() {
+        return rowById.keySet();
+    }
+
+    public Product product(long id) {
+        Integer row = rowById.get(id);
+        return row == null ? null : rows[row];
+    }
+
+    /**
+     * Resolves product ids in the given order, skipping ids that are no longer part of the catalog.
+     */
+    public List<Product> products(List<Long> ids) {
+        List<Product> resolved = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Integer row = rowById.get(id);
+            if (row != null) {
+                resolved.add(rows[row]);
+            }
+        }
+        return resolved;
+    }
+
+    public List<Product> preview(QueryFilter filter, int limit) {
+        return scan(filter, Math.max(1, limit));
+    }
+
+    public List<Product> select(QueryFilter filter, double dimensionTolerance, int limit) {
+        Predicate predicate = Predicate.of(filter, brandDictionary, typeDictionary);
+        if (predicate == null) {
+            return Collections.emptyList();
+        }
+        return collect(candidates(filter, predicate, dimensionTolerance), predicate, limit);
+    }
+
+    /**
+     * Membership test by product id for the rows {@link #select} would return, for callers that walk the catalog
+     * in another order (semantic search). The candidate bitmap is computed once; each test is a map lookup, a
+     * bitmap probe and the exact range checks.
+     */
+    public LongPredicate matcher(QueryFilter filter, double dimensionTolerance) {
+        Predicate predicate = Predicate.of(filter, brandDictionary, typeDictionary);
+        if (predicate == null) {
+            return id -> false;
+        }
+        RoaringBitmap candidates = candidates(filter, predicate, dimensionTolerance);
+        return id -> {
+            Integer row = rowById.get(id);
+            return row != null && candidates.contains(row) && predicate.test(this, row);
+        };
+    }
+
+    /**
+     * Brand, type, price bucket, capacity and footprint counts over every row that {@link #select} would return,
+     * in one pass over the candidate bitmap. Footprints are capped at the {@code maxFootprints} most common.
+     */
+    public ProductFacets facets(QueryFilter filter, double dimensionTolerance, int priceBucketEur, int maxFootprints) {
+        Predicate predicate = Predicate.of(filter, brandDictionary, typeDictionary);
+        if (predicate == null) {
+            return ProductFacets.empty();
+        }
+        int[] brandCounts = new int[brandDictionary.size()];
+        int[] typeCounts = new int[typeDictionary.size()];
+        TreeMap<Integer, Integer> priceBuckets = new TreeMap<>();
+        TreeMap<Integer, Integer> capacities = new TreeMap<>();
+        Map<List<Integer>, Integer> footprints = new HashMap<>();
+        int matches = 0;
+        IntIterator it = candidates(filter, predicate, dimensionTolerance).getIntIterator();
+        while (it.hasNext()) {
+            int row = it.next();
+            if (!predicate.test(this, row)) {
+                continue;
+            }
+            matches++;
+            if (brandOrdinal[row] >= 0) {
+                brandCounts[brandOrdinal[row]]++;
+            }
+            if (typeOrdinal[row] >= 0) {
+                typeCounts[typeOrdinal[row]]++;
+            }
+            if (!Double.isNaN(price[row])) {
+                priceBuckets.merge((int) Math.floor(price[row] / priceBucketEur), 1, Integer::sum);
+            }
+            if (capacityKg[row] != NO_CAPACITY) {
+                capacities.merge(capacityKg[row], 1, Integer::sum);
+            }
+            if (!Double.isNaN(widthCm[row]) && !Double.isNaN(heightCm[row]) && !Double.isNaN(depthCm[row])) {
+                footprints.merge(List.of((int) Math.round(widthCm[row]), (int) Math.round(heightCm[row]),
+                        (int) Math.round(depthCm[row])), 1, Integer::sum);
+            }
+        }
+        return new ProductFacets(matches,
+                valueCounts(brandLabel, brandCounts),
+                valueCounts(typeLabel, typeCounts),
+                priceBuckets.entrySet().stream()
+                        .map(e -> new ProductFacets.PriceBucketCount(e.getKey() * priceBucketEur,
+                                (e.getKey() + 1) * priceBucketEur, e.getValue()))
+                        .toList(),
+                capacities.entrySet().stream()
+                        .map(e -> new ProductFacets.CapacityCount(e.getKey(), e.getValue()))
+                        .toList(),
+                footprints.entrySet().stream()
+                        .map(e -> new ProductFacets.FootprintCount(e.getKey().get(0), e.getKey().get(1),
+                                e.getKey().get(2), e.getValue()))
+                        .sorted(Comparator.comparingInt(ProductFacets.FootprintCount::count).reversed()
+                                .thenComparingInt(ProductFacets.FootprintCount::widthCm)
+                                .thenComparingInt(ProductFacets.FootprintCount::heightCm)
+                                .thenComparingInt(ProductFacets.FootprintCount::depthCm))
+                        .limit(maxFootprints)
+                        .toList());
+    }
+
+    /**
+     * The {@code limit} products whose boxes are closest to the requested dimensions among those matching the
+     * non-dimension predicates, nearest first. Serves as the fallback when nothing fits within tolerance.
+     */
+    public List<Product> nearestByDimensions(QueryFilter filter, int limit) {
+        DimensionBox box = DimensionBox.of(filter);
+        Predicate predicate = Predicate.of(filter, brandDictionary, typeDictionary);
+        if (box == null || predicate == null) {
+            return Collections.emptyList();
+        }
+        RoaringBitmap candidates = predicate.candidates(bitmaps);
+        int[] nearest = dimensionTree.nearest(box.target(), limit,
+                row -> candidates.contains(row) && predicate.test(this, row));
+        List<Product> matches = new ArrayList<>(nearest.length);
+        for (int row : nearest) {
+            matches.add(rows[row]);
+        }
+        return matches;
+    }
+
+    /**
+     * Scores every row by how far it misses each requested attribute and keeps the {@code limit} closest in a
+     * bounded heap, best first. Used when the exact filters match nothing; costs one pass over the primitive
+     * columns and O(limit) memory regardless of catalog size.
+     */
+    public List<Product> nearestMatches(QueryFilter filter, int limit) {
+        if (limit <= 0 || rows.length == 0) {
+            return Collections.emptyList();
+        }
+        QueryFilter wanted = filter == null ? new QueryFilter() : filter;
+        int brand = wanted.getBrand() == null ? ProductBitmapIndex.ANY
+                : brandDictionary.getOrDefault(Product.normalizeKey(wanted.getBrand()), NO_VALUE);
+        int type = wanted.getType() == null ? ProductBitmapIndex.ANY
+                : typeDictionary.getOrDefault(Product.normalizeKey(wanted.getType()), NO_VALUE);
+        double minPrice = bound(wanted.getMinPrice());
+        double maxPrice = bound(wanted.getMaxPrice());
+        double minCapacity = column(wanted.getMinCapacityKg());
+        double maxCapacity = column(wanted.getMaxCapacityKg());
+        DimensionBox box = DimensionBox.of(wanted);
+        double[] target = box == null ? null : box.target();
+
+        BoundedRowHeap best = new BoundedRowHeap(Math.min(limit, rows.length));
+        for (int row = 0; row < rows.length; row++) {
+            double distance = 0;
+            if (brand != ProductBitmapIndex.ANY && brandOrdinal[row] != brand) {
+                distance += 1;
+            }
+            if (type != ProductBitmapIndex.ANY && typeOrdinal[row] != type) {
+                distance += 1;
+            }
+            distance += rangeMiss(price[row], minPrice, maxPrice);
+            distance += rangeMiss(capacityKg[row] == NO_CAPACITY ? Double.NaN : capacityKg[row], minCapacity, maxCapacity);
+            if (target != null) {
+                distance += relativeMiss(widthCm[row], target[0])
+                        + relativeMiss(heightCm[row], target[1])
+                        + relativeMiss(depthCm[row], target[2]);
+            }
+            best.offer(row, distance);
+        }
+        int[] nearest = best.drain();
+        List<Product> matches = new ArrayList<>(nearest.length);
+        for (int row : nearest) {
+            matches.add(rows[row]);
+        }
+        return matches;
+    }
+
+    private List<Product> scan(QueryFilter filter, int limit) {
+        Predicate predicate = Predicate.of(filter, brandDictionary, typeDictionary);
+        if (predicate == null) {
+            return Collections.emptyList();
+        }
+        return collect(predicate.candidates(bitmaps), predicate, limit);
+    }
+
+    private RoaringBitmap candidates(QueryFilter filter, Predicate predicate, double dimensionTolerance) {
+        RoaringBitmap candidates = predicate.candidates(bitmaps);
+        DimensionBox box = DimensionBox.of(filter);
+        if (box != null) {
+            candidates.and(RoaringBitmap.bitmapOf(
+                    dimensionTree.range(box.lowerBounds(dimensionTolerance), box.upperBounds(dimensionTolerance))));
+        }
+        return candidates;
+    }
+
+    private static List<ProductFacets.ValueCount> valueCounts(String[] labels, int[] counts) {
+        List<ProductFacets.ValueCount> values = new ArrayList<>();
+        for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+            if (counts[ordinal] > 0) {
+                values.add(new ProductFacets.ValueCount(labels[ordinal], counts[ordinal]));
+            }
+        }
+        values.sort(Comparator.comparingInt(ProductFacets.ValueCount::count).reversed()
+                .thenComparing(ProductFacets.ValueCount::value, String.CASE_INSENSITIVE_ORDER));
+        return values;
+    }
+
+    private List<Product> collect(RoaringBitmap candidates, Predicate predicate, int limit) {
+        List<Product> matches = new ArrayList<>(Math.min(limit, candidates.getCardinality()));
+        IntIterator rowsInPriceOrder = candidates.getIntIterator();
+        while (rowsInPriceOrder.hasNext() && matches.size() < limit) {
+            int row = rowsInPriceOrder.next();
+            if (predicate.test(this, row)) {
+                matches.add(rows[row]);
+            }
+        }
+        return matches;
+    }
+
+    // Relative distance outside [min, max]; an unknown value counts as a full miss.
+    private static double rangeMiss(double value, double min, double max) {
+        if (Double.isNaN(min) && Double.isNaN(max)) {
+            return 0;
+        }
+        if (Double.isNaN(value)) {
+            return 1;
+        }
+        if (!Double.isNaN(min) && value < min) {
+            return (min - value) / Math.max(min, 1);
+        }
+        if (!Double.isNaN(max) && value > max) {
+            return (value - max) / Math.max(max, 1);
+        }
+        return 0;
+    }
+
+    private static double relativeMiss(double value, double target) {
+        if (Double.isNaN(target)) {
+            return 0;
+        }
+        if (Double.isNaN(value)) {
+            return 1;
+        }
+        return Math.abs(value - target) / Math.max(target, 1);
+    }
+
+    private static double bound(Double value) {
+        return value == null ? Double.NaN : value;
+    }
+
+    private static double column(Number value) {
+        return value == null ? Double.NaN : value.doubleValue();
+    }
+
+    private static int encode(Map<String, Integer> dictionary, String value) {
+        if (value == null) {
+            return NO_VALUE;
+        }
+        // Same key as ProductSpec matches on, so both engines treat "Bosch " and "bosch" as one brand.
+        return dictionary.computeIfAbsent(Product.normalizeKey(value), key -> dictionary.size());
+    }
+
+    /**
+     * Primitive bounds of the non-dimension predicates, resolved once per query. Dimension bounds are answered by
+     * the {@link DimensionKdTree}. A NaN price never satisfies a bound, which mirrors how SQL treats NULL in the
+     * BETWEEN/>=/<= predicates built by {@link ProductSpec}.
+     */
+    private record Predicate(int brand, int type,
+                             double minPrice, double maxPrice,
+                             int minCapacity, int maxCapacity, boolean capacityFiltered) {
+
+        private static final int ANY = ProductBitmapIndex.ANY;
+
+        static Predicate of(QueryFilter filter,
+                            Map<String, Integer> brands,
+                            Map<String, Integer> types) {
+            if (filter == null) {
+                return unfiltered();
+            }
+            int brand = ordinal(brands, filter.getBrand());
+            int type = ordinal(types, filter.getType());
+            if (brand == NO_VALUE || type == NO_VALUE) {
+                return null;
+            }
+            boolean capacityFiltered = filter.getMinCapacityKg() != null || filter.getMaxCapacityKg() != null;
+            return new Predicate(brand, type,
+                    bound(filter.getMinPrice()), bound(filter.getMaxPrice()),
+                    filter.getMinCapacityKg() == null ? Integer.MIN_VALUE : filter.getMinCapacityKg(),
+                    filter.getMaxCapacityKg() == null ? Integer.MAX_VALUE : filter.getMaxCapacityKg(),
+                    capacityFiltered);
+        }
+
+        private static Predicate unfiltered() {
+            return new Predicate(ANY, ANY,
+                    Double.NaN, Double.NaN,
+                    Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+        }
+
+        private static int ordinal(Map<String, Integer> dictionary, String value) {
+            if (value == null) {
+                return ANY;
+            }
+            return dictionary.getOrDefault(Product.normalizeKey(value), NO_VALUE);
+        }
+
+        RoaringBitmap candidates(ProductBitmapIndex bitmaps) {
+            return bitmaps.candidates(brand, type, minPrice, maxPrice, minCapacity, maxCapacity, capacityFiltered);
+        }
+
+        boolean test(ColumnarProductIndex index, int row) {
+            if (brand != ANY && index.brandOrdinal[row] != brand) {
+                return false;
+            }
+            if (type != ANY && index.typeOrdinal[row] != type) {
+                return false;
+            }
+            if (!Double.isNaN(minPrice) || !Double.isNaN(maxPrice)) {
+                double p = index.price[row];
+                if (Double.isNaN(p)
+                        || (!Double.isNaN(minPrice) && p < minPrice)
+                        || (!Double.isNaN(maxPrice) && p > maxPrice)) {
+                    return false;
+                }
+            }
+            if (capacityFiltered) {
+                int c = index.capacityKg[row];
+                return c != NO_CAPACITY && c >= minCapacity && c <= maxCapacity;
+            }
+            return true;
+        }
+    }
+}
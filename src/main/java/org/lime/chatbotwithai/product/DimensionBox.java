@@ -0,0 +1,57 @@
+package org.lime.chatbotwithai.product;
+
+import org.lime.chatbotwithai.ai.QueryFilter;
+
+/**
+ * The requested width × height × depth; any side may be open. Single place that decides whether a product fits
+ * within a tolerance, shared by the search engines and the conversation/explanation layers.
+ */
+public record DimensionBox(Double widthCm, Double heightCm, Double depthCm) {
+
+    public static DimensionBox of(QueryFilter filter) {
+        if (filter == null || (filter.getWidthCm() == null && filter.getHeightCm() == null && filter.getDepthCm() == null)) {
+            return null;
+        }
+        return new DimensionBox(filter.getWidthCm(), filter.getHeightCm(), filter.getDepthCm());
+    }
+
+    public boolean fits(Product product, double tolerance) {
+        return fits(product.getWidthCm(), product.getHeightCm(), product.getDepthCm(), tolerance);
+    }
+
+    public boolean fits(ProductSummary product, double tolerance) {
+        return fits(product.widthCm(), product.heightCm(), product.depthCm(), tolerance);
+    }
+
+    private boolean fits(Double width, Double height, Double depth, double tolerance) {
+        return within(width, widthCm, tolerance)
+                && within(height, heightCm, tolerance)
+                && within(depth, depthCm, tolerance);
+    }
+
+    double[] target() {
+        return new double[]{open(widthCm), open(heightCm), open(depthCm)};
+    }
+
+    double[] lowerBounds(double tolerance) {
+        return new double[]{open(widthCm) - tolerance, open(heightCm) - tolerance, open(depthCm) - tolerance};
+    }
+
+    double[] upperBounds(double tolerance) {
+        return new double[]{open(widthCm) + tolerance, open(heightCm) + tolerance, open(depthCm) + tolerance};
+    }
+
+    private static boolean within(Double actual, Double requested, double tolerance) {
+        if (requested == null) {
+            return true;
+        }
+        if (actual == null) {
+            return false;
+        }
+        return Math.abs(actual - requested) <= tolerance;
+    }
+
+    private static double open(Double value) {
+        return value == null ? Double.NaN : value;
+    }
+}
@@ -0,0 +1,175 @@
+package org.lime.chatbotwithai.product;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Static, implicitly balanced 3-d tree over (width, height, depth). Nodes live in flat arrays: the median of every
+ * {@code [lo, hi)} slice is the node and the two halves are its subtrees, cycling the split axis per level.
+ * Values are row numbers of the owning {@link ColumnarProductIndex}; rows with an unknown dimension are skipped
+ * because they can never satisfy a dimension predicate.
+ */
+final class DimensionKdTree {
+
+    private static final int AXES = 3;
+
+    private final int[] rows;
+    private final double[][] points;
+
+    private DimensionKdTree(int[] rows, double[][] points) {
+        this.rows = rows;
+        this.points = points;
+    }
+
+    static DimensionKdTree build(double[] width, double[] height, double[] depth) {
+        int count = 0;
+        int[] ids = new int[width.length];
+        for (int row = 0; row < width.length; row++) {
+            if (!Double.isNaN(width[row]) && !Double.isNaN(height[row]) && !Double.isNaN(depth[row])) {
+                ids[count++] = row;
+            }
+        }
+        int[] rows = Arrays.copyOf(ids, count);
+        double[][] source = {width, height, depth};
+        arrange(rows, source, 0, count, 0);
+        double[][] points = new double[AXES][count];
+        for (int i = 0; i < count; i++) {
+            for (int axis = 0; axis < AXES; axis++) {
+                points[axis][i] = source[axis][rows[i]];
+            }
+        }
+        return new DimensionKdTree(rows, points);
+    }
+
+    int size() {
+        return rows.length;
+    }
+
+    /**
+     * Collects every row whose box lies within {@code [min, max]} on each axis; NaN bounds leave an axis open.
+     * Matches are returned in ascending row order, which is the price-descending order of the index.
+     */
+    int[] range(double[] min, double[] max) {
+        int[] hits = new int[rows.length];
+        int count = range(min, max, 0, rows.length, 0, hits, 0);
+        int[] result = Arrays.copyOf(hits, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns up to {@code n} rows closest to {@code target} (squared Euclidean distance over the non-NaN axes)
+     * that also satisfy {@code accept}, nearest first.
+     */
+    int[] nearest(double[] target, int n, IntPredicate accept) {
+        if (n <= 0 || rows.length == 0) {
+            return new int[0];
+        }
+        BoundedRowHeap best = new BoundedRowHeap(Math.min(n, rows.length));
+        nearest(target, accept, 0, rows.length, 0, best);
+        return best.drain();
+    }
+
+    private int range(double[] min, double[] max, int lo, int hi, int axis, int[] hits, int count) {
+        if (lo >= hi) {
+            return count;
+        }
+        int mid = (lo + hi) >>> 1;
+        double split = points[axis][mid];
+        if (contains(mid, min, max)) {
+            hits[count++] = rows[mid];
+        }
+        int next = (axis + 1) % AXES;
+        if (Double.isNaN(min[axis]) || min[axis] <= split) {
+            count = range(min, max, lo, mid, next, hits, count);
+        }
+        if (Double.isNaN(max[axis]) || max[axis] >= split) {
+            count = range(min, max, mid + 1, hi, next, hits, count);
+        }
+        return count;
+    }
+
+    private boolean contains(int node, double[] min, double[] max) {
+        for (int axis = 0; axis < AXES; axis++) {
+            double value = points[axis][node];
+            if (!Double.isNaN(min[axis]) && value < min[axis]) {
+                return false;
+            }
+            if (!Double.isNaN(max[axis]) && value > max[axis]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void nearest(double[] target, IntPredicate accept, int lo, int hi, int axis, BoundedRowHeap best) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (accept.test(rows[mid])) {
+            best.offer(rows[mid], distance(mid, target));
+        }
+        int next = (axis + 1) % AXES;
+        if (Double.isNaN(target[axis])) {
+            nearest(target, accept, lo, mid, next, best);
+            nearest(target, accept, mid + 1, hi, next, best);
+            return;
+        }
+        double delta = target[axis] - points[axis][mid];
+        boolean leftFirst = delta <= 0;
+        nearest(target, accept, leftFirst ? lo : mid + 1, leftFirst ? mid : hi, next, best);
+        if (!best.isFull() || delta * delta <= best.worst()) {
+            nearest(target, accept, leftFirst ? mid + 1 : lo, leftFirst ? hi : mid, next, best);
+        }
+    }
+
+    private double distance(int node, double[] target) {
+        double sum = 0;
+        for (int axis = 0; axis < AXES; axis++) {
+            if (!Double.isNaN(target[axis])) {
+                double d = points[axis][node] - target[axis];
+                sum += d * d;
+            }
+        }
+        return sum;
+    }
+
+    private static void arrange(int[] rows, double[][] source, int lo, int hi, int axis) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        select(rows, source[axis], lo, hi - 1, mid);
+        int next = (axis + 1) % AXES;
+        arrange(rows, source, lo, mid, next);
+        arrange(rows, source, mid + 1, hi, next);
+    }
+
+    // Hoare quickselect: afterwards rows[k] holds the median and the slice is partitioned around it.
+    private static void select(int[] rows, double[] key, int lo, int hi, int k) {
+        while (lo < hi) {
+            double pivot = key[rows[(lo + hi) >>> 1]];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (key[rows[i]] < pivot) i++;
+                while (key[rows[j]] > pivot) j--;
+                if (i <= j) {
+                    int tmp = rows[i];
+                    rows[i] = rows[j];
+                    rows[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+}
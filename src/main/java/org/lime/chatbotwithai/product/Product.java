@@ -1,16 +1,30 @@
 package org.lime.chatbotwithai.product;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 
-@Entity @Table(name="product")
-@Data @NoArgsConstructor @AllArgsConstructor @Builder
+import java.util.Locale;
+
+// Indexes follow the filter shapes of ProductSpec: equality on the normalized keys/capacity, then price for the sort.
+@Entity @Table(name="product", indexes = {
+        @Index(name="idx_product_type_price", columnList="type_key, price"),
+        @Index(name="idx_product_brand_type_price", columnList="brand_key, type_key, price"),
+        @Index(name="idx_product_capacity_price", columnList="capacity_kg, price")
+})
+@Data @NoArgsConstructor @AllArgsConstructor @Builder(toBuilder = true)
 public class Product {
     @Id
     private Long id;
     private String brand;     // Bosch, Samsung...
     private String model;     // Model name
     private String type;      // front | top
+    @JsonIgnore
+    @Column(name="brand_key")
+    private String brandKey;  // lower-cased brand, for indexed equality lookups
+    @JsonIgnore
+    @Column(name="type_key")
+    private String typeKey;   // lower-cased type
     private Double price;     // Price in EUR
     @Column(name="capacity_kg")
     private Integer capacityKg;
@@ -22,4 +36,14 @@ public class Product {
     private Double depthCm;
     @Column(length=1000)
     private String description;
+
+    @PrePersist @PreUpdate
+    void normalizeKeys() {
+        brandKey = normalizeKey(brand);
+        typeKey = normalizeKey(type);
+    }
+
+    public static String normalizeKey(String value) {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
 }
@@ -0,0 +1,137 @@
+package org.lime.chatbotwithai.product;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * Compressed posting lists over the rows of a {@link ColumnarProductIndex}: one bitmap per normalized brand and
+ * type ordinal, per {@value #PRICE_BUCKET_EUR}€ price bucket and per capacity value. A query ANDs the equality
+ * postings with the OR of every bucket or capacity that overlaps the requested range; the result is a superset
+ * of the matches and still needs the exact range checks on the boundary buckets.
+ */
+final class ProductBitmapIndex {
+
+    static final int PRICE_BUCKET_EUR = 50;
+    static final int ANY = -2;
+
+    private final int rowCount;
+    private final RoaringBitmap[] byBrand;
+    private final RoaringBitmap[] byType;
+    private final int[] priceBuckets;
+    private final RoaringBitmap[] byPriceBucket;
+    private final int[] capacities;
+    private final RoaringBitmap[] byCapacity;
+
+    private ProductBitmapIndex(int rowCount,
+                               RoaringBitmap[] byBrand,
+                               RoaringBitmap[] byType,
+                               TreeMap<Integer, RoaringBitmap> byPriceBucket,
+                               TreeMap<Integer, RoaringBitmap> byCapacity) {
+        this.rowCount = rowCount;
+        this.byBrand = byBrand;
+        this.byType = byType;
+        this.priceBuckets = byPriceBucket.keySet().stream().mapToInt(Integer::intValue).toArray();
+        this.byPriceBucket = byPriceBucket.values().toArray(new RoaringBitmap[0]);
+        this.capacities = byCapacity.keySet().stream().mapToInt(Integer::intValue).toArray();
+        this.byCapacity = byCapacity.values().toArray(new RoaringBitmap[0]);
+    }
+
+    static ProductBitmapIndex build(int[] brandOrdinal, int brandCount,
+                                    int[] typeOrdinal, int typeCount,
+                                    double[] price, int[] capacityKg) {
+        RoaringBitmap[] brands = emptyPostings(brandCount);
+        RoaringBitmap[] types = emptyPostings(typeCount);
+        TreeMap<Integer, RoaringBitmap> priceBuckets = new TreeMap<>();
+        TreeMap<Integer, RoaringBitmap> capacities = new TreeMap<>();
+        for (int row = 0; row < price.length; row++) {
+            if (brandOrdinal[row] >= 0) {
+                brands[brandOrdinal[row]].add(row);
+            }
+            if (typeOrdinal[row] >= 0) {
+                types[typeOrdinal[row]].add(row);
+            }
+            if (!Double.isNaN(price[row])) {
+                priceBuckets.computeIfAbsent(bucketOf(price[row]), key -> new RoaringBitmap()).add(row);
+            }
+            if (capacityKg[row] != ColumnarProductIndex.NO_CAPACITY) {
+                capacities.computeIfAbsent(capacityKg[row], key -> new RoaringBitmap()).add(row);
+            }
+        }
+        runOptimize(brands);
+        runOptimize(types);
+        priceBuckets.values().forEach(RoaringBitmap::runOptimize);
+        capacities.values().forEach(RoaringBitmap::runOptimize);
+        return new ProductBitmapIndex(price.length, brands, types, priceBuckets, capacities);
+    }
+
+    /**
+     * Candidate rows for the given equality and range constraints. {@link #ANY} and NaN bounds leave a dimension
+     * unconstrained; a constrained capacity with open ends is passed as {@code Integer.MIN_VALUE}/{@code MAX_VALUE}.
+     */
+    RoaringBitmap candidates(int brand, int type,
+                             double minPrice, double maxPrice,
+                             int minCapacity, int maxCapacity, boolean capacityFiltered) {
+        RoaringBitmap result = null;
+        if (brand != ANY) {
+            result = byBrand[brand].clone();
+        }
+        if (type != ANY) {
+            result = intersect(result, byType[type]);
+        }
+        if (!Double.isNaN(minPrice) || !Double.isNaN(maxPrice)) {
+            int from = Double.isNaN(minPrice) ? Integer.MIN_VALUE : bucketOf(minPrice);
+            int to = Double.isNaN(maxPrice) ? Integer.MAX_VALUE : bucketOf(maxPrice);
+            result = intersect(result, union(priceBuckets, byPriceBucket, from, to));
+        }
+        if (capacityFiltered) {
+            result = intersect(result, union(capacities, byCapacity, minCapacity, maxCapacity));
+        }
+        if (result == null) {
+            result = new RoaringBitmap();
+            result.add(0L, rowCount);
+        }
+        return result;
+    }
+
+    static int bucketOf(double price) {
+        return (int) Math.floor(price / PRICE_BUCKET_EUR);
+    }
+
+    private static RoaringBitmap union(int[] keys, RoaringBitmap[] postings, int from, int to) {
+        if (from > to) {
+            return new RoaringBitmap();
+        }
+        int start = lowerBound(keys, from);
+        int end = to == Integer.MAX_VALUE ? keys.length : lowerBound(keys, to + 1);
+        return RoaringBitmap.or(Arrays.asList(postings).subList(start, end).iterator());
+    }
+
+    private static int lowerBound(int[] keys, int key) {
+        int index = Arrays.binarySearch(keys, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static RoaringBitmap intersect(RoaringBitmap current, RoaringBitmap next) {
+        if (current == null) {
+            return next.clone();
+        }
+        current.and(next);
+        return current;
+    }
+
+    private static RoaringBitmap[] emptyPostings(int count) {
+        RoaringBitmap[] postings = new RoaringBitmap[count];
+        for (int i = 0; i < count; i++) {
+            postings[i] = new RoaringBitmap();
+        }
+        return postings;
+    }
+
+    private static void runOptimize(RoaringBitmap[] postings) {
+        for (RoaringBitmap posting : postings) {
+            posting.runOptimize();
+        }
+    }
+}
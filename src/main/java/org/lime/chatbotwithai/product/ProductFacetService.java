@@ -0,0 +1,62 @@
+package org.lime.chatbotwithai.product;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.lime.chatbotwithai.ai.QueryFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Facet counts for a filter, answered from the current {@link CatalogSnapshot} and cached per snapshot version
+ * and canonical filter ({@code cache.gets{cache="product.facets"}}). A conversation turn usually repeats the
+ * previous turn's filter for at least one slot, so most turns are served from the cache.
+ */
+@Service
+public class ProductFacetService {
+
+    private record FacetKey(long catalogVersion, SearchResultCache.FilterKey filter, long toleranceMm) {
+    }
+
+    private final CatalogSnapshots snapshots;
+    private final Cache<FacetKey, ProductFacets> cache;
+    private final int priceBucketEur;
+    private final int maxFootprints;
+
+    public ProductFacetService(CatalogSnapshots snapshots,
+                               MeterRegistry registry,
+                               @Value("${catalog.facets.price-bucket-eur:100}") int priceBucketEur,
+                               @Value("${catalog.facets.max-footprints:10}") int maxFootprints,
+                               @Value("${catalog.search.cache.maximum-size:10000}") long maximumSize,
+                               @Value("${catalog.search.cache.ttl:10m}") Duration ttl) {
+        if (priceBucketEur <= 0) {
+            throw new IllegalArgumentException("catalog.facets.price-bucket-eur must be positive");
+        }
+        this.snapshots = snapshots;
+        this.priceBucketEur = priceBucketEur;
+        this.maxFootprints = maxFootprints;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "product.facets");
+    }
+
+    public ProductFacets facets(QueryFilter filter, double dimensionTolerance) {
+        CatalogSnapshot snapshot = snapshots.current();
+        FacetKey key = new FacetKey(snapshot.version(), SearchResultCache.FilterKey.of(filter),
+                Math.round(dimensionTolerance * 10));
+        return cache.get(key, ignored ->
+                snapshot.index().facets(filter, dimensionTolerance, priceBucketEur, maxFootprints));
+    }
+
+    @EventListener
+    public void onSnapshotPublished(CatalogSnapshotPublishedEvent event) {
+        cache.invalidateAll();
+    }
+}
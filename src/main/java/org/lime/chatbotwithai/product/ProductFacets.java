@@ -0,0 +1,34 @@
+package org.lime.chatbotwithai.product;
+
+import java.util.List;
+
+/**
+ * Counts over the products matching one filter, computed in a single pass by
+ * {@link ColumnarProductIndex#facets}. Brands, types and footprints are ordered by count (most common first),
+ * price buckets and capacities by value.
+ */
+public record ProductFacets(int matches,
+                            List<ValueCount> brands,
+                            List<ValueCount> types,
+                            List<PriceBucketCount> priceBuckets,
+                            List<CapacityCount> capacities,
+                            List<FootprintCount> footprints) {
+
+    public record ValueCount(String value, int count) {
+    }
+
+    /** Products priced in {@code [fromEur, toEur)}. */
+    public record PriceBucketCount(int fromEur, int toEur, int count) {
+    }
+
+    public record CapacityCount(int capacityKg, int count) {
+    }
+
+    /** Width × height × depth rounded to whole centimetres. */
+    public record FootprintCount(int widthCm, int heightCm, int depthCm, int count) {
+    }
+
+    public static ProductFacets empty() {
+        return new ProductFacets(0, List.of(), List.of(), List.of(), List.of(), List.of());
+    }
+}
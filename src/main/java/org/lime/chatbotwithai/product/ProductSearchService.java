@@ -1,55 +1,191 @@
 package org.lime.chatbotwithai.product;
 
+import org.lime.chatbotwithai.ai.HybridFusion;
 import org.lime.chatbotwithai.ai.QueryFilter;
 import org.lime.chatbotwithai.ai.SemanticRerankService;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.lime.chatbotwithai.ai.SemanticSearchService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.WindowIterator;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.LongPredicate;
 
 import static org.lime.chatbotwithai.product.ProductSpec.*;
 
 @Service
 public class ProductSearchService {
 
+    /**
+     * Selects how structured filters are evaluated: {@code jpa} builds a {@link ProductSpec} query per call, while
+     * {@code columnar} scans an in-memory {@link ColumnarProductIndex} and returns the same rows. The {@code jpa}
+     * engine reads the live table, which an import may be rewriting, so its answers are never cached under a
+     * snapshot version.
+     */
+    public enum Engine {
+        JPA,
+        COLUMNAR
+    }
+
+    // Recommend higher-priced first; id breaks ties so both engines agree on the order.
+    static final Sort PRICE_DESCENDING = Sort.by(Sort.Direction.DESC, "price").and(Sort.by("id"));
+    private static final int CANDIDATE_PAGE_SIZE = 25;
+
+    private final CatalogSnapshots snapshots;
     private final ProductRepository repository;
     private final SemanticRerankService reranker;
+    private final SemanticSearchService semanticSearch;
+    private final HybridFusion hybrid;
+    private final SearchResultCache resultCache;
+    private final Engine engine;
 
-    public ProductSearchService(ProductRepository repository,
-                                SemanticRerankService reranker) {
+    public ProductSearchService(CatalogSnapshots snapshots,
+                                ProductRepository repository,
+                                SemanticRerankService reranker,
+                                SemanticSearchService semanticSearch,
+                                HybridFusion hybrid,
+                                SearchResultCache resultCache,
+                                @Value("${catalog.search.engine:columnar}") String engine) {
+        this.snapshots = snapshots;
         this.repository = repository;
         this.reranker = reranker;
+        this.semanticSearch = semanticSearch;
+        this.hybrid = hybrid;
+        this.resultCache = resultCache;
+        this.engine = Engine.valueOf(engine.trim().toUpperCase(Locale.ROOT));
     }
 
-    public List<Product> preview(QueryFilter filter, int limit) {
-        Specification<Product> spec = buildCoreSpec(filter);
-        Pageable pageable = PageRequest.of(0, Math.max(1, limit), Sort.by(Sort.Direction.DESC, "price")); // Recommand higher-priced first
-        if (spec == null) {
-            Page<Product> page = repository.findAll(pageable);
-            return page.hasContent() ? page.getContent() : Collections.emptyList();
+    /**
+     * Every public query pins one {@link CatalogSnapshot} for its whole duration: the cache key, the index and the
+     * hydration of cached ids all come from that snapshot, even if a newer one is published meanwhile. The
+     * {@code jpa} engine filters against the live table instead and therefore bypasses the result cache.
+     * Previews are {@link ProductSummary} projections; dimensions are included only when the filter has any.
+     */
+    public List<ProductSummary> preview(QueryFilter filter, int limit) {
+        CatalogSnapshot snapshot = snapshots.current();
+        boolean withDimensions = DimensionBox.of(filter) != null;
+        if (engine == Engine.JPA) {
+            return searchPreview(snapshot, filter, limit, withDimensions);
+        }
+        List<Long> cached = resultCache.getPreview(snapshot.version(), filter, limit);
+        if (cached != null) {
+            return summarize(snapshot.index().products(cached), withDimensions);
         }
-        return repository.findAll(spec, pageable).getContent();
+        List<ProductSummary> preview = searchPreview(snapshot, filter, limit, withDimensions);
+        resultCache.putPreview(snapshot.version(), filter, limit, preview.stream().map(ProductSummary::id).toList());
+        return preview;
     }
 
     public List<Product> finalResults(String query, QueryFilter filter, int limit, double dimensionTolerance) {
-        Specification<Product> spec = buildFullSpec(filter, dimensionTolerance);
-        List<Product> candidates = selectCandidates(spec, limit);
-        if (candidates.isEmpty()) {
-            return candidates;
+        CatalogSnapshot snapshot = snapshots.current();
+        if (engine == Engine.JPA) {
+            return searchFinalResults(snapshot, query, filter, limit, dimensionTolerance).products();
+        }
+        List<Long> cached = resultCache.getShortlist(snapshot.version(), query, filter, limit, dimensionTolerance);
+        if (cached != null) {
+            return List.copyOf(snapshot.index().products(cached));
+        }
+        Shortlist shortlist = searchFinalResults(snapshot, query, filter, limit, dimensionTolerance);
+        if (shortlist.cacheable()) {
+            resultCache.putShortlist(snapshot.version(), query, filter, limit, dimensionTolerance,
+                    idsOf(shortlist.products()));
+        }
+        return shortlist.products();
+    }
+
+    // Shortlists built from semantic hits over partly embedded matches improve as warm-up proceeds, and fallback
+    // rankings from while the embedding service was unavailable are replaced once it recovers, so neither is pinned
+    // in the cache for the rest of the snapshot version.
+    private record Shortlist(List<Product> products, boolean cacheable) {
+    }
+
+    private List<ProductSummary> searchPreview(CatalogSnapshot snapshot, QueryFilter filter, int limit,
+                                               boolean withDimensions) {
+        if (engine == Engine.COLUMNAR) {
+            return summarize(snapshot.index().preview(filter, limit), withDimensions);
         }
+        return repository.findSummaries(buildCoreSpec(filter), PRICE_DESCENDING, limit, withDimensions);
+    }
+
+    private static List<ProductSummary> summarize(List<Product> products, boolean withDimensions) {
+        return products.stream().map(product -> ProductSummary.of(product, withDimensions)).toList();
+    }
+
+    /**
+     * BM25 matches of {@code query} among the products matching {@code filter}, best first. Served from the
+     * snapshot's in-memory inverted index, so it works without the embedding service.
+     */
+    public List<Product> lexical(String query, QueryFilter filter, double dimensionTolerance, int limit) {
+        return lexical(snapshots.current(), query, filter, dimensionTolerance, limit);
+    }
+
+    private static List<Product> lexical(CatalogSnapshot snapshot, String query, QueryFilter filter,
+                                         double dimensionTolerance, int limit) {
+        LongPredicate matches = filter == null ? null : snapshot.index().matcher(filter, dimensionTolerance);
+        List<Long> ids = snapshot.lexical().search(query, limit, matches).stream().map(Bm25Index.Hit::id).toList();
+        return snapshot.index().products(ids);
+    }
+
+    /**
+     * First stage: the semantically closest matching products, plus the best lexical matches when hybrid fusion is
+     * on. Semantic hits stand alone only when every matching product is embedded; otherwise they are merged with
+     * the price-ordered candidate page, so products without a vector yet still compete. Second stage: the union
+     * reranked, which fuses cosine and BM25 scores and embeds cold products on the way. With fusion off and full
+     * coverage, the semantic hits are returned as they are.
+     */
+    private Shortlist searchFinalResults(CatalogSnapshot snapshot, String query, QueryFilter filter, int limit,
+                                         double dimensionTolerance) {
         String rerankQuery = Optional.ofNullable(query).filter(q -> !q.isBlank())
                 .orElseGet(() -> buildSearchQuery(filter));
-        List<Product> reranked = reranker.rerank(rerankQuery, candidates, limit);
+        int fetchSize = candidateFetchSize(limit);
+        List<Product> lexical = hybrid.lexicalEnabled()
+                ? lexical(snapshot, rerankQuery, filter, dimensionTolerance, fetchSize)
+                : List.of();
+        SemanticSearchService.Hits closest = semanticSearch.search(snapshot, rerankQuery, filter, dimensionTolerance,
+                hybrid.lexicalEnabled() ? fetchSize : limit, SemanticSearchService.FilterMode.PRE);
+        if (closest.complete() && !hybrid.lexicalEnabled()) {
+            return new Shortlist(List.copyOf(closest.products()), true);
+        }
+        List<Product> candidates = closest.complete()
+                ? closest.products()
+                : union(closest.products(), candidates(snapshot, filter, dimensionTolerance, fetchSize));
+        if (candidates.isEmpty() && DimensionBox.of(filter) != null) {
+            candidates = snapshot.index().nearestByDimensions(filter, fetchSize);
+        }
+        candidates = union(lexical, candidates);
+        boolean partial = !closest.complete() && !closest.products().isEmpty();
+        if (candidates.isEmpty()) {
+            return new Shortlist(candidates, !partial && !closest.fallback());
+        }
+        SemanticRerankService.Ranking ranking = reranker.rank(snapshot.lexical(), rerankQuery, candidates, limit);
+        List<Product> reranked = ranking.products();
         if (reranked.size() > limit) {
-            return List.copyOf(reranked.subList(0, limit));
+            reranked = reranked.subList(0, limit);
+        }
+        return new Shortlist(List.copyOf(reranked), !partial && !closest.fallback() && !ranking.fallback());
+    }
+
+    private static List<Product> union(List<Product> first, List<Product> second) {
+        if (first.isEmpty()) {
+            return second;
+        }
+        Map<Long, Product> byId = new LinkedHashMap<>();
+        for (Product product : first) {
+            byId.put(product.getId(), product);
+        }
+        for (Product product : second) {
+            byId.putIfAbsent(product.getId(), product);
         }
-        return List.copyOf(reranked);
+        return new ArrayList<>(byId.values());
     }
 
     private Specification<Product> buildCoreSpec(QueryFilter filter) {
@@ -64,16 +200,71 @@ public class ProductSearchService {
         return spec;
     }
 
-    private List<Product> selectCandidates(Specification<Product> spec, int limit) {
-        int fetchSize = Math.max(limit * 4, 40);
-        Pageable pageable = PageRequest.of(0, fetchSize, Sort.by(Sort.Direction.DESC, "price"));
-        if (spec == null) {
-            return repository.findAll(pageable).getContent();
+    /**
+     * Up to {@code maxCandidates} products matching every filter (null for none), price-descending. Both
+     * {@code /api/search} and the shortlist take their attribute candidates from here. The JPA engine pulls them
+     * lazily in keyset-scrolled pages and stops as soon as the cap is reached, so memory stays bounded by the cap
+     * rather than by the size of the match set.
+     */
+    public List<Product> candidates(QueryFilter filter, double dimensionTolerance, int maxCandidates) {
+        return candidates(snapshots.current(), filter, dimensionTolerance, maxCandidates);
+    }
+
+    public List<Product> candidates(CatalogSnapshot snapshot, QueryFilter filter, double dimensionTolerance,
+                                    int maxCandidates) {
+        if (maxCandidates <= 0) {
+            return Collections.emptyList();
+        }
+        if (engine == Engine.COLUMNAR) {
+            return snapshot.index().select(filter, dimensionTolerance, maxCandidates);
+        }
+        Specification<Product> spec = Specification.where(buildFullSpec(filter, dimensionTolerance));
+        int pageSize = Math.min(CANDIDATE_PAGE_SIZE, maxCandidates);
+        WindowIterator<Product> pages = WindowIterator.of(position -> repository.findBy(spec,
+                        query -> query.sortBy(PRICE_DESCENDING).limit(pageSize).scroll(position)))
+                .startingAt(ScrollPosition.keyset());
+        List<Product> candidates = new ArrayList<>(pageSize);
+        while (pages.hasNext() && candidates.size() < maxCandidates) {
+            candidates.add(pages.next());
+        }
+        return candidates;
+    }
+
+    /**
+     * Best approximate matches when the exact filters return nothing: products ranked by how far they miss each
+     * requested attribute, computed from the in-memory index with a bounded heap.
+     */
+    public List<Product> nearestMatches(QueryFilter filter, int limit) {
+        return nearestMatches(snapshots.current(), filter, limit);
+    }
+
+    public List<Product> nearestMatches(CatalogSnapshot snapshot, QueryFilter filter, int limit) {
+        return snapshot.index().nearestMatches(filter, limit);
+    }
+
+    /**
+     * Closest boxes to the requested dimensions among products that satisfy the remaining filters. Answered from
+     * the in-memory index for either engine, so an empty tolerance query never costs another database pass.
+     */
+    public List<Product> nearestByDimensions(QueryFilter filter, int limit) {
+        if (DimensionBox.of(filter) == null) {
+            return Collections.emptyList();
         }
-        return repository.findAll(spec, pageable).getContent();
+        return snapshots.current().index().nearestByDimensions(filter, limit);
+    }
+
+    private static List<Long> idsOf(List<Product> products) {
+        return products.stream().map(Product::getId).toList();
+    }
+
+    private static int candidateFetchSize(int limit) {
+        return Math.max(limit * 4, 40);
     }
 
     private Specification<Product> buildFullSpec(QueryFilter filter, double dimensionTolerance) {
+        if (filter == null) {
+            return null;
+        }
         Specification<Product> spec = buildCoreSpec(filter);
         Specification<Product> dimensionSpec = dimensionsCloseTo(
                 filter.getWidthCm(),
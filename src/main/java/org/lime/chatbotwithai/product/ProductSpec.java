@@ -4,14 +4,15 @@ import org.springframework.data.jpa.domain.Specification;
 
 public class ProductSpec {
 
+    // brand_key/type_key hold the normalized values, so equality can use the composite indexes instead of lower().
     public static Specification<Product> brandEquals(String brand) {
         return (root, q, cb) -> brand == null ? null
-                : cb.equal(cb.lower(root.get("brand")), brand.toLowerCase());
+                : cb.equal(root.get("brandKey"), Product.normalizeKey(brand));
     }
 
     public static Specification<Product> typeEquals(String type) {
         return (root, q, cb) -> type == null ? null
-                : cb.equal(cb.lower(root.get("type")), type.toLowerCase());
+                : cb.equal(root.get("typeKey"), Product.normalizeKey(type));
     }
 
     public static Specification<Product> capacityBetween(Integer minKg, Integer maxKg) {
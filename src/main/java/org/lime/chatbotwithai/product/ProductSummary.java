@@ -0,0 +1,29 @@
+package org.lime.chatbotwithai.product;
+
+/**
+ * Read-only projection of a {@link Product} for previews and turn payloads. The description is never part of it
+ * and the dimensions are only filled when the query asked for them (they stay null otherwise), so a preview does
+ * not drag the full entity through JDBC or the persistence context.
+ */
+public record ProductSummary(Long id, String brand, String model, String type, Double price, Integer capacityKg,
+                             Double widthCm, Double heightCm, Double depthCm) {
+
+    // Selected by the criteria multiselect when no dimension filter is active.
+    public ProductSummary(Long id, String brand, String model, String type, Double price, Integer capacityKg) {
+        this(id, brand, model, type, price, capacityKg, null, null, null);
+    }
+
+    public static ProductSummary of(Product product) {
+        return of(product, true);
+    }
+
+    public static ProductSummary of(Product product, boolean withDimensions) {
+        if (!withDimensions) {
+            return new ProductSummary(product.getId(), product.getBrand(), product.getModel(), product.getType(),
+                    product.getPrice(), product.getCapacityKg());
+        }
+        return new ProductSummary(product.getId(), product.getBrand(), product.getModel(), product.getType(),
+                product.getPrice(), product.getCapacityKg(),
+                product.getWidthCm(), product.getHeightCm(), product.getDepthCm());
+    }
+}
@@ -0,0 +1,14 @@
+package org.lime.chatbotwithai.product;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Fragment of {@link ProductRepository} that selects only the {@link ProductSummary} columns.
+ */
+public interface ProductSummaryRepository {
+
+    List<ProductSummary> findSummaries(Specification<Product> spec, Sort sort, int limit, boolean withDimensions);
+}
@@ -0,0 +1,49 @@
+package org.lime.chatbotwithai.product;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class ProductSummaryRepositoryImpl implements ProductSummaryRepository {
+
+    private final EntityManager entityManager;
+
+    ProductSummaryRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Constructor-expression query: rows come back as {@link ProductSummary} records, so Hibernate neither reads
+     * the description column nor registers managed entities for them.
+     */
+    @Override
+    public List<ProductSummary> findSummaries(Specification<Product> spec, Sort sort, int limit, boolean withDimensions) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductSummary> query = cb.createQuery(ProductSummary.class);
+        Root<Product> root = query.from(Product.class);
+        List<Selection<?>> columns = new ArrayList<>(List.of(
+                root.get("id"), root.get("brand"), root.get("model"), root.get("type"),
+                root.get("price"), root.get("capacityKg")));
+        if (withDimensions) {
+            columns.addAll(List.of(root.get("widthCm"), root.get("heightCm"), root.get("depthCm")));
+        }
+        query.select(cb.construct(ProductSummary.class, columns.toArray(Selection[]::new)));
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        return entityManager.createQuery(query).setMaxResults(Math.max(1, limit)).getResultList();
+    }
+}
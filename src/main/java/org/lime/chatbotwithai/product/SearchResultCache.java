@@ -0,0 +1,117 @@
+package org.lime.chatbotwithai.product;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.lime.chatbotwithai.ai.QueryFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Bounded cache of preview and shortlist product ids keyed by a canonical form of the {@link QueryFilter}.
+ * Every key carries the catalog version it was computed against, so entries from before a catalog change are
+ * never served even if they have not been evicted yet. Hit/miss counters are exported as
+ * {@code cache.gets{cache="product.preview"|"product.shortlist"}}. The version is the
+ * {@link CatalogSnapshot#version()} the query ran against.
+ */
+@Component
+public class SearchResultCache {
+
+    /**
+     * Canonical filter: brand and type normalized as {@link Product#normalizeKey} does, prices in whole cents and dimensions in
+     * millimetres, always in the same field order. Flags that do not change the query (brand flexibility) are
+     * left out so equivalent filters share one entry.
+     */
+    public record FilterKey(String brand, String type,
+                            Long minPriceCents, Long maxPriceCents,
+                            Integer minCapacityKg, Integer maxCapacityKg,
+                            Long widthMm, Long heightMm, Long depthMm) {
+
+        public static FilterKey of(QueryFilter filter) {
+            if (filter == null) {
+                return new FilterKey(null, null, null, null, null, null, null, null, null);
+            }
+            return new FilterKey(
+                    Product.normalizeKey(filter.getBrand()),
+                    Product.normalizeKey(filter.getType()),
+                    scaled(filter.getMinPrice(), 100),
+                    scaled(filter.getMaxPrice(), 100),
+                    filter.getMinCapacityKg(),
+                    filter.getMaxCapacityKg(),
+                    scaled(filter.getWidthCm(), 10),
+                    scaled(filter.getHeightCm(), 10),
+                    scaled(filter.getDepthCm(), 10));
+        }
+
+        private static Long scaled(Double value, int factor) {
+            return value == null ? null : Math.round(value * factor);
+        }
+    }
+
+    private record PreviewKey(long catalogVersion, FilterKey filter, int limit) {
+    }
+
+    private record ShortlistKey(long catalogVersion, FilterKey filter, String query, int limit, long toleranceMm) {
+    }
+
+    private final Cache<PreviewKey, List<Long>> previews;
+    private final Cache<ShortlistKey, List<Long>> shortlists;
+
+    public SearchResultCache(MeterRegistry registry,
+                             @Value("${catalog.search.cache.maximum-size:10000}") long maximumSize,
+                             @Value("${catalog.search.cache.ttl:10m}") Duration ttl) {
+        this.previews = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.shortlists = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, previews, "product.preview");
+        CaffeineCacheMetrics.monitor(registry, shortlists, "product.shortlist");
+    }
+
+    public List<Long> getPreview(long catalogVersion, QueryFilter filter, int limit) {
+        return previews.getIfPresent(new PreviewKey(catalogVersion, FilterKey.of(filter), limit));
+    }
+
+    public void putPreview(long catalogVersion, QueryFilter filter, int limit, List<Long> productIds) {
+        previews.put(new PreviewKey(catalogVersion, FilterKey.of(filter), limit), List.copyOf(productIds));
+    }
+
+    public List<Long> getShortlist(long catalogVersion, String query, QueryFilter filter, int limit, double tolerance) {
+        return shortlists.getIfPresent(shortlistKey(catalogVersion, query, filter, limit, tolerance));
+    }
+
+    public void putShortlist(long catalogVersion, String query, QueryFilter filter, int limit, double tolerance,
+                             List<Long> productIds) {
+        shortlists.put(shortlistKey(catalogVersion, query, filter, limit, tolerance), List.copyOf(productIds));
+    }
+
+    // Keys already carry the version; dropping old-version entries eagerly just frees their slots.
+    @EventListener
+    public void onSnapshotPublished(CatalogSnapshotPublishedEvent event) {
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        previews.invalidateAll();
+        shortlists.invalidateAll();
+    }
+
+    private static ShortlistKey shortlistKey(long catalogVersion, String query, QueryFilter filter, int limit,
+                                             double tolerance) {
+        String normalizedQuery = query == null ? "" : query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return new ShortlistKey(catalogVersion, FilterKey.of(filter), normalizedQuery, limit,
+                Math.round(tolerance * 10));
+    }
+}
@@ -0,0 +1,60 @@
+package org.lime.chatbotwithai.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Guards {@code /api/admin/**} with a shared bearer token ({@code catalog.admin.token}). Without a configured
+ * token the admin endpoints are switched off entirely rather than left open.
+ */
+@Component
+public class AdminTokenFilter extends OncePerRequestFilter {
+
+    static final String ADMIN_PATH = "/api/admin/";
+    private static final String BEARER = "Bearer ";
+    // Decodes and strips ;matrix content like the MVC router, so /api/admin;x/ or /api/%61dmin/ cannot slip past.
+    private static final UrlPathHelper PATHS = new UrlPathHelper();
+
+    private final byte[] token;
+
+    public AdminTokenFilter(@Value("${catalog.admin.token:}") String token) {
+        this.token = StringUtils.hasText(token) ? token.trim().getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !PATHS.getPathWithinApplication(request).startsWith(ADMIN_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (token == null) {
+            response.sendError(HttpStatus.FORBIDDEN.value(), "Admin endpoints are disabled");
+            return;
+        }
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        byte[] presented = header != null && header.startsWith(BEARER)
+                ? header.substring(BEARER.length()).trim().getBytes(StandardCharsets.UTF_8)
+                : new byte[0];
+        if (!MessageDigest.isEqual(token, presented)) {
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+            response.sendError(HttpStatus.UNAUTHORIZED.value());
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
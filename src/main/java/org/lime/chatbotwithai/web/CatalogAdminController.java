@@ -0,0 +1,63 @@
+package org.lime.chatbotwithai.web;
+
+import org.lime.chatbotwithai.ai.SemanticSearchService;
+import org.lime.chatbotwithai.catalog.CatalogImportResult;
+import org.lime.chatbotwithai.catalog.CatalogImportService;
+import org.lime.chatbotwithai.catalog.FeedDirectory;
+import org.lime.chatbotwithai.catalog.ProductFeedFormat;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Locale;
+
+@RestController
+@RequestMapping("/api/admin/catalog")
+public class CatalogAdminController {
+
+    private final CatalogImportService importService;
+    private final FeedDirectory feeds;
+    private final SemanticSearchService semanticSearch;
+
+    public CatalogAdminController(CatalogImportService importService, FeedDirectory feeds,
+                                  SemanticSearchService semanticSearch) {
+        this.importService = importService;
+        this.feeds = feeds;
+        this.semanticSearch = semanticSearch;
+    }
+
+    // location is a path inside catalog.ingest.feed-dir, e.g. products.jsonl or 2024-06/products.csv.
+    @PostMapping("/import")
+    public CatalogImportResult importFeed(@RequestParam("location") String location,
+                                         @RequestParam(value = "format", required = false) String format,
+                                         @RequestParam(value = "resume", defaultValue = "true") boolean resume,
+                                         @RequestParam(value = "embed", defaultValue = "true") boolean embed) {
+        try {
+            Resource feed = feeds.resolve(location);
+            if (!feed.exists()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No catalog feed at " + location);
+            }
+            ProductFeedFormat feedFormat = format == null
+                    ? ProductFeedFormat.fromLocation(location)
+                    : ProductFeedFormat.valueOf(format.toUpperCase(Locale.ROOT));
+            return importService.importFeed(feed, feedFormat, resume, embed);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+        }
+    }
+
+    // Recall@k of the HNSW index against exact search over the stored embeddings; ef defaults to the configured one.
+    @GetMapping("/semantic-recall")
+    public SemanticSearchService.RecallReport semanticRecall(@RequestParam(value = "queries", defaultValue = "100") int queries,
+                                                            @RequestParam(value = "k", defaultValue = "10") int k,
+                                                            @RequestParam(value = "ef", required = false) Integer ef) {
+        try {
+            return semanticSearch.recall(queries, k, ef);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+}
@@ -1,16 +1,28 @@
 package org.lime.chatbotwithai.web;
 
 import org.lime.chatbotwithai.conversation.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/conversations")
 public class ConversationController {
 
     private final ConversationService conversationService;
+    private final Duration streamTimeout;
 
-    public ConversationController(ConversationService conversationService) {
+    public ConversationController(ConversationService conversationService,
+                                  @Value("${conversation.stream.timeout:2m}") Duration streamTimeout) {
         this.conversationService = conversationService;
+        this.streamTimeout = streamTimeout;
     }
 
     @PostMapping
@@ -25,10 +37,56 @@ public class ConversationController {
         return conversationService.applyUserReply(sessionId, request);
     }
 
+    /**
+     * Same turn as {@link #reply}, as server-sent events: {@code turn} with the preview, chips and slots as soon as
+     * the reply is extracted, {@code token} ({@code {"text": ...}}) for each piece of the assistant message as the
+     * model writes it, {@code result} with the shortlist when the turn has one, and finally {@code done} with the
+     * complete response.
+     */
+    @PostMapping(value = "/{sessionId}/messages/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter replyStream(@PathVariable String sessionId,
+                                  @RequestBody UserReplyRequest request) {
+        StreamedTurn turn = conversationService.streamUserReply(sessionId, request);
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        send(emitter, "turn", turn.head());
+        CompletableFuture<Void> resultSent = turn.result().thenAccept(result -> {
+            if (result != null) {
+                send(emitter, "result", result);
+            }
+        });
+        StringBuilder text = new StringBuilder();
+        Disposable tokens = turn.assistantTokens().subscribe(
+                token -> {
+                    text.append(token);
+                    send(emitter, "token", Map.of("text", token));
+                },
+                emitter::completeWithError,
+                () -> resultSent.whenComplete((ignored, failure) -> {
+                    if (failure != null) {
+                        emitter.completeWithError(failure);
+                        return;
+                    }
+                    send(emitter, "done", turn.complete().apply(text.toString()));
+                    emitter.complete();
+                }));
+        // A client that disconnects or times out stops the generation instead of leaving it running.
+        emitter.onCompletion(tokens::dispose);
+        emitter.onTimeout(tokens::dispose);
+        emitter.onError(failure -> tokens.dispose());
+        return emitter;
+    }
+
     @PostMapping("/{sessionId}/events")
     public ConversationTurnResponse event(@PathVariable String sessionId,
                                           @RequestBody ConversationEventRequest request) {
         return conversationService.recordEvent(sessionId, request);
     }
-}
 
+    private static void send(SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+    }
+}
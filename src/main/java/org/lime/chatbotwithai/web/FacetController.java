@@ -0,0 +1,38 @@
+package org.lime.chatbotwithai.web;
+
+import org.lime.chatbotwithai.ai.QueryFilter;
+import org.lime.chatbotwithai.conversation.ConversationService;
+import org.lime.chatbotwithai.product.ProductFacetService;
+import org.lime.chatbotwithai.product.ProductFacets;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+@RequestMapping("/api")
+public class FacetController {
+
+    private static final double DIMENSION_TOLERANCE_CM = 1.0;
+
+    private final ProductFacetService facetService;
+    private final ConversationService conversationService;
+
+    public FacetController(ProductFacetService facetService, ConversationService conversationService) {
+        this.facetService = facetService;
+        this.conversationService = conversationService;
+    }
+
+    // Either the filter of a running conversation (sessionId) or one given as query parameters, e.g. ?type=front&maxPrice=600.
+    @GetMapping("/facets")
+    public ProductFacets facets(@RequestParam(value = "sessionId", required = false) String sessionId,
+                                @ModelAttribute QueryFilter filter) {
+        if (sessionId == null) {
+            return facetService.facets(filter, DIMENSION_TOLERANCE_CM);
+        }
+        try {
+            return facetService.facets(conversationService.currentFilter(sessionId), DIMENSION_TOLERANCE_CM);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+        }
+    }
+}
@@ -3,30 +3,41 @@ package org.lime.chatbotwithai.web;
 import org.lime.chatbotwithai.ai.*;
 import org.lime.chatbotwithai.product.*;
 import lombok.Data;
-import org.springframework.data.jpa.domain.Specification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
 
-import static org.lime.chatbotwithai.product.ProductSpec.*;
-
 @RestController
 @RequestMapping("/api")
 public class SearchController {
 
+    private static final double DIMENSION_TOLERANCE_CM = 1.0;
+
     private final QueryExtractionService extractor;
     private final SemanticRerankService reranker;
     private final SearchAnswerService answer;
-    private final ProductRepository repo;
+    private final ProductSearchService productSearchService;
+    private final SemanticSearchService semanticSearch;
+    private final CatalogSnapshots snapshots;
+    private final int maxCandidates;
 
     public SearchController(QueryExtractionService extractor,
                             SemanticRerankService reranker,
                             SearchAnswerService answer,
-                            ProductRepository repo) {
+                            ProductSearchService productSearchService,
+                            SemanticSearchService semanticSearch,
+                            CatalogSnapshots snapshots,
+                            @Value("${catalog.search.max-candidates:100}") int maxCandidates) {
         this.extractor = extractor;
         this.reranker = reranker;
         this.answer = answer;
-        this.repo = repo;
+        this.productSearchService = productSearchService;
+        this.semanticSearch = semanticSearch;
+        this.snapshots = snapshots;
+        this.maxCandidates = maxCandidates;
     }
 
     @GetMapping("/search")
@@ -36,20 +47,21 @@ public class SearchController {
         // 1) Use the LLM to map natural language into structured filters.
         QueryFilter filter = extractor.extract(q);
 
-        // 2) Apply structured filtering first, then semantic re-ranking.
-        Specification<Product> spec = Specification
-                .anyOf(brandEquals(filter.getBrand()))
-                .and(typeEquals(filter.getType()))
-                .and(priceBetween(filter.getMinPrice(), filter.getMaxPrice()));
+        // 2) Apply structured filtering first (capped, paged), then semantic re-ranking, all on one snapshot. The
+        //    filters are the conversation flow's, so capacity is applied here too.
+        CatalogSnapshot snapshot = snapshots.current();
+        var filtered = productSearchService.candidates(snapshot, filter, DIMENSION_TOLERANCE_CM, maxCandidates);
 
-        Specification<Product> dimensionSpec =
-                dimensionsCloseTo(filter.getWidthCm(), filter.getHeightCm(), filter.getDepthCm(), 1.0);
-        if (dimensionSpec != null) {
-            spec = spec.and(dimensionSpec);
+        // Nothing matched: the semantically closest products from the HNSW index, or, before the catalog has
+        // been embedded, the closest attribute matches reranked.
+        List<Product> top = filtered.isEmpty()
+                ? semanticSearch.search(snapshot, q, null, DIMENSION_TOLERANCE_CM, k,
+                        SemanticSearchService.FilterMode.PRE).products()
+                : reranker.rerank(snapshot.lexical(), q, filtered, k);
+        if (top.isEmpty() && filtered.isEmpty()) {
+            top = reranker.rerank(snapshot.lexical(), q,
+                    productSearchService.nearestMatches(snapshot, filter, maxCandidates), k);
         }
-        var filtered = repo.findAll(spec);
-
-        var top = reranker.rerank(q, filtered.isEmpty()? repo.findAll() : filtered, k);
 
         // 3) Produce the natural-language explanation and validation.
         String explanation = answer.explain(q, filter, top);
@@ -64,6 +76,27 @@ public class SearchController {
         return resp;
     }
 
+    // Semantic retrieval with an explicit filter, e.g. ?q=quiet+washer&type=front&maxPrice=600&filterMode=post.
+    @GetMapping("/search/semantic")
+    public List<Product> semantic(@RequestParam("q") String q,
+                                  @RequestParam(value = "k", defaultValue = "5") int k,
+                                  @RequestParam(value = "filterMode", required = false) String filterMode,
+                                  @ModelAttribute QueryFilter filter) {
+        try {
+            return semanticSearch.search(q, filter, DIMENSION_TOLERANCE_CM, k, SemanticSearchService.FilterMode.of(filterMode));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    // BM25 over brand, model, type and description; answers without the embedding service, e.g. ?q=steam+1600+rpm.
+    @GetMapping("/search/lexical")
+    public List<Product> lexical(@RequestParam("q") String q,
+                                 @RequestParam(value = "k", defaultValue = "5") int k,
+                                 @ModelAttribute QueryFilter filter) {
+        return productSearchService.lexical(q, filter, DIMENSION_TOLERANCE_CM, k);
+    }
+
     @Data
     public static class SearchResponse {
         public String query;
@@ -1,42 +0,0 @@
--- src/main/resources/data.sql
-INSERT INTO product (id, brand, model, type, price, capacity_kg, width_cm, height_cm, depth_cm, description) VALUES
-(1,  'Bosch',       'Serie 4 WAN28238FR',  'front', 499.0,  8,  60, 85, 55, 'Quiet EcoSilence motor, 1200 rpm, quick 15 wash, allergy rinse, Dimensions 60x85x55 cm.'),
-(2,  'Bosch',       'Serie 6 WGG244FR',    'front', 649.0,  9,  60, 84, 59, 'i-DOS auto dosing, super silent night mode, steam refresh, Dimensions 60x84x59 cm.'),
-(3,  'Bosch',       'Serie 2 WAB24161FF',  'front', 379.0,  6,  60, 85, 56, 'Entry-level efficiency A, express 30 wash, anti-vibration, Dimensions 60x85x56 cm.'),
-(4,  'Bosch',       'Serie 8 WGB256C0',    'front', 999.0, 10,  60, 85, 59, 'Home Connect Wi-Fi, 1600 rpm ultra quiet, hygiene steam, Dimensions 60x85x59 cm.'),
-(5,  'Bosch',       'Serie 6 WGG144FR',    'front', 579.0,  9,  60, 84, 59, 'AutoDose precision, anti-stain 40, quiet drum clean, Dimensions 60x84x59 cm.'),
-(6,  'Samsung',     'WW90T554DTW',         'front', 559.0,  9,  60, 85, 55, 'EcoBubble foam, AI Control, fast wash 39 min, steam hygiene, Dimensions 60x85x55 cm.'),
-(7,  'Samsung',     'WA10T5260BY',         'top',   569.0, 10,  63, 110, 70,'Digital inverter quiet motor, BubbleStorm power, Wi-Fi SmartThings, Dimensions 63x110x70 cm.'),
-(8,  'Samsung',     'WW80T4020CE',         'front', 479.0,  8,  60, 85, 55, 'Hygiene steam, diamond drum gentle care, 15 quick wash, Dimensions 60x85x55 cm.'),
-(9,  'Samsung',     'WW11BB744DG',         'front', 899.0, 11,  60, 85, 60, 'Bespoke AI series, 15 min super speed, auto dose, Dimensions 60x85x60 cm.'),
-(10, 'Samsung',     'WD90T754DBX',         'front', 829.0,  9,  60, 85, 65, 'Washer dryer combo, AirWash refresh, quiet HeatPump dry, Dimensions 60x85x65 cm.'),
-(11, 'LG',          'F4V711WTSA',          'front', 699.0, 11,  60, 85, 56, 'TurboWash 39 ultra fast, AI DD fabric care, Steam+, Dimensions 60x85x56 cm.'),
-(12, 'LG',          'TS4V5',               'top',   439.0, 10,  60, 96, 63, 'Smart inverter motor, soft-close lid, quiet fuzzy wash, Dimensions 60x96x63 cm.'),
-(13, 'LG',          'F2WV5S8S0',           'front', 629.0,  8,  60, 85, 55, 'AI DD 2.0 care, Steam+ allergy, 14 quick cycles, Dimensions 60x85x55 cm.'),
-(14, 'LG',          'F4WV308S6',           'front', 549.0,  9,  60, 85, 57, 'TurboWash 59, ThinQ remote start, low vibration, Dimensions 60x85x57 cm.'),
-(15, 'Whirlpool',   'FFB 7438 BV FR',      'front', 429.0,  7,  60, 84, 57, 'FreshCare+ gentle tumbling, quiet spin, 1400 rpm, Dimensions 60x84x57 cm.'),
-(16, 'Whirlpool',   'FFB 8638 BV',         'front', 549.0,  8,  60, 84, 60, '6th Sense sensors, SteamRefresh, rapid 30, Dimensions 60x84x60 cm.'),
-(17, 'Whirlpool',   'W6XW845WBV',          'front', 699.0,  8,  60, 84, 61, 'Supreme Silence A, auto dose, steam hygiene, Dimensions 60x84x61 cm.'),
-(18, 'Whirlpool',   'TDLR 7220S',          'top',   479.0,  7,  40, 90, 60, 'Top load soft opening, Colours 15, quiet Zen motor, Dimensions 40x90x60 cm.'),
-(19, 'Beko',        'WTE6511',             'top',   329.0,  6,  40, 90, 60, 'Daily Xpress 28 min fast wash, gentle ProSmart motor, Dimensions 40x90x60 cm.'),
-(20, 'Beko',        'WTV9712XSW',          'front', 449.0,  9,  60, 84, 64, 'SteamCure, StainExpert, silent 1400 rpm, Dimensions 60x84x64 cm.'),
-(21, 'Beko',        'WRY10444',            'front', 519.0, 10,  60, 84, 64, 'RecycledTub design, AquaWave drum, fast+ function, Dimensions 60x84x64 cm.'),
-(22, 'Brandt',      'BT6500',              'top',   349.0,  6,  40, 90, 60, 'Made in France, silent soft-close, rapid 30, Dimensions 40x90x60 cm.'),
-(23, 'Brandt',      'BT6520',              'top',   399.0,  6,  40, 90, 60, 'OptiA 45 quick wash, smart dosing, whisper motor, Dimensions 40x90x60 cm.'),
-(24, 'Brandt',      'BWF47TWW',            'front', 499.0,  7,  60, 84, 58, 'Freshness protect, anti-foam control, quick 45, Dimensions 60x84x58 cm.'),
-(25, 'Miele',       'WCA020',              'front', 899.0,  7,  60, 85, 64, 'Honeycomb drum care, whisper quiet ProfiEco motor, Dimensions 60x85x64 cm.'),
-(26, 'Miele',       'WWG660 WCS',          'front',1199.0,  9,  60, 85, 64, 'TwinDos auto detergent, QuickPowerWash 49, Wi-Fi, Dimensions 60x85x64 cm.'),
-(27, 'Miele',       'WEI865 WPS',          'front',1499.0,  9,  60, 85, 64, 'SilenceDrum, SteamCare, PowerWash 2.0, Dimensions 60x85x64 cm.'),
-(28, 'Electrolux',  'EW7F3849SP',          'front', 649.0,  9,  60, 85, 57, 'PerfectCare 700, SteamCare, silent Pro motor, Dimensions 60x85x57 cm.'),
-(29, 'Electrolux',  'EW8F3843SP',          'front', 699.0,  8,  60, 85, 57, 'UltraCare system, 59 min quick, energy A, Dimensions 60x85x57 cm.'),
-(30, 'Electrolux',  'EW6T4723',            'top',   429.0,  7,  40, 90, 60, 'TimeCare options, soft opening, quiet inverter, Dimensions 40x90x60 cm.'),
-(31, 'AEG',         'L7FEE842S',           'front', 749.0,  8,  60, 85, 57, 'ProSteam wrinkle reduction, ProSense load, Dimensions 60x85x57 cm.'),
-(32, 'AEG',         'L9FEC966CA',          'front',1099.0,  9,  60, 85, 57, 'SoftWater technology, fast 59 eco, ultra quiet, Dimensions 60x85x57 cm.'),
-(33, 'AEG',         'L6FBK841',            'front', 589.0,  8,  60, 85, 57, 'ProTex gentle drum, inverter motor, 20 min wash, Dimensions 60x85x57 cm.'),
-(34, 'Candy',       'Smart CSTG 272',      'top',   319.0,  7,  40, 90, 60, 'Wi-Fi connected, 1200 rpm, rapid 30 program, Dimensions 40x90x60 cm.'),
-(35, 'Candy',       'CSO14105TWCBE',       'front', 429.0, 10,  60, 85, 58, 'Simply-Fi app, MixPowerSystem+, quick 14, Dimensions 60x85x58 cm.'),
-(36, 'Candy',       'ROW4966DWH',          'front', 569.0,  9,  60, 85, 58, 'RapidO washer dryer, 39 quick, steam hygiene, Dimensions 60x85x58 cm.'),
-(37, 'Siemens',     'IQ500 WG44G2AL',      'front', 799.0,  9,  60, 85, 59, 'iSensoric smart dosing, speedPack VarioSpeed, Dimensions 60x85x59 cm.'),
-(38, 'Siemens',     'WM14G4C1',            'front', 649.0,  8,  60, 85, 55, 'iQdrive brushless quiet motor, varioSpeed, Dimensions 60x85x55 cm.'),
-(39, 'Siemens',     'WG56B2A0',            'top', 949.0, 10,  60, 85, 59, 'i-Dos auto dosing, ecoSilence drive, speedPack XL, Dimensions 60x85x59 cm.'),
-(40, 'Siemens',     'WG56B2A0',            'top', 570.0, 10,  40, 90, 60, 'i-Dos auto dosing, ecoSilence drive, speedPack XL, Dimensions 40x90x60 cm.');
@@ -0,0 +1,180 @@
+package org.lime.chatbotwithai.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.lime.chatbotwithai.product.Bm25Index;
+import org.lime.chatbotwithai.product.CatalogSnapshot;
+import org.lime.chatbotwithai.product.CatalogSnapshotPublishedEvent;
+import org.lime.chatbotwithai.product.ColumnarProductIndex;
+import org.lime.chatbotwithai.product.Product;
+import org.springframework.boot.actuate.health.Status;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class EmbeddingWarmupTests {
+
+    private final Set<Long> stored = ConcurrentHashMap.newKeySet();
+    private final SemanticRerankService reranker = mock(SemanticRerankService.class);
+    private EmbeddingWarmup warmup;
+
+    @AfterEach
+    void stop() {
+        if (warmup != null) {
+            warmup.shutdown();
+        }
+    }
+
+    @Test
+    void readinessOpensOnceTheCatalogIsCovered() {
+        stubReranker(batch -> {
+        });
+        warmup = warmup(true, Duration.ofMillis(50), Duration.ofMinutes(5));
+        assertThat(warmup.health().getStatus()).as("before the first snapshot").isEqualTo(Status.OUT_OF_SERVICE);
+
+        publish(snapshot(1, 1, 10));
+
+        awaitUntil(() -> warmup.health().getStatus().equals(Status.UP));
+        assertThat(stored).hasSize(10);
+        assertThat(warmup.coverage()).isEqualTo(1.0);
+    }
+
+    @Test
+    void aFailedBatchParksTheRunAndTheWholePassIsRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        stubReranker(batch -> {
+            if (calls.incrementAndGet() == 2) {
+                throw new IllegalStateException("ollama unreachable");
+            }
+        });
+        warmup = warmup(true, Duration.ofMillis(200), Duration.ofMinutes(5));
+
+        publish(snapshot(1, 1, 10));
+
+        awaitUntil(() -> "ollama unreachable".equals(warmup.health().getDetails().get("lastError")));
+        assertThat(warmup.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+        awaitDone();
+        assertThat(warmup.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(stored).hasSize(10);
+        assertThat(warmup.health().getDetails()).doesNotContainKey("lastError");
+    }
+
+    @Test
+    void aNewerSnapshotCancelsTheRemainingBatchesOfTheOlderOne() throws InterruptedException {
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        stubReranker(batch -> {
+            if (batch.get(0).getId() < 100 && firstBatchStarted.getCount() > 0) {
+                firstBatchStarted.countDown();
+                await(release);
+            }
+        });
+        warmup = warmup(true, Duration.ofMinutes(1), Duration.ofMinutes(5));
+
+        publish(snapshot(1, 1, 8));
+        assertThat(firstBatchStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        publish(snapshot(2, 101, 4));
+        release.countDown();
+
+        awaitDone();
+        assertThat(stored).as("only the batch already running for version 1").hasSize(6)
+                .contains(101L, 102L, 103L, 104L);
+        assertThat(warmup.health().getDetails()).containsEntry("products", 4);
+    }
+
+    @Test
+    void readinessOpensAfterMaxWaitWhileEmbeddingKeepsFailing() {
+        stubReranker(batch -> {
+            throw new IllegalStateException("ollama unreachable");
+        });
+        warmup = warmup(true, Duration.ofMinutes(1), Duration.ofMillis(300));
+
+        publish(snapshot(1, 1, 10));
+
+        assertThat(warmup.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+        awaitUntil(() -> warmup.health().getStatus().equals(Status.UP));
+        assertThat(warmup.health().getDetails()).containsKey("reason");
+        assertThat(stored).isEmpty();
+    }
+
+    @Test
+    void disabledWarmupIsReadyAndEmbedsNothing() {
+        warmup = warmup(false, Duration.ofMinutes(1), Duration.ofMinutes(5));
+
+        publish(snapshot(1, 1, 10));
+
+        assertThat(warmup.health().getStatus()).isEqualTo(Status.UP);
+        verifyNoInteractions(reranker);
+    }
+
+    private interface BatchHook {
+        void accept(List<Product> batch);
+    }
+
+    // A reranker whose store is the `stored` set; the hook runs before a batch is stored and may throw.
+    private void stubReranker(BatchHook hook) {
+        when(reranker.hasEmbedding(any())).thenAnswer(call -> stored.contains(call.<Product>getArgument(0).getId()));
+        when(reranker.refreshEmbeddings(anyList())).thenAnswer(call -> {
+            List<Product> batch = call.getArgument(0);
+            hook.accept(batch);
+            batch.forEach(product -> stored.add(product.getId()));
+            return batch.size();
+        });
+    }
+
+    private EmbeddingWarmup warmup(boolean enabled, Duration retryDelay, Duration maxWait) {
+        return new EmbeddingWarmup(reranker, mock(ProductEmbeddingStore.class), new SimpleMeterRegistry(),
+                enabled, 1, 0, 2, 0.95, retryDelay, maxWait);
+    }
+
+    private void publish(CatalogSnapshot snapshot) {
+        warmup.onSnapshotPublished(new CatalogSnapshotPublishedEvent(null, snapshot));
+    }
+
+    private static CatalogSnapshot snapshot(long version, long firstId, int count) {
+        List<Product> products = LongStream.range(firstId, firstId + count)
+                .mapToObj(id -> Product.builder().id(id).brand("Brand").model("M" + id).type("front")
+                        .price(100.0 + id).build())
+                .toList();
+        return new CatalogSnapshot(version, ColumnarProductIndex.build(products), Bm25Index.build(products),
+                List.of("Brand"));
+    }
+
+    private void awaitDone() {
+        awaitUntil(() -> "DONE".equals(String.valueOf(warmup.health().getDetails().get("state"))));
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("condition not reached within 5 s");
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
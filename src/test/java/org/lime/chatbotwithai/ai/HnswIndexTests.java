@@ -0,0 +1,107 @@
+package org.lime.chatbotwithai.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswIndexTests {
+
+    private static final int DIM = 64;
+
+    @Test
+    void recallAgainstExactSearchStaysHigh() {
+        Random random = new Random(3);
+        HnswIndex index = new HnswIndex(DIM, 16, 100);
+        for (long id = 0; id < 5000; id++) {
+            index.insert(id, randomUnit(random));
+        }
+        double recall = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomUnit(random);
+            Set<Long> expected = ids(index.exactSearch(query, 10, (LongPredicate) null));
+            long found = index.search(query, 10, 64, null).stream().filter(hit -> expected.contains(hit.id())).count();
+            recall += found / 10.0;
+        }
+        assertThat(recall / queries).isGreaterThan(0.9);
+    }
+
+    @Test
+    void quantizedGraphWithRescoringKeepsRecall() {
+        Random random = new Random(11);
+        HnswIndex floats = new HnswIndex(DIM, 16, 100);
+        HnswIndex int8 = new HnswIndex(DIM, 16, 100, true);
+        float[][] vectors = new float[3000][];
+        for (int id = 0; id < vectors.length; id++) {
+            vectors[id] = randomUnit(random);
+            floats.insert(id, vectors[id]);
+            int8.insert(id, vectors[id]);
+        }
+        assertThat(int8.vectorBytes() * 3).isLessThan(floats.vectorBytes());
+
+        double recall = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomUnit(random);
+            Set<Long> expected = ids(floats.exactSearch(query, 10, (LongPredicate) null));
+            List<Long> rescored = int8.search(query, 40, 64, null).stream()
+                    .map(HnswIndex.Hit::id)
+                    .sorted((a, b) -> Float.compare(dot(query, vectors[b.intValue()]), dot(query, vectors[a.intValue()])))
+                    .limit(10)
+                    .toList();
+            recall += rescored.stream().filter(expected::contains).count() / 10.0;
+        }
+        assertThat(recall / queries).isGreaterThan(0.9);
+    }
+
+    @Test
+    void deletesAndFiltersNeverReachResults() {
+        Random random = new Random(5);
+        HnswIndex index = new HnswIndex(DIM, 8, 50);
+        float[][] vectors = new float[1000][];
+        for (int id = 0; id < vectors.length; id++) {
+            vectors[id] = randomUnit(random);
+            index.insert(id, vectors[id]);
+        }
+        for (long id = 0; id < 1000; id += 2) {
+            index.delete(id);
+        }
+        assertThat(index.size()).isEqualTo(500);
+        assertThat(index.search(vectors[10], 20, 64, null)).allMatch(hit -> hit.id() % 2 == 1);
+
+        List<HnswIndex.Hit> filtered = index.search(vectors[11], 10, 64, id -> id % 10 == 1);
+        assertThat(filtered).hasSize(10).allMatch(hit -> hit.id() % 10 == 1);
+        assertThat(filtered.get(0).id()).isEqualTo(11);
+
+        index.insert(10, vectors[10]);
+        assertThat(index.search(vectors[10], 1, 64, null).get(0).id()).isEqualTo(10);
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static Set<Long> ids(List<HnswIndex.Hit> hits) {
+        Set<Long> ids = new HashSet<>();
+        hits.forEach(hit -> ids.add(hit.id()));
+        return ids;
+    }
+
+    private static float[] randomUnit(Random random) {
+        float[] vector = new float[DIM];
+        for (int i = 0; i < DIM; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return EmbeddingMatrix.normalize(vector);
+    }
+}
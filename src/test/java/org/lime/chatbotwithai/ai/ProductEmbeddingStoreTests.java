@@ -0,0 +1,73 @@
+package org.lime.chatbotwithai.ai;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductEmbeddingStoreTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void vectorsSurviveReopenAndAreKeyedByTextHash() {
+        Path file = directory.resolve("embeddings.bin");
+        ProductEmbeddingStore store = new ProductEmbeddingStore(file);
+        List<ProductEmbeddingStore.Entry> entries = new ArrayList<>();
+        for (long id = 1; id <= 1000; id++) {
+            entries.add(new ProductEmbeddingStore.Entry(id, id * 31, new float[]{id, -id, 0.5f}));
+        }
+        store.putAll(entries);
+        store.put(7, 99, new float[]{1, 2, 3});
+        store.close();
+
+        ProductEmbeddingStore reopened = new ProductEmbeddingStore(file);
+        assertThat(reopened.size()).isEqualTo(1000);
+        assertThat(reopened.dimension()).isEqualTo(3);
+        assertThat(reopened.get(500, 500 * 31)).containsExactly(500f, -500f, 0.5f);
+        assertThat(reopened.get(7, 7 * 31)).as("superseded text").isNull();
+        assertThat(reopened.get(7, 99)).containsExactly(1f, 2f, 3f);
+        assertThat(reopened.contains(1001, 0)).isFalse();
+        reopened.close();
+    }
+
+    @Test
+    void removedProductsStayRemovedAndAreCompactedAway() throws Exception {
+        Path file = directory.resolve("embeddings.bin");
+        ProductEmbeddingStore store = new ProductEmbeddingStore(file);
+        List<ProductEmbeddingStore.Entry> entries = new ArrayList<>();
+        for (long id = 1; id <= 1000; id++) {
+            entries.add(new ProductEmbeddingStore.Entry(id, id * 31, new float[]{id, -id, 0.5f}));
+        }
+        store.putAll(entries);
+        store.retainAll(LongStream.rangeClosed(1, 100).boxed().collect(Collectors.toSet()));
+        assertThat(store.size()).isEqualTo(100);
+        store.close();
+        long before = Files.size(file);
+
+        ProductEmbeddingStore reopened = new ProductEmbeddingStore(file);
+        assertThat(reopened.size()).isEqualTo(100);
+        assertThat(reopened.contains(101, 101 * 31)).as("removed before the restart").isFalse();
+        assertThat(reopened.get(100, 100 * 31)).containsExactly(100f, -100f, 0.5f);
+        assertThat(Files.size(file)).isLessThan(before);
+        reopened.close();
+    }
+
+    @Test
+    void dimensionChangeStartsOver() {
+        ProductEmbeddingStore store = new ProductEmbeddingStore(directory.resolve("embeddings.bin"));
+        store.put(1, 1, new float[]{1, 2});
+        store.put(2, 2, new float[]{1, 2, 3});
+        assertThat(store.contains(1, 1)).isFalse();
+        assertThat(store.get(2, 2)).containsExactly(1f, 2f, 3f);
+        store.close();
+    }
+}
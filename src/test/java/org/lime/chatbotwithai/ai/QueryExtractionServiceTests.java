@@ -0,0 +1,115 @@
+package org.lime.chatbotwithai.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.lime.chatbotwithai.product.BrandCatalog;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QueryExtractionServiceTests {
+
+    @Test
+    void chipRepliesAreParsedWithoutTheLlm() {
+        ChatClient client = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        QueryExtractionService extractor = extractor(client, registry);
+
+        assertThat(extractor.extract("≤ 600€").getMaxPrice()).isEqualTo(600.0);
+        assertThat(extractor.extract("Front load").getType()).isEqualTo("front");
+        assertThat(extractor.extract("8kg").getMinCapacityKg()).isEqualTo(8);
+        assertThat(extractor.extract("Bosch").getBrand()).isEqualTo("Bosch");
+        QueryFilter dimensions = extractor.extract("60×85×55 cm");
+        assertThat(List.of(dimensions.getWidthCm(), dimensions.getHeightCm(), dimensions.getDepthCm()))
+                .containsExactly(60.0, 85.0, 55.0);
+        assertThat(extractor.extract("any brand").isBrandFlexible()).isTrue();
+        verify(client, never()).prompt(any(Prompt.class));
+
+        assertThat(extractor.parse("a quiet one for a family of four, around 500").confidence()).isLessThan(0.8);
+        extractor.extract("a quiet one for a family of four, around 500");
+        verify(client, times(1)).prompt(any(Prompt.class));
+        assertThat(registry.get("extraction.requests").tag("tier", "heuristic").counter().count()).isEqualTo(6.0);
+        assertThat(registry.get("extraction.requests").tag("tier", "llm").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void identicalLlmExtractionsAreCoalescedCachedAndCopied() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ChatClient client = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+        when(client.prompt(any(Prompt.class)).call().content()).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return "{\"type\":\"front\",\"maxPrice\":500}";
+        });
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        QueryExtractionService extractor = extractor(client, registry);
+        String utterance = "something quiet for a family of four, around 500";
+
+        CompletableFuture<QueryFilter> first = CompletableFuture.supplyAsync(() -> extractor.extract(utterance));
+        CompletableFuture<QueryFilter> second = CompletableFuture.supplyAsync(() -> extractor.extract(utterance));
+        awaitUntil(() -> registry.get("extraction.coalesced").counter().count() >= 1, "coalesced request");
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(second.get(5, TimeUnit.SECONDS))
+                .isNotSameAs(second.get());
+
+        QueryFilter hit = extractor.extract("  Something QUIET for a family of four, around 500.0 ");
+        assertThat(hit.getMaxPrice()).isEqualTo(500.0);
+        hit.setMaxPrice(1.0);
+        assertThat(extractor.extract(utterance).getMaxPrice()).isEqualTo(500.0);
+
+        verify(client, times(1)).prompt(any(Prompt.class));
+        assertThat(registry.get("extraction.requests").tag("tier", "llm").counter().count()).isEqualTo(1.0);
+        assertThat(registry.get("extraction.requests").tag("tier", "cache").counter().count()).isEqualTo(3.0);
+    }
+
+    @Test
+    void theLlmSeesTheUtteranceAsTyped() {
+        ChatClient client = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+        ArgumentCaptor<Prompt> prompt = ArgumentCaptor.forClass(Prompt.class);
+        when(client.prompt(prompt.capture()).call().content()).thenAnswer(invocation ->
+                prompt.getValue().getContents().contains("1.500 €") ? "{\"maxPrice\":1500}" : "{\"maxPrice\":1.5}");
+        QueryExtractionService extractor = extractor(client, new SimpleMeterRegistry());
+        String utterance = "Etwas Leises für die Familie, unter 1.500 €";
+
+        assertThat(extractor.parse(utterance).confidence()).isLessThan(0.8);
+        assertThat(extractor.extract(utterance).getMaxPrice()).isEqualTo(1500.0);
+        assertThat(prompt.getValue().getContents()).contains("\"" + utterance + "\"");
+        // Same cache entry for another spelling, still with the thousands-separated price.
+        assertThat(extractor.extract("etwas leises für die familie,  unter 1.500 €").getMaxPrice()).isEqualTo(1500.0);
+    }
+
+    private static QueryExtractionService extractor(ChatClient client, SimpleMeterRegistry registry) {
+        ChatClient.Builder builder = mock(ChatClient.Builder.class);
+        when(builder.build()).thenReturn(client);
+        BrandCatalog brands = mock(BrandCatalog.class);
+        when(brands.getBrands()).thenReturn(List.of("Bosch", "Miele", "Samsung"));
+        return new QueryExtractionService(builder, new ObjectMapper(), brands, registry, 0.8, 100, Duration.ofMinutes(5));
+    }
+
+    private static void awaitUntil(BooleanSupplier condition, String what) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail(what + " not reached within 5 s");
+            }
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package org.lime.chatbotwithai.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lime.chatbotwithai.product.Bm25Index;
+import org.lime.chatbotwithai.product.Product;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+class SemanticRerankServiceTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void coldCandidatesAreEmbeddedInBatches() {
+        RecordingModel model = new RecordingModel(null);
+        SemanticRerankService reranker = new SemanticRerankService(model, queryCache(model),
+                new ProductEmbeddingStore(directory.resolve("embeddings.bin")), fusion("rrf"), breaker(),
+                16, "auto", 4096, Duration.ofSeconds(5));
+        List<Product> candidates = products(40);
+
+        assertThat(reranker.rerank(lexical(candidates), "quiet washer", candidates, 3)).hasSize(3);
+        assertThat(model.batchSizes).containsExactly(16, 16, 8);
+
+        model.batchSizes.clear();
+        reranker.rerank(lexical(candidates), "quiet washer", candidates, 3);
+        assertThat(model.batchSizes).isEmpty();
+    }
+
+    @Test
+    void concurrentRequestsShareInFlightEmbeddings() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingModel model = new RecordingModel(release);
+        SemanticRerankService reranker = new SemanticRerankService(model, queryCache(model),
+                new ProductEmbeddingStore(directory.resolve("embeddings.bin")), fusion("rrf"), breaker(),
+                64, "auto", 4096, Duration.ofSeconds(5));
+        List<Product> candidates = products(10);
+
+        CompletableFuture<List<Product>> first = CompletableFuture.supplyAsync(() -> reranker.rerank(lexical(candidates), "a", candidates, 3));
+        awaitUntil(() -> !model.batchSizes.isEmpty(), "first embedding batch");
+        CompletableFuture<List<Product>> second = CompletableFuture.supplyAsync(() -> reranker.rerank(lexical(candidates), "a", candidates, 3));
+        Thread.sleep(50);
+        release.countDown();
+
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(first.get(5, TimeUnit.SECONDS));
+        assertThat(model.batchSizes).containsExactly(10);
+    }
+
+    @Test
+    void claimsAreReleasedWhenABatchFailsAfterTheModelCall() {
+        RecordingModel model = new RecordingModel(null);
+        model.shortBatches = 1;
+        SemanticRerankService reranker = new SemanticRerankService(model, queryCache(model),
+                new ProductEmbeddingStore(directory.resolve("embeddings.bin")), fusion("rrf"), breaker(),
+                16, "auto", 4096, Duration.ofSeconds(5));
+        List<Product> candidates = products(10);
+
+        assertThatThrownBy(() -> reranker.refreshEmbeddings(candidates))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("returned 9 vectors for 10 texts");
+        // Nothing is left claimed: the next call embeds every product itself instead of waiting forever.
+        assertThat(CompletableFuture.supplyAsync(() -> reranker.refreshEmbeddings(candidates)))
+                .succeedsWithin(Duration.ofSeconds(5))
+                .isEqualTo(10);
+    }
+
+    @Test
+    void claimsAreReleasedWhenALaterProductFailsBeforeAnyBatch() {
+        RecordingModel model = new RecordingModel(null);
+        ProductEmbeddingStore store = spy(new ProductEmbeddingStore(directory.resolve("embeddings.bin")));
+        doThrow(new IllegalStateException("store read failed")).doCallRealMethod()
+                .when(store).contains(eq(5L), anyLong());
+        SemanticRerankService reranker = new SemanticRerankService(model, queryCache(model), store, fusion("rrf"),
+                breaker(), 16, "auto", 4096, Duration.ofSeconds(30));
+        List<Product> candidates = products(10);
+
+        assertThatThrownBy(() -> reranker.refreshEmbeddings(candidates)).hasMessage("store read failed");
+        // Products 1-4 were claimed before the failure; the next call must not wait out the in-flight timeout.
+        assertThat(CompletableFuture.supplyAsync(() -> reranker.refreshEmbeddings(candidates)))
+                .succeedsWithin(Duration.ofSeconds(5))
+                .isEqualTo(10);
+    }
+
+    @Test
+    void waitsOnAnotherRequestsEmbeddingsEndWithTheBudget() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingModel model = new RecordingModel(release);
+        // One budget thread: a rerank still waiting after its fallback would leave nothing for the next request.
+        EmbeddingCircuitBreaker breaker = new EmbeddingCircuitBreaker(new SimpleMeterRegistry(), 5,
+                Duration.ofSeconds(30), Duration.ofSeconds(10), Duration.ofMillis(100), 1, 16);
+        SemanticRerankService reranker = new SemanticRerankService(model, queryCache(model),
+                new ProductEmbeddingStore(directory.resolve("embeddings.bin")), fusion("rrf"), breaker,
+                16, "auto", 4096, Duration.ofSeconds(30));
+        List<Product> candidates = products(10);
+
+        CompletableFuture<Integer> owner = CompletableFuture.supplyAsync(() -> reranker.refreshEmbeddings(candidates));
+        awaitUntil(() -> !model.batchSizes.isEmpty(), "owner embedding batch");
+        assertThat(reranker.rerank(lexical(candidates), "quiet washer", candidates, 3)).hasSize(3);
+        Thread.sleep(200);
+        assertThat(breaker.withinBudget("probe", () -> true)).contains(true);
+
+        release.countDown();
+        assertThat(owner.get(5, TimeUnit.SECONDS)).isEqualTo(10);
+    }
+
+    @Test
+    void fusionLiftsProductsThatMentionTheQueryTerms() {
+        List<Product> candidates = products(30);
+        candidates.get(17).setDescription("EcoSilence drive, 1600 rpm, Wi-Fi");
+        candidates.get(4).setDescription("Steam refresh, 1400 rpm");
+        RecordingModel model = new RecordingModel(null);
+        ProductEmbeddingStore store = new ProductEmbeddingStore(directory.resolve("embeddings.bin"));
+
+        SemanticRerankService semanticOnly = new SemanticRerankService(model, queryCache(model), store,
+                fusion("semantic"), breaker(), 16, "auto", 4096, Duration.ofSeconds(5));
+        SemanticRerankService hybrid = new SemanticRerankService(model, queryCache(model), store,
+                fusion("rrf"), breaker(), 16, "auto", 4096, Duration.ofSeconds(5));
+
+        assertThat(semanticOnly.rerank(lexical(candidates), "ecosilence wifi", candidates, 1).get(0).getId()).isNotEqualTo(18L);
+        assertThat(hybrid.rerank(lexical(candidates), "ecosilence wifi", candidates, 1).get(0).getId()).isEqualTo(18L);
+        assertThat(hybrid.rerank(lexical(candidates), "1600rpm", candidates, 1).get(0).getId()).isEqualTo(18L);
+        // No query term in any candidate: the cosine order is kept.
+        assertThat(hybrid.rerank(lexical(candidates), "quiet washer", candidates, 5))
+                .isEqualTo(semanticOnly.rerank(lexical(candidates), "quiet washer", candidates, 5));
+    }
+
+    @Test
+    void slowEmbeddingsFallBackToLexicalRankingAndOpenTheBreaker() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingModel model = new RecordingModel(release);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EmbeddingCircuitBreaker breaker = new EmbeddingCircuitBreaker(registry, 1, Duration.ofMinutes(1),
+                Duration.ofMillis(50), Duration.ofMillis(100), 2, 16);
+        List<Product> candidates = products(10);
+        candidates.get(6).setDescription("Steam refresh");
+        SemanticRerankService reranker = new SemanticRerankService(model, queryCache(model, breaker),
+                new ProductEmbeddingStore(directory.resolve("embeddings.bin")), fusion("rrf"), breaker,
+                16, "auto", 4096, Duration.ofSeconds(5));
+
+        long started = System.nanoTime();
+        assertThat(reranker.rerank(lexical(candidates), "steam", candidates, 3)).extracting(Product::getId).containsExactly(7L, 1L, 2L);
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(2));
+        assertThat(registry.get("catalog.embeddings.budget.overruns").tag("operation", "rerank").counter().count())
+                .isEqualTo(1.0);
+
+        // The overrunning batch completes late, counts as a slow call and opens the breaker.
+        release.countDown();
+        awaitUntil(() -> breaker.state() == EmbeddingCircuitBreaker.State.OPEN, "open breaker");
+        assertThat(reranker.rerank(lexical(candidates), "steam", candidates, 1)).extracting(Product::getId).containsExactly(7L);
+        assertThat(registry.get("catalog.embeddings.budget.fallbacks").tag("reason", "breaker_open").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void aFullBudgetQueueFallsBackAtOnce() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EmbeddingCircuitBreaker breaker = new EmbeddingCircuitBreaker(registry, 5, Duration.ofSeconds(30),
+                Duration.ofSeconds(5), Duration.ofSeconds(5), 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Optional<Boolean>> running = CompletableFuture.supplyAsync(() ->
+                breaker.withinBudget("busy", () -> await(release)));
+        CompletableFuture<Optional<Boolean>> queued = CompletableFuture.supplyAsync(() ->
+                breaker.withinBudget("queued", () -> true));
+        awaitUntil(() -> registry.find("catalog.embeddings.budget.calls").tag("operation", "queued").counter() != null,
+                "queued call");
+        Thread.sleep(50);
+
+        long started = System.nanoTime();
+        assertThat(breaker.withinBudget("rerank", () -> true)).isEmpty();
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(1));
+        assertThat(registry.get("catalog.embeddings.budget.fallbacks").tag("reason", "rejected").counter().count())
+                .isEqualTo(1.0);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).contains(true);
+        assertThat(queued.get(5, TimeUnit.SECONDS)).contains(true);
+    }
+
+    @Test
+    void kernelRankingMatchesCosine() {
+        Random random = new Random(7);
+        int rows = 2000;
+        int dim = 768;
+        float[][] raw = new float[rows][dim];
+        EmbeddingMatrix matrix = new EmbeddingMatrix(rows, dim);
+        for (int r = 0; r < rows; r++) {
+            for (int i = 0; i < dim; i++) {
+                raw[r][i] = (float) random.nextGaussian() * (1 + r % 5);
+            }
+            matrix.setRow(r, EmbeddingMatrix.normalize(raw[r].clone()));
+        }
+        float[] query = new float[dim];
+        for (int i = 0; i < dim; i++) {
+            query[i] = (float) random.nextGaussian();
+        }
+
+        double[] cosine = new double[rows];
+        for (int r = 0; r < rows; r++) {
+            double dot = 0, nq = 0, nr = 0;
+            for (int i = 0; i < dim; i++) {
+                dot += query[i] * raw[r][i];
+                nq += query[i] * query[i];
+                nr += raw[r][i] * raw[r][i];
+            }
+            cosine[r] = dot / (Math.sqrt(nq) * Math.sqrt(nr));
+        }
+        List<Integer> expected = IntStream.range(0, rows).boxed()
+                .sorted((a, b) -> Double.compare(cosine[b], cosine[a])).limit(20).toList();
+
+        float[] unitQuery = EmbeddingMatrix.normalize(query.clone());
+        for (String name : List.of("scalar", "auto")) {
+            float[] scores = matrix.scores(unitQuery, VectorKernel.forName(name));
+            for (int r = 0; r < rows; r++) {
+                assertThat(scores[r]).as(name).isCloseTo((float) cosine[r], within(1e-5f));
+            }
+            List<Integer> actual = IntStream.range(0, rows).boxed()
+                    .sorted((a, b) -> Float.compare(scores[b], scores[a])).limit(20).toList();
+            assertThat(actual).as(name).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void parallelTopKMatchesAFullSort() {
+        Random random = new Random(9);
+        int rows = 10_000;
+        int dim = 32;
+        EmbeddingMatrix matrix = new EmbeddingMatrix(rows, dim);
+        for (int r = 0; r < rows; r++) {
+            float[] row = new float[dim];
+            for (int i = 0; i < dim; i++) {
+                // Coarse values so many rows tie and the tie-break is exercised.
+                row[i] = random.nextInt(3) - 1;
+            }
+            matrix.setRow(r, EmbeddingMatrix.normalize(row));
+        }
+        float[] query = Arrays.copyOf(matrix.data(), dim);
+
+        float[] scores = matrix.scores(query, VectorKernel.forName("scalar"));
+        List<Integer> expected = IntStream.range(0, rows).boxed()
+                .sorted((a, b) -> Float.compare(scores[b], scores[a]))
+                .limit(25)
+                .toList();
+        for (int threshold : new int[]{rows, 100}) {
+            TopKScorer scorer = new TopKScorer(VectorKernel.forName("scalar"), ForkJoinPool.commonPool(), threshold);
+            assertThat(IntStream.of(scorer.topK(matrix, query, 25)).boxed().toList())
+                    .as("threshold %d", threshold)
+                    .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void parallelScoresMatchTheSerialKernel() {
+        Random random = new Random(11);
+        int rows = 5_000;
+        int dim = 16;
+        EmbeddingMatrix matrix = new EmbeddingMatrix(rows, dim);
+        for (int r = 0; r < rows; r++) {
+            float[] row = new float[dim];
+            for (int i = 0; i < dim; i++) {
+                row[i] = (float) random.nextGaussian();
+            }
+            matrix.setRow(r, EmbeddingMatrix.normalize(row));
+        }
+        float[] query = Arrays.copyOf(matrix.data(), dim);
+
+        float[] expected = matrix.scores(query, VectorKernel.forName("scalar"));
+        TopKScorer scorer = new TopKScorer(VectorKernel.forName("scalar"), ForkJoinPool.commonPool(), 100);
+        assertThat(scorer.scores(matrix, query)).containsExactly(expected);
+    }
+
+    @Test
+    void primitiveRankingMatchesAStableSort() {
+        Random random = new Random(13);
+        float[] scores = new float[2_000];
+        for (int i = 0; i < scores.length; i++) {
+            // Coarse values with both signs so ties and negative scores are exercised.
+            scores[i] = (random.nextInt(41) - 20) / 4f;
+        }
+        List<Integer> all = IntStream.range(0, scores.length).boxed()
+                .sorted((a, b) -> Float.compare(scores[b], scores[a]))
+                .toList();
+
+        assertThat(IntStream.of(HybridFusion.descending(scores, false)).boxed().toList()).isEqualTo(all);
+        assertThat(IntStream.of(HybridFusion.descending(scores, true)).boxed().toList())
+                .isEqualTo(all.stream().filter(i -> scores[i] > 0).toList());
+    }
+
+    @Test
+    void queryTextIsNormalizedBeforeCaching() {
+        assertThat(QueryEmbeddingCache.normalize("  Front   LOAD ")).isEqualTo("front load");
+        assertThat(QueryEmbeddingCache.normalize("under 600.0 EUR, 8.50 kg")).isEqualTo("under 600 eur, 8.5 kg");
+        assertThat(QueryEmbeddingCache.normalize("1299.900 or 12.10")).isEqualTo("1299.9 or 12.1");
+        // Thousand groups are not fractions: "1.500" must not share a vector with "1.5".
+        assertThat(QueryEmbeddingCache.normalize("unter 1.000 €, 1.500 oder 1.250.000"))
+                .isEqualTo("unter 1.000 €, 1.500 oder 1.250.000");
+
+        RecordingModel model = new RecordingModel(null);
+        QueryEmbeddingCache cache = queryCache(model);
+        assertThat(cache.unitVector("Front load")).isSameAs(cache.unitVector("front  load"));
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static HybridFusion fusion(String mode) {
+        return new HybridFusion(mode, 0.7, 0.3, 60);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition, String what) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail(what + " not reached within 5 s");
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static Bm25Index lexical(List<Product> candidates) {
+        return Bm25Index.build(candidates);
+    }
+
+    private static EmbeddingCircuitBreaker breaker() {
+        return new EmbeddingCircuitBreaker(new SimpleMeterRegistry(), 5, Duration.ofSeconds(30), Duration.ofSeconds(5),
+                Duration.ofSeconds(10), 4, 16);
+    }
+
+    private static QueryEmbeddingCache queryCache(EmbeddingModel model) {
+        return queryCache(model, breaker());
+    }
+
+    private static QueryEmbeddingCache queryCache(EmbeddingModel model, EmbeddingCircuitBreaker breaker) {
+        return new QueryEmbeddingCache(model, breaker, new SimpleMeterRegistry(), DataSize.ofMegabytes(1),
+                Duration.ofMinutes(5));
+    }
+
+    private static List<Product> products(int count) {
+        List<Product> products = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            Product product = new Product();
+            product.setId(id);
+            product.setBrand("Brand" + id);
+            product.setModel("M" + id);
+            product.setType(id % 2 == 0 ? "front" : "top");
+            products.add(product);
+        }
+        return products;
+    }
+
+    // Hashed vectors from the text; counts only the product batches, not the single query embeddings.
+    private static final class RecordingModel extends StubEmbeddingModel {
+
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private final CountDownLatch release;
+        // This many batches come back one vector short, as a misbehaving model would.
+        volatile int shortBatches;
+
+        RecordingModel(CountDownLatch release) {
+            super(StubEmbeddingModel::hashed);
+            this.release = release;
+        }
+
+        @Override
+        public List<float[]> embed(List<String> texts) {
+            batchSizes.add(texts.size());
+            if (release != null) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            List<float[]> vectors = super.embed(texts);
+            if (shortBatches > 0) {
+                shortBatches--;
+                return vectors.subList(1, vectors.size());
+            }
+            return vectors;
+        }
+    }
+}
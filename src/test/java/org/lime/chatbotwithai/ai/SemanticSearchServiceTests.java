@@ -0,0 +1,142 @@
+package org.lime.chatbotwithai.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lime.chatbotwithai.product.CatalogSnapshot;
+import org.lime.chatbotwithai.product.CatalogSnapshots;
+import org.lime.chatbotwithai.product.Product;
+import org.lime.chatbotwithai.product.ProductRepository;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+class SemanticSearchServiceTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void quantizedHitsWithoutAStoredVectorAreDroppedRatherThanRankedOnTheirInt8Score() {
+        List<Product> catalog = products(60);
+        ProductRepository repository = mock(ProductRepository.class);
+        when(repository.findAll()).thenReturn(catalog);
+        CatalogSnapshots snapshots = new CatalogSnapshots(repository, event -> { });
+        CatalogSnapshot snapshot = snapshots.current();
+        EmbeddingModel model = new StubEmbeddingModel(SemanticSearchServiceTests::seeded);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EmbeddingCircuitBreaker breaker = new EmbeddingCircuitBreaker(registry, 5, Duration.ofSeconds(30),
+                Duration.ofSeconds(5), Duration.ofSeconds(10), 2, 16);
+        QueryEmbeddingCache queries = new QueryEmbeddingCache(model, breaker, registry, DataSize.ofMegabytes(1),
+                Duration.ofMinutes(5));
+        ProductEmbeddingStore store = spy(new ProductEmbeddingStore(directory.resolve("embeddings.bin")));
+        new SemanticRerankService(model, queries, store, new HybridFusion("semantic", 0.7, 0.3, 60), breaker,
+                16, "auto", 4096, Duration.ofSeconds(5)).refreshEmbeddings(catalog);
+        SemanticSearchService search = new SemanticSearchService(snapshots, store, queries, breaker,
+                16, 100, 64, 4, 1000, "int8", 4);
+
+        awaitUntil(() -> search.search(snapshot, "quiet washer", null, 1.0, 5,
+                SemanticSearchService.FilterMode.PRE).complete(), "index synced");
+        SemanticSearchService.Hits before = search.search(snapshot, "quiet washer", null, 1.0, 5,
+                SemanticSearchService.FilterMode.PRE);
+        assertThat(before.products()).hasSize(5);
+        long best = before.products().get(0).getId();
+
+        // The best hit's text changed after the graph was synced: its old vector is gone from the store.
+        doReturn(false).when(store).copyInto(eq(best), anyLong(), any(float[].class), anyInt());
+        SemanticSearchService.Hits after = search.search(snapshot, "quiet washer", null, 1.0, 5,
+                SemanticSearchService.FilterMode.PRE);
+
+        assertThat(after.products()).extracting(Product::getId)
+                .doesNotContain(best)
+                .containsSubsequence(before.products().subList(1, 5).stream().map(Product::getId).toList());
+        assertThat(after.complete()).as("callers merge attribute candidates instead").isFalse();
+    }
+
+    @Test
+    void storeWritesAreIndexedInTheBackgroundAndTrackedInCoverage() {
+        List<Product> catalog = products(40);
+        ProductRepository repository = mock(ProductRepository.class);
+        when(repository.findAll()).thenReturn(catalog);
+        CatalogSnapshots snapshots = new CatalogSnapshots(repository, event -> { });
+        CatalogSnapshot snapshot = snapshots.current();
+        EmbeddingModel model = new StubEmbeddingModel(SemanticSearchServiceTests::seeded);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EmbeddingCircuitBreaker breaker = new EmbeddingCircuitBreaker(registry, 5, Duration.ofSeconds(30),
+                Duration.ofSeconds(5), Duration.ofSeconds(10), 2, 16);
+        QueryEmbeddingCache queries = new QueryEmbeddingCache(model, breaker, registry, DataSize.ofMegabytes(1),
+                Duration.ofMinutes(5));
+        ProductEmbeddingStore store = new ProductEmbeddingStore(directory.resolve("embeddings.bin"));
+        SemanticRerankService reranker = new SemanticRerankService(model, queries, store,
+                new HybridFusion("semantic", 0.7, 0.3, 60), breaker, 16, "auto", 4096, Duration.ofSeconds(5));
+        SemanticSearchService search = new SemanticSearchService(snapshots, store, queries, breaker,
+                16, 100, 64, 4, 1000, "none", 4);
+        QueryFilter front = QueryFilter.builder().type("front").build();
+        QueryFilter top = QueryFilter.builder().type("top").build();
+        // Only the front loaders are embedded, as while warm-up is still running.
+        reranker.refreshEmbeddings(catalog.stream().filter(p -> p.getType().equals("front")).toList());
+
+        awaitUntil(() -> search.search(snapshot, "quiet washer", front, 1.0, 5,
+                SemanticSearchService.FilterMode.PRE).complete(), "front loaders indexed");
+        SemanticSearchService.Hits unfiltered = search.search(snapshot, "quiet washer", null, 1.0, 5,
+                SemanticSearchService.FilterMode.PRE);
+        assertThat(unfiltered.products()).hasSize(5).allMatch(p -> p.getType().equals("front"));
+        assertThat(unfiltered.complete()).isFalse();
+        assertThat(search.search(snapshot, "quiet washer", top, 1.0, 5,
+                SemanticSearchService.FilterMode.PRE).complete()).isFalse();
+
+        reranker.refreshEmbeddings(catalog);
+
+        awaitUntil(() -> search.search(snapshot, "quiet washer", null, 1.0, 5,
+                SemanticSearchService.FilterMode.PRE).complete(), "whole catalog indexed");
+        assertThat(search.search(snapshot, "quiet washer", top, 1.0, 5, SemanticSearchService.FilterMode.PRE)
+                .products()).hasSize(5).allMatch(p -> p.getType().equals("top"));
+    }
+
+    private static void awaitUntil(BooleanSupplier condition, String what) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail(what + " not reached within 5 s");
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static List<Product> products(int count) {
+        List<Product> products = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            products.add(Product.builder().id(id).brand("Brand" + id).model("M" + id)
+                    .type(id % 2 == 0 ? "front" : "top").price(300.0 + id).build());
+        }
+        return products;
+    }
+
+    // Deterministic pseudo-random vectors per text, spread enough for the int8 graph to be exercised.
+    private static float[] seeded(String text) {
+        Random random = new Random(text.hashCode());
+        float[] vector = new float[16];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,50 @@
+package org.lime.chatbotwithai.ai;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Stands in for the embedding service in tests: every text is embedded as {@code vectors.apply(text)}, so the
+ * same text always gets the same vector. Subclasses override {@link #embed(List)} to observe or disturb batches.
+ */
+public class StubEmbeddingModel implements EmbeddingModel {
+
+    private final Function<String, float[]> vectors;
+
+    public StubEmbeddingModel(Function<String, float[]> vectors) {
+        this.vectors = vectors;
+    }
+
+    /**
+     * A small vector from the bytes of the text's hash code; enough to tell products apart in a rerank.
+     */
+    public static float[] hashed(String text) {
+        int h = text.hashCode();
+        return new float[]{h & 0xff, (h >> 8) & 0xff, (h >> 16) & 0xff, 1};
+    }
+
+    @Override
+    public List<float[]> embed(List<String> texts) {
+        return texts.stream().map(vectors).toList();
+    }
+
+    @Override
+    public float[] embed(String text) {
+        return vectors.apply(text);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return vectors.apply(document.getText());
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,151 @@
+package org.lime.chatbotwithai.catalog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lime.chatbotwithai.ai.SemanticRerankService;
+import org.lime.chatbotwithai.product.CatalogSnapshots;
+import org.lime.chatbotwithai.product.Product;
+import org.lime.chatbotwithai.product.ProductRepository;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+class CatalogImportServiceTests {
+
+    // Far above the bundled catalog, removed again after each test.
+    private static final long FIRST_ID = 9001;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    ObjectMapper mapper;
+
+    @Autowired
+    ProductRepository repository;
+
+    @TempDir
+    Path checkpointDir;
+
+    private final SemanticRerankService reranker = mock(SemanticRerankService.class);
+
+    @AfterEach
+    void removeImportedRows() {
+        jdbcTemplate.update("DELETE FROM product WHERE id >= ?", FIRST_ID);
+    }
+
+    @Test
+    void upsertUpdatesExistingRowsAndReembedsOnlyChangedText() {
+        when(reranker.refreshEmbeddings(anyList())).thenAnswer(call -> ((List<?>) call.getArgument(0)).size());
+        CatalogImportService importer = importer(2);
+        importer.importFeed(feed("""
+                id,brand,model,type,price,description
+                9001,Bosch,Serie 4,front,499,Quiet motor
+                9002,Miele,W1,front,899,Steam care
+                9003,LG,F4,front,549,Direct drive
+                """), ProductFeedFormat.CSV, false, true);
+
+        CatalogImportResult result = importer.importFeed(feed("""
+                id,brand,model,type,price,description
+                9001,Bosch,Serie 4,front,449,Quiet motor
+                9002,Miele,W1,front,899,Steam care and TwinDos
+                9004,Beko,B3,top,399,Compact
+                """), ProductFeedFormat.CSV, false, true);
+
+        assertThat(result.rowsWritten()).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT price FROM product WHERE id = 9001", Double.class))
+                .as("price-only change is written").isEqualTo(449.0);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM product WHERE id >= 9001", Integer.class))
+                .isEqualTo(4);
+        assertThat(embeddedIds()).containsExactly(9001L, 9002L, 9003L, 9002L, 9004L);
+        assertThat(result.productsEmbedded()).isEqualTo(2);
+    }
+
+    @Test
+    void recordsWithoutIdOrThatDoNotParseAreSkippedAndCounted() {
+        CatalogImportResult result = importer(10).importFeed(feed("""
+                {"id":9001,"brand":"Bosch","type":"front","price":499}
+                {"brand":"Miele","type":"front","price":899}
+                {"id":9003,"brand":"LG","price":"not a number"}
+                {"id":9004,"brand":"Beko","type":"top","price":399}
+                """), ProductFeedFormat.JSONL, false, false);
+
+        assertThat(result.recordsRead()).isEqualTo(4);
+        assertThat(result.recordsRejected()).isEqualTo(2);
+        assertThat(result.rowsWritten()).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM product WHERE id >= 9001 ORDER BY id", Long.class))
+                .containsExactly(9001L, 9004L);
+    }
+
+    @Test
+    void resumeSkipsRecordsCommittedBeforeTheInterruption(@TempDir Path feeds) throws IOException {
+        Path file = Files.writeString(feeds.resolve("products.csv"), """
+                id,brand,type,price
+                9001,Bosch,front,499
+                9002,Miele,front,899
+                9003,LG,front,549
+                """);
+        Resource feed = new FileSystemResource(file);
+        String location = feed.getURI().toString();
+        String fingerprint = feed.contentLength() + ":" + feed.lastModified();
+        ImportCheckpointStore checkpoints = new ImportCheckpointStore(checkpointDir);
+        checkpoints.save(new ImportCheckpointStore.Checkpoint(location, fingerprint, 2));
+
+        CatalogImportResult result = importer(checkpoints, 10).importFeed(feed, ProductFeedFormat.CSV, true, false);
+
+        assertThat(result.recordsSkipped()).isEqualTo(2);
+        assertThat(result.rowsWritten()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM product WHERE id >= 9001", Long.class))
+                .containsExactly(9003L);
+        assertThat(checkpoints.resumeFrom(location, fingerprint)).as("cleared after success").isZero();
+    }
+
+    private CatalogImportService importer(int batchSize) {
+        return importer(new ImportCheckpointStore(checkpointDir), batchSize);
+    }
+
+    private CatalogImportService importer(ImportCheckpointStore checkpoints, int batchSize) {
+        return new CatalogImportService(jdbcTemplate, transactionTemplate, mapper, checkpoints, reranker,
+                new CatalogSnapshots(repository, event -> {
+                }), new SimpleMeterRegistry(), batchSize, 8);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> embeddedIds() {
+        ArgumentCaptor<List<Product>> batches = ArgumentCaptor.forClass(List.class);
+        verify(reranker, atLeastOnce()).refreshEmbeddings(batches.capture());
+        List<Long> ids = new ArrayList<>();
+        batches.getAllValues().forEach(batch -> batch.forEach(product -> ids.add(product.getId())));
+        return ids;
+    }
+
+    private static Resource feed(String content) {
+        return new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8), "test feed");
+    }
+}
@@ -0,0 +1,96 @@
+package org.lime.chatbotwithai.catalog;
+
+import org.junit.jupiter.api.Test;
+import org.lime.chatbotwithai.product.Product;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvProductFeedReaderTests {
+
+    @Test
+    void quotedFieldsKeepCommasAndEscapedQuotes() throws IOException {
+        CsvProductFeedReader reader = open("""
+                id,brand,description
+                1,Bosch,"Quiet, 1200 rpm ""EcoSilence"" motor"
+                """);
+
+        Product product = reader.next();
+        assertThat(product.getBrand()).isEqualTo("Bosch");
+        assertThat(product.getDescription()).isEqualTo("Quiet, 1200 rpm \"EcoSilence\" motor");
+        assertThat(reader.hasNext()).isFalse();
+    }
+
+    @Test
+    void quotedFieldsMaySpanLines() throws IOException {
+        CsvProductFeedReader reader = open("""
+                id,brand,description,price
+                1,Bosch,"Quiet motor.
+                ""EcoSilence"", 1400 rpm
+
+                Steam refresh",499
+                2,LG,,549
+                3,Miele,x,cheap
+                """);
+
+        Product first = reader.next();
+        assertThat(first.getDescription()).isEqualTo("Quiet motor.\n\"EcoSilence\", 1400 rpm\n\nSteam refresh");
+        assertThat(first.getPrice()).isEqualTo(499.0);
+        assertThat(reader.next().getBrand()).isEqualTo("LG");
+        assertThatThrownBy(reader::next).hasMessageContaining("line 7");
+        assertThat(reader.hasNext()).isFalse();
+    }
+
+    @Test
+    void acceptsTableAndPropertyColumnNamesAndIgnoresUnknownOnes() throws IOException {
+        CsvProductFeedReader reader = open("""
+                ﻿ID,Capacity_Kg,widthCm,HEIGHT_CM,depthcm,price,colour
+                1,7.6,60,85,55.5,499,white
+
+                2,,,,,,
+                """);
+
+        Product first = reader.next();
+        assertThat(first.getId()).isEqualTo(1L);
+        assertThat(first.getCapacityKg()).isEqualTo(8);
+        assertThat(first.getWidthCm()).isEqualTo(60.0);
+        assertThat(first.getHeightCm()).isEqualTo(85.0);
+        assertThat(first.getDepthCm()).isEqualTo(55.5);
+        assertThat(first.getPrice()).isEqualTo(499.0);
+        Product second = reader.next();
+        assertThat(second.getId()).as("blank line skipped").isEqualTo(2L);
+        assertThat(second.getCapacityKg()).isNull();
+        assertThat(reader.hasNext()).isFalse();
+    }
+
+    @Test
+    void aBadRowFailsAloneAndAMissingIdIsLeftToTheImporter() throws IOException {
+        CsvProductFeedReader reader = open("""
+                id,brand,price
+                1,Bosch,cheap
+                ,Miele,899
+                3,LG,549
+                """);
+
+        assertThatThrownBy(reader::next)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("line 2");
+        assertThat(reader.next().getId()).isNull();
+        assertThat(reader.next().getBrand()).isEqualTo("LG");
+        assertThat(reader.hasNext()).isFalse();
+    }
+
+    @Test
+    void aFeedWithoutIdColumnIsRejected() {
+        assertThatThrownBy(() -> open("brand,model\nBosch,Serie 4\n"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static CsvProductFeedReader open(String csv) throws IOException {
+        return new CsvProductFeedReader(new BufferedReader(new StringReader(csv)));
+    }
+}
@@ -0,0 +1,49 @@
+package org.lime.chatbotwithai.catalog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FeedDirectoryTests {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void resolvesRelativePathsInsideTheDirectory() throws IOException {
+        Files.createDirectories(root.resolve("2024"));
+        Files.writeString(root.resolve("2024/products.csv"), "id\n1\n");
+        Resource feed = new FeedDirectory(root).resolve("2024/products.csv");
+
+        assertThat(feed.exists()).isTrue();
+        assertThat(feed.getFile().toPath()).isEqualTo(root.resolve("2024/products.csv").toAbsolutePath());
+    }
+
+    @Test
+    void rejectsUrlsSchemesAndPathsOutsideTheDirectory() {
+        FeedDirectory feeds = new FeedDirectory(root);
+        for (String location : new String[]{
+                "http://169.254.169.254/latest/meta-data", "file:/etc/passwd", "classpath:application.yml",
+                "/etc/passwd", "../outside.csv", "a/../../outside.csv", "", "."}) {
+            assertThatThrownBy(() -> feeds.resolve(location))
+                    .as(location)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void rejectsSymlinksLeadingOutOfTheDirectory(@TempDir Path outside) throws IOException {
+        Path secret = Files.writeString(outside.resolve("secret.csv"), "id\n1\n");
+        Files.createSymbolicLink(root.resolve("link.csv"), secret);
+
+        assertThatThrownBy(() -> new FeedDirectory(root).resolve("link.csv"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
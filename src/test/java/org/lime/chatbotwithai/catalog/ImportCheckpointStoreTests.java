@@ -0,0 +1,36 @@
+package org.lime.chatbotwithai.catalog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImportCheckpointStoreTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void resumesOnlyTheSameFeedVersion() {
+        ImportCheckpointStore store = new ImportCheckpointStore(directory.resolve("checkpoints"));
+        store.save(new ImportCheckpointStore.Checkpoint("file:/feeds/a.csv", "100:1", 500));
+        store.save(new ImportCheckpointStore.Checkpoint("file:/feeds/a.csv", "100:1", 1000));
+
+        ImportCheckpointStore reopened = new ImportCheckpointStore(directory.resolve("checkpoints"));
+        assertThat(reopened.resumeFrom("file:/feeds/a.csv", "100:1")).isEqualTo(1000);
+        assertThat(reopened.resumeFrom("file:/feeds/a.csv", "120:2")).as("feed changed").isZero();
+        assertThat(reopened.resumeFrom("file:/feeds/b.csv", "100:1")).as("other feed").isZero();
+    }
+
+    @Test
+    void clearedCheckpointStartsOver() {
+        ImportCheckpointStore store = new ImportCheckpointStore(directory);
+        store.save(new ImportCheckpointStore.Checkpoint("file:/feeds/a.csv", "100:1", 500));
+        store.clear("file:/feeds/a.csv");
+        store.clear("file:/feeds/never-imported.csv");
+
+        assertThat(store.resumeFrom("file:/feeds/a.csv", "100:1")).isZero();
+    }
+}
@@ -0,0 +1,235 @@
+package org.lime.chatbotwithai.conversation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lime.chatbotwithai.ai.QueryExtractionService;
+import org.lime.chatbotwithai.ai.QueryFilter;
+import org.lime.chatbotwithai.ai.SearchAnswerService;
+import org.lime.chatbotwithai.product.BrandCatalog;
+import org.lime.chatbotwithai.conversation.ConversationTurnResponse.AssistantMessage;
+import org.lime.chatbotwithai.product.Product;
+import org.lime.chatbotwithai.product.ProductFacetService;
+import org.lime.chatbotwithai.product.ProductFacets;
+import org.lime.chatbotwithai.product.ProductSearchService;
+import org.lime.chatbotwithai.product.ProductSummary;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConversationServiceTests {
+
+    private static final Product BOSCH = Product.builder().id(1L).brand("Bosch").model("Serie 4").type("front")
+            .price(499.0).capacityKg(8).build();
+
+    private final QueryExtractionService extractor = mock(QueryExtractionService.class);
+    private final ProductSearchService search = mock(ProductSearchService.class);
+    private final ProductFacetService facets = mock(ProductFacetService.class);
+    private final QuestionGenerationService questions = mock(QuestionGenerationService.class);
+    private final SearchAnswerService answers = mock(SearchAnswerService.class);
+    private final ConversationService service = new ConversationService(extractor, search, mock(BrandCatalog.class),
+            facets, questions, answers, new SimpleMeterRegistry(), 4);
+
+    @BeforeEach
+    void noFacets() {
+        when(facets.facets(any(), anyDouble())).thenReturn(ProductFacets.empty());
+    }
+
+    @AfterEach
+    void stop() {
+        service.shutdown();
+    }
+
+    @Test
+    void onlyTheNewestUtteranceIsExtracted() {
+        when(extractor.extract(anyString())).thenReturn(new QueryFilter());
+        when(extractor.extract("under 600 euros")).thenReturn(QueryFilter.builder().maxPrice(600.0).build());
+        when(extractor.extract("front loader please")).thenReturn(QueryFilter.builder().type("front").build());
+        String session = service.startConversation("en").sessionId();
+
+        reply(session, "under 600 euros");
+        reply(session, "front loader please");
+        reply(session, "not too loud, and no dryer combo");
+        reply(session, "any colour is fine");
+
+        verify(extractor, never()).extract("under 600 euros\nfront loader please");
+        verify(extractor, never()).extract(
+                "under 600 euros\nfront loader please\nnot too loud, and no dryer combo");
+        verify(extractor, never()).extract(
+                "under 600 euros\nfront loader please\nnot too loud, and no dryer combo\nany colour is fine");
+        QueryFilter filter = service.currentFilter(session);
+        assertThat(filter.getMaxPrice()).isEqualTo(600.0);
+        assertThat(filter.getType()).isEqualTo("front");
+    }
+
+    @Test
+    void aCorrectionRescansTheTranscriptAndAppliesTheNewestUtteranceLast() {
+        when(extractor.extract("front loader, under 600 euros"))
+                .thenReturn(QueryFilter.builder().type("front").maxPrice(600.0).build());
+        when(extractor.extract("actually I meant a top loader"))
+                .thenReturn(QueryFilter.builder().type("top").build());
+        // Read as a whole, the transcript still mentions the front loader first.
+        when(extractor.extract("front loader, under 600 euros\nactually I meant a top loader"))
+                .thenReturn(QueryFilter.builder().type("front").maxPrice(650.0).build());
+        String session = service.startConversation("en").sessionId();
+
+        reply(session, "front loader, under 600 euros");
+        reply(session, "actually I meant a top loader");
+
+        var order = inOrder(extractor);
+        order.verify(extractor).extract("actually I meant a top loader");
+        order.verify(extractor).extract("front loader, under 600 euros\nactually I meant a top loader");
+        QueryFilter filter = service.currentFilter(session);
+        assertThat(filter.getType()).as("newest utterance wins").isEqualTo("top");
+        assertThat(filter.getMaxPrice()).as("earlier turns reread").isEqualTo(650.0);
+    }
+
+    @Test
+    void aCollectingTurnAsksForTheNextSlotWithoutAShortlist() {
+        when(extractor.extract("under 600 euros")).thenReturn(QueryFilter.builder().maxPrice(600.0).build());
+        when(search.preview(any(), anyInt())).thenReturn(List.of(ProductSummary.of(BOSCH)));
+        String session = service.startConversation("en").sessionId();
+
+        ConversationTurnResponse turn = reply(session, "under 600 euros");
+
+        assertThat(turn.status()).isEqualTo("collecting");
+        assertThat(turn.result()).isNull();
+        assertThat(turn.preview().items()).extracting(ConversationTurnResponse.PreviewItem::id).containsExactly(1L);
+        assertThat(turn.chips()).as("static type chips while no facets match").contains("Front load");
+        verify(search, never()).finalResults(anyString(), any(), anyInt(), anyDouble());
+    }
+
+    @Test
+    void aFinishingTurnStartsTheShortlistBeforeThePreviewAndOverlapsThem() {
+        CountDownLatch shortlistStarted = new CountDownLatch(1);
+        when(extractor.extract(anyString()))
+                .thenReturn(QueryFilter.builder().maxPrice(600.0).type("front").minCapacityKg(8).build());
+        when(search.finalResults(anyString(), any(), anyInt(), anyDouble())).thenAnswer(call -> {
+            shortlistStarted.countDown();
+            Thread.sleep(150);
+            return List.of(BOSCH);
+        });
+        when(search.preview(any(), anyInt())).thenAnswer(call -> {
+            assertThat(shortlistStarted.await(5, TimeUnit.SECONDS)).as("shortlist started first").isTrue();
+            Thread.sleep(150);
+            return List.of(ProductSummary.of(BOSCH));
+        });
+        when(answers.explain(anyString(), any(), anyList())).thenReturn("Quiet and within budget.");
+        when(questions.generateCompletion(anyList(), any())).thenReturn(new AssistantMessage("All set!", null));
+        String session = service.startConversation("en").sessionId();
+
+        ConversationTurnResponse turn = reply(session, "front loader, 8kg, under 600 euros");
+
+        assertThat(turn.status()).isEqualTo("completed");
+        assertThat(turn.assistant().text()).isEqualTo("All set!");
+        assertThat(turn.result().explanation()).isEqualTo("Quiet and within budget.");
+        assertThat(turn.result().items()).extracting(ConversationTurnResponse.PreviewItem::id).containsExactly(1L);
+        assertThat(turn.metrics()).containsEntry("finalRetrievals", 1);
+        assertThat((Long) turn.metrics().get("lastTurnMs"))
+                .as("preview and shortlist overlap")
+                .isLessThanOrEqualTo((Long) turn.metrics().get("lastTurnStagesMs"));
+        verify(search, times(1)).finalResults(anyString(), any(), anyInt(), anyDouble());
+    }
+
+    @Test
+    void aPurchaseReplyCompletesWithTheShortlistAndAClosingMessage() {
+        when(extractor.extract("under 600 euros")).thenReturn(QueryFilter.builder().maxPrice(600.0).build());
+        when(extractor.extract("I'll take the Serie 4")).thenReturn(new QueryFilter());
+        when(search.preview(any(), anyInt())).thenReturn(List.of(ProductSummary.of(BOSCH)));
+        when(search.finalResults(anyString(), any(), anyInt(), anyDouble())).thenReturn(List.of(BOSCH));
+        when(answers.explain(anyString(), any(), anyList())).thenReturn("Your pick.");
+        String session = service.startConversation("en").sessionId();
+        reply(session, "under 600 euros");
+
+        ConversationTurnResponse turn = reply(session, "I'll take the Serie 4");
+
+        assertThat(turn.status()).isEqualTo("completed");
+        assertThat(turn.assistant().text()).contains("Bosch Serie 4");
+        assertThat(turn.chips()).isEmpty();
+        assertThat(turn.result().items()).extracting(ConversationTurnResponse.PreviewItem::id).containsExactly(1L);
+        verify(questions, never()).generateCompletion(anyList(), any());
+    }
+
+    @Test
+    void aFailedShortlistSurfacesItsOwnException() {
+        when(extractor.extract(anyString()))
+                .thenReturn(QueryFilter.builder().maxPrice(600.0).type("front").minCapacityKg(8).build());
+        when(search.finalResults(anyString(), any(), anyInt(), anyDouble()))
+                .thenThrow(new IllegalStateException("index unavailable"));
+        when(questions.generateCompletion(anyList(), any())).thenReturn(new AssistantMessage("All set!", null));
+        String session = service.startConversation("en").sessionId();
+
+        assertThatThrownBy(() -> reply(session, "front loader, 8kg, under 600 euros"))
+                .isExactlyInstanceOf(IllegalStateException.class)
+                .hasMessage("index unavailable");
+    }
+
+    @Test
+    void aStreamedTurnSendsTheHeadFirstAndCompletesLikeTheBlockingReply() {
+        when(extractor.extract("under 600 euros")).thenReturn(QueryFilter.builder().maxPrice(600.0).build());
+        when(questions.streamQuestion(any(), any(), any(), anyList(), any(), anyString(), any()))
+                .thenReturn(Flux.just("Front ", "or top load?"));
+        when(questions.hintFor(any(), any())).thenReturn("type");
+        String session = service.startConversation("en").sessionId();
+
+        StreamedTurn turn = service.streamUserReply(session, new UserReplyRequest("under 600 euros", null));
+
+        assertThat(turn.head().status()).isEqualTo("collecting");
+        assertThat(turn.head().assistant()).as("written by the stream").isNull();
+        assertThat(turn.head().chips()).isNotEmpty();
+        String text = String.join("", turn.assistantTokens().collectList().block(Duration.ofSeconds(5)));
+        assertThat(turn.result().join()).isNull();
+        ConversationTurnResponse done = turn.complete().apply(text);
+        assertThat(done.assistant()).isEqualTo(new AssistantMessage("Front or top load?", "type"));
+        assertThat(done.metrics()).containsKeys("lastTurnMs", "lastTurnStagesMs").containsEntry("turnCount", 1);
+        verify(questions, times(1).description("only the opening question is generated whole"))
+                .generateQuestion(any(), any(), any(), anyList(), any(), any(), any());
+    }
+
+    @Test
+    void aStreamedFinishingTurnCompletesOnAnotherThreadWithTheShortlistCounted() throws Exception {
+        when(extractor.extract(anyString()))
+                .thenReturn(QueryFilter.builder().maxPrice(600.0).type("front").minCapacityKg(8).build());
+        when(search.preview(any(), anyInt())).thenReturn(List.of(ProductSummary.of(BOSCH)));
+        when(search.finalResults(anyString(), any(), anyInt(), anyDouble())).thenReturn(List.of(BOSCH));
+        when(answers.explain(anyString(), any(), anyList())).thenReturn("Quiet and within budget.");
+        when(questions.streamCompletion(anyList(), any())).thenReturn(Flux.just("All ", "set!"));
+        String session = service.startConversation("en").sessionId();
+
+        StreamedTurn turn = service.streamUserReply(session, new UserReplyRequest("front loader, 8kg", null));
+        ConversationTurnResponse done = turn.assistantTokens()
+                .publishOn(Schedulers.boundedElastic())
+                .collectList()
+                .map(tokens -> turn.complete().apply(String.join("", tokens)))
+                .toFuture()
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(done.status()).isEqualTo("completed");
+        assertThat(done.assistant().text()).isEqualTo("All set!");
+        assertThat(done.result().items()).extracting(ConversationTurnResponse.PreviewItem::id).containsExactly(1L);
+        assertThat(done.metrics()).containsEntry("finalRetrievals", 1);
+    }
+
+    private ConversationTurnResponse reply(String session, String text) {
+        return service.applyUserReply(session, new UserReplyRequest(text, null));
+    }
+}
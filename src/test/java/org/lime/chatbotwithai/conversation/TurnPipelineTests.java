@@ -0,0 +1,70 @@
+package org.lime.chatbotwithai.conversation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TurnPipelineTests {
+
+    @Test
+    void joinRethrowsTheStageExceptionUnwrapped() {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            TurnPipeline pipeline = new TurnPipeline(pool, new SimpleMeterRegistry());
+            CompletableFuture<String> failed = pipeline.async("explain", () -> {
+                throw new UncheckedIOException(new IOException("model unreachable"));
+            });
+
+            assertThatThrownBy(() -> TurnPipeline.join(failed))
+                    .isExactlyInstanceOf(UncheckedIOException.class)
+                    .hasMessageContaining("model unreachable");
+            assertThatThrownBy(() -> TurnPipeline.join(failed.thenApply(String::length)))
+                    .as("through a dependent stage")
+                    .isExactlyInstanceOf(UncheckedIOException.class);
+            assertThatThrownBy(() -> TurnPipeline.join(CompletableFuture.failedFuture(new Error("fatal"))))
+                    .as("only runtime exceptions are unwrapped")
+                    .isExactlyInstanceOf(CompletionException.class);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void overlappingStagesCostLessWallClockThanTheirSum() {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            TurnPipeline pipeline = new TurnPipeline(pool, registry);
+            CompletableFuture<Integer> shortlist = pipeline.async("final-results", () -> sleep(150));
+            pipeline.run("preview", () -> sleep(150));
+            TurnPipeline.join(shortlist);
+
+            TurnPipeline.Timing timing = pipeline.finish();
+
+            assertThat(timing.stagesMillis()).isGreaterThanOrEqualTo(300);
+            assertThat(timing.criticalPathMillis()).isBetween(150L, timing.stagesMillis() - 1);
+            assertThat(registry.get("conversation.turn.stage").tag("stage", "preview").timer().count()).isEqualTo(1);
+            assertThat(registry.get("conversation.turn").timer().count()).isEqualTo(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static int sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 1;
+    }
+}
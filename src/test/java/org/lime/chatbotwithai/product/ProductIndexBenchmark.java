@@ -0,0 +1,158 @@
+package org.lime.chatbotwithai.product;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the preview query shapes on a synthetic catalog, before and after the normalized key columns and
+ * composite indexes: the old {@code lower(brand) = ?} predicates against a plain table, and the
+ * {@code brand_key = ?} predicates against the indexed schema Hibernate now generates. Prints the H2 plan and
+ * the mean latency of each query. Not part of the regular build; run it explicitly with
+ * {@code mvn test -Dtest=ProductIndexBenchmark [-Dbenchmark.rows=200000]}.
+ */
+class ProductIndexBenchmark {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 200_000);
+    private static final int ITERATIONS = 200;
+    private static final String[] BRANDS = {"Bosch", "Samsung", "LG", "Whirlpool", "Beko", "Brandt", "Miele",
+            "Electrolux", "AEG", "Candy", "Siemens", "Haier", "Hisense", "Indesit", "Hotpoint", "Sharp"};
+    private static final String[] TYPES = {"front", "top"};
+
+    // Several parameter sets per shape, cycled per execution: H2 reuses the previous result when a prepared
+    // query runs again with identical parameters, which would hide the scan entirely.
+    private record Shape(String name, String legacySql, String indexedSql, List<Object[]> params) {
+    }
+
+    private static final List<Shape> SHAPES = List.of(
+            new Shape("type + price",
+                    "SELECT id FROM product WHERE lower(type) = ? ORDER BY price DESC, id LIMIT 3",
+                    "SELECT id FROM product WHERE type_key = ? ORDER BY price DESC, id LIMIT 3",
+                    List.of(new Object[]{"top"}, new Object[]{"front"})),
+            new Shape("brand + type + price range",
+                    "SELECT id FROM product WHERE lower(brand) = ? AND lower(type) = ? AND price BETWEEN ? AND ?"
+                            + " ORDER BY price DESC, id LIMIT 3",
+                    "SELECT id FROM product WHERE brand_key = ? AND type_key = ? AND price BETWEEN ? AND ?"
+                            + " ORDER BY price DESC, id LIMIT 3",
+                    List.of(new Object[]{"miele", "front", 400.0, 900.0},
+                            new Object[]{"bosch", "top", 300.0, 700.0},
+                            new Object[]{"lg", "front", 500.0, 1200.0})),
+            new Shape("capacity + price",
+                    "SELECT id FROM product WHERE capacity_kg BETWEEN ? AND ? AND price <= ?"
+                            + " ORDER BY price DESC, id LIMIT 3",
+                    "SELECT id FROM product WHERE capacity_kg BETWEEN ? AND ? AND price <= ?"
+                            + " ORDER BY price DESC, id LIMIT 3",
+                    List.of(new Object[]{9, 9, 600.0}, new Object[]{7, 8, 500.0}, new Object[]{10, 12, 900.0}))
+    );
+
+    @Test
+    void comparePlansAndLatency() throws SQLException {
+        try (Connection legacy = DriverManager.getConnection("jdbc:h2:mem:bench_legacy;MODE=PostgreSQL");
+             Connection indexed = DriverManager.getConnection("jdbc:h2:mem:bench_indexed;MODE=PostgreSQL")) {
+            createSchema(legacy, false);
+            createSchema(indexed, true);
+            populate(legacy);
+            populate(indexed);
+            System.out.printf("Synthetic catalog: %,d rows, %d iterations per query%n", ROWS, ITERATIONS);
+            for (Shape shape : SHAPES) {
+                System.out.println("== " + shape.name());
+                report("lower() / no index", legacy, shape.legacySql(), shape.params());
+                report("key columns / composite index", indexed, shape.indexedSql(), shape.params());
+            }
+        }
+    }
+
+    private static void createSchema(Connection connection, boolean withIndexes) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    CREATE TABLE product (id BIGINT PRIMARY KEY, brand VARCHAR(255), model VARCHAR(255),
+                        type VARCHAR(255), brand_key VARCHAR(255), type_key VARCHAR(255), price DOUBLE PRECISION,
+                        capacity_kg INTEGER, width_cm DOUBLE PRECISION, height_cm DOUBLE PRECISION,
+                        depth_cm DOUBLE PRECISION, description VARCHAR(1000))
+                    """);
+            if (withIndexes) {
+                statement.execute("CREATE INDEX idx_product_type_price ON product (type_key, price)");
+                statement.execute("CREATE INDEX idx_product_brand_type_price ON product (brand_key, type_key, price)");
+                statement.execute("CREATE INDEX idx_product_capacity_price ON product (capacity_kg, price)");
+            }
+        }
+    }
+
+    private static void populate(Connection connection) throws SQLException {
+        Random random = new Random(42);
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO product VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int id = 1; id <= ROWS; id++) {
+                String brand = BRANDS[random.nextInt(BRANDS.length)];
+                String type = TYPES[random.nextInt(TYPES.length)];
+                insert.setLong(1, id);
+                insert.setString(2, brand);
+                insert.setString(3, "M-" + id);
+                insert.setString(4, type);
+                insert.setString(5, Product.normalizeKey(brand));
+                insert.setString(6, Product.normalizeKey(type));
+                insert.setDouble(7, 250 + random.nextInt(1300));
+                insert.setInt(8, 6 + random.nextInt(7));
+                insert.setDouble(9, random.nextBoolean() ? 60 : 40);
+                insert.setDouble(10, 84 + random.nextInt(8));
+                insert.setDouble(11, 55 + random.nextInt(10));
+                insert.setString(12, "Synthetic washing machine " + id);
+                insert.addBatch();
+                if (id % 5_000 == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+    }
+
+    private static void report(String label, Connection connection, String sql, List<Object[]> params)
+            throws SQLException {
+        try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+            bind(explain, params.get(0));
+            try (ResultSet plan = explain.executeQuery()) {
+                plan.next();
+                System.out.println("  " + label + " plan: " + plan.getString(1).replaceAll("\\s+", " "));
+            }
+        }
+        try (PreparedStatement query = connection.prepareStatement(sql)) {
+            for (int i = 0; i < 20; i++) {
+                drain(query, params.get(i % params.size()));
+            }
+            long started = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                drain(query, params.get(i % params.size()));
+            }
+            double millis = (System.nanoTime() - started) / 1_000_000.0 / ITERATIONS;
+            System.out.printf("  %s mean: %.3f ms%n", label, millis);
+        }
+    }
+
+    private static void bind(PreparedStatement statement, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            statement.setObject(i + 1, params[i]);
+        }
+    }
+
+    private static void drain(PreparedStatement query, Object[] params) throws SQLException {
+        bind(query, params);
+        try (ResultSet rs = query.executeQuery()) {
+            while (rs.next()) {
+                rs.getLong(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package org.lime.chatbotwithai.product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lime.chatbotwithai.ai.EmbeddingCircuitBreaker;
+import org.lime.chatbotwithai.ai.HybridFusion;
+import org.lime.chatbotwithai.ai.ProductEmbeddingStore;
+import org.lime.chatbotwithai.ai.QueryEmbeddingCache;
+import org.lime.chatbotwithai.ai.QueryFilter;
+import org.lime.chatbotwithai.ai.SemanticRerankService;
+import org.lime.chatbotwithai.ai.SemanticSearchService;
+import org.lime.chatbotwithai.ai.StubEmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.lime.chatbotwithai.product.ProductSpec.*;
+
+@SpringBootTest
+class ProductSearchServiceTests {
+
+    private static final List<QueryFilter> FILTERS = List.of(
+            new QueryFilter(),
+            QueryFilter.builder().type("front").maxPrice(600.0).build(),
+            QueryFilter.builder().brand("BOSCH").build(),
+            QueryFilter.builder().brand("Unknown").build(),
+            QueryFilter.builder().type("top").minCapacityKg(7).maxCapacityKg(10).build(),
+            QueryFilter.builder().minPrice(400.0).maxPrice(700.0).minCapacityKg(8).build(),
+            QueryFilter.builder().widthCm(60.0).heightCm(85.0).depthCm(55.0).build(),
+            QueryFilter.builder().type("front").widthCm(40.0).build(),
+            // Stray whitespace, as an extracted filter or a feed value may carry it.
+            QueryFilter.builder().brand("Bosch ").type(" FRONT").build()
+    );
+
+    @Autowired
+    ProductRepository repository;
+
+    @Autowired
+    SemanticRerankService reranker;
+
+    @Autowired
+    SemanticSearchService semanticSearch;
+
+    @Autowired
+    HybridFusion hybrid;
+
+    @Autowired
+    CatalogSnapshots snapshots;
+
+    @Test
+    void columnarPreviewMatchesSpecificationPreview() {
+        ProductSearchService jpa = new ProductSearchService(snapshots, repository, reranker, semanticSearch, hybrid, uncached(), "jpa");
+        ProductSearchService columnar = new ProductSearchService(snapshots, repository, reranker, semanticSearch, hybrid, uncached(), "columnar");
+        for (QueryFilter filter : FILTERS) {
+            List<ProductSummary> expected = jpa.preview(filter, 5);
+            assertThat(columnar.preview(filter, 5))
+                    .as("preview %s", filter)
+                    .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void columnarSelectMatchesSpecificationWithDimensions() {
+        ColumnarProductIndex index = ColumnarProductIndex.build(repository.findAll());
+        for (QueryFilter filter : FILTERS) {
+            Specification<Product> spec = Specification.where(brandEquals(filter.getBrand()))
+                    .and(typeEquals(filter.getType()))
+                    .and(priceBetween(filter.getMinPrice(), filter.getMaxPrice()))
+                    .and(capacityBetween(filter.getMinCapacityKg(), filter.getMaxCapacityKg()));
+            Specification<Product> dimensions = dimensionsCloseTo(
+                    filter.getWidthCm(), filter.getHeightCm(), filter.getDepthCm(), 1.0);
+            if (dimensions != null) {
+                spec = spec.and(dimensions);
+            }
+            List<Product> expected = repository.findAll(spec,
+                    PageRequest.of(0, 40, ProductSearchService.PRICE_DESCENDING)).getContent();
+            assertThat(ids(index.select(filter, 1.0, 40)))
+                    .as("select %s", filter)
+                    .isEqualTo(ids(expected));
+        }
+    }
+
+    @Test
+    void pagedCandidatesMatchAcrossEnginesAndRespectTheCap() {
+        ProductSearchService jpa = new ProductSearchService(snapshots, repository, reranker, semanticSearch, hybrid, uncached(), "jpa");
+        ProductSearchService columnar = new ProductSearchService(snapshots, repository, reranker, semanticSearch, hybrid, uncached(), "columnar");
+        for (QueryFilter filter : FILTERS) {
+            List<Long> paged = ids(jpa.candidates(filter, 1.0, 30));
+            assertThat(paged).as("candidates %s", filter).hasSizeLessThanOrEqualTo(30);
+            assertThat(ids(columnar.candidates(filter, 1.0, 30))).as("candidates %s", filter).isEqualTo(paged);
+        }
+        assertThat(ids(jpa.candidates(null, 1.0, 30))).isEqualTo(ids(columnar.candidates(null, 1.0, 30)));
+        assertThat(jpa.finalResults("quiet washer", null, 3, 1.0)).hasSize(3);
+    }
+
+    @Test
+    void nearestMatchesRankCloserAttributesFirst() {
+        ColumnarProductIndex index = ColumnarProductIndex.build(repository.findAll());
+        QueryFilter filter = QueryFilter.builder().brand("Miele").type("top").maxPrice(900.0).build();
+        assertThat(index.select(filter, 1.0, 40)).isEmpty();
+        List<Product> nearest = index.nearestMatches(filter, 5);
+        assertThat(nearest).hasSize(5);
+        assertThat(nearest.get(0).getId()).isEqualTo(25L);
+    }
+
+    @Test
+    void nearestByDimensionsMatchesBruteForceDistanceOrder() {
+        List<Product> catalog = repository.findAll();
+        ColumnarProductIndex index = ColumnarProductIndex.build(catalog);
+        QueryFilter filter = QueryFilter.builder().type("front").widthCm(58.0).heightCm(88.0).depthCm(50.0).build();
+        List<Long> expected = catalog.stream()
+                .filter(p -> "front".equals(p.getType()))
+                .sorted(Comparator.comparingDouble((Product p) -> squaredDistance(p, 58, 88, 50))
+                        .thenComparing(ColumnarProductIndex.PRICE_ORDER))
+                .limit(6)
+                .map(Product::getId)
+                .toList();
+        assertThat(index.select(filter, 1.0, 40)).isEmpty();
+        assertThat(ids(index.nearestByDimensions(filter, 6))).isEqualTo(expected);
+    }
+
+    @Test
+    void facetCountsMatchTheSelectedRows() {
+        ColumnarProductIndex index = ColumnarProductIndex.build(repository.findAll());
+        for (QueryFilter filter : FILTERS) {
+            List<Product> matches = index.select(filter, 1.0, Integer.MAX_VALUE);
+            ProductFacets facets = index.facets(filter, 1.0, 100, Integer.MAX_VALUE);
+            assertThat(facets.matches()).as("matches %s", filter).isEqualTo(matches.size());
+            assertThat(facets.brands().stream().mapToInt(ProductFacets.ValueCount::count).sum())
+                    .isEqualTo(matches.size());
+            for (ProductFacets.CapacityCount capacity : facets.capacities()) {
+                assertThat(matches.stream().filter(p -> p.getCapacityKg() == capacity.capacityKg()).count())
+                        .as("capacity %s in %s", capacity.capacityKg(), filter)
+                        .isEqualTo(capacity.count());
+            }
+            for (ProductFacets.PriceBucketCount bucket : facets.priceBuckets()) {
+                assertThat(matches.stream()
+                        .filter(p -> p.getPrice() >= bucket.fromEur() && p.getPrice() < bucket.toEur())
+                        .count())
+                        .isEqualTo(bucket.count());
+            }
+        }
+    }
+
+    @Test
+    void snapshotsDoNotShareTheLoadedEntities() {
+        List<Product> loaded = repository.findAll();
+        CatalogSnapshot snapshot = CatalogSnapshot.build(1, loaded);
+        Product entity = loaded.get(0);
+        double price = entity.getPrice();
+
+        entity.setPrice(price + 1);
+        assertThat(snapshot.product(entity.getId())).isNotSameAs(entity);
+        assertThat(snapshot.product(entity.getId()).getPrice()).isEqualTo(price);
+    }
+
+    @Test
+    void previewIsServedFromCacheUntilCatalogChanges() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CatalogSnapshots local = new CatalogSnapshots(repository, event -> { });
+        ProductSearchService service = new ProductSearchService(local, repository, reranker, semanticSearch, hybrid,
+                new SearchResultCache(registry, 100, Duration.ofMinutes(1)), "columnar");
+        QueryFilter filter = QueryFilter.builder().type("front").maxPrice(600.0).minCapacityKg(8).build();
+        QueryFilter equivalent = QueryFilter.builder().type(" FRONT ").maxPrice(600.0).minCapacityKg(8)
+                .brandFlexible(true).build();
+
+        List<ProductSummary> first = service.preview(filter, 3);
+        assertThat(service.preview(equivalent, 3)).isEqualTo(first);
+        long version = local.current().version();
+        assertThat(local.refresh().version()).isEqualTo(version + 1);
+        assertThat(service.preview(filter, 3)).isEqualTo(first);
+
+        assertThat(registry.get("cache.gets").tag("cache", "product.preview").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1.0);
+        assertThat(registry.get("cache.gets").tag("cache", "product.preview").tag("result", "miss")
+                .functionCounter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void jpaEngineAnswersAreNotCachedUnderASnapshotVersion() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ProductSearchService jpa = new ProductSearchService(snapshots, repository, reranker, semanticSearch, hybrid,
+                new SearchResultCache(registry, 100, Duration.ofMinutes(1)), "jpa");
+        QueryFilter filter = QueryFilter.builder().type("front").maxPrice(600.0).build();
+
+        assertThat(jpa.preview(filter, 3)).isEqualTo(jpa.preview(filter, 3));
+        jpa.finalResults("quiet", filter, 3, 1.0);
+
+        for (String cache : List.of("product.preview", "product.shortlist")) {
+            assertThat(registry.get("cache.size").tag("cache", cache).gauge().value()).as(cache).isZero();
+        }
+    }
+
+    @Test
+    void partlyEmbeddedMatchesAreMergedWithCandidatesAndNotCached(@TempDir Path directory) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CatalogSnapshots local = new CatalogSnapshots(repository, event -> { });
+        EmbeddingModel model = new StubEmbeddingModel(StubEmbeddingModel::hashed);
+        EmbeddingCircuitBreaker breaker = new EmbeddingCircuitBreaker(registry, 5, Duration.ofSeconds(30),
+                Duration.ofSeconds(5), Duration.ofSeconds(10), 2, 16);
+        QueryEmbeddingCache queries = new QueryEmbeddingCache(model, breaker, registry, DataSize.ofMegabytes(1),
+                Duration.ofMinutes(5));
+        ProductEmbeddingStore store = new ProductEmbeddingStore(directory.resolve("embeddings.bin"));
+        SemanticRerankService localReranker = new SemanticRerankService(model, queries, store, hybrid, breaker,
+                16, "auto", 4096, Duration.ofSeconds(5));
+        SemanticSearchService localSearch = new SemanticSearchService(local, store, queries, breaker,
+                16, 100, 64, 4, 1000, "none", 4);
+        ProductSearchService service = new ProductSearchService(local, repository, localReranker, localSearch, hybrid,
+                new SearchResultCache(registry, 100, Duration.ofMinutes(1)), "columnar");
+        QueryFilter filter = QueryFilter.builder().type("front").build();
+        // Only two of the matching products have a vector, as while warm-up is still running.
+        localReranker.refreshEmbeddings(local.current().index().select(filter, 1.0, 2));
+        awaitUntil(() -> !semanticHits(localSearch, local, filter).products().isEmpty(), "index synced");
+
+        assertThat(service.finalResults("quiet washer", filter, 5, 1.0)).hasSize(5);
+        // The rerank embedded the remaining candidates; once they are indexed coverage is complete and the answer
+        // cacheable.
+        awaitUntil(() -> semanticHits(localSearch, local, filter).complete(), "complete coverage");
+        assertThat(service.finalResults("quiet washer", filter, 5, 1.0)).hasSize(5);
+        assertThat(service.finalResults("quiet washer", filter, 5, 1.0)).hasSize(5);
+
+        assertThat(registry.get("cache.gets").tag("cache", "product.shortlist").tag("result", "miss")
+                .functionCounter().count()).isEqualTo(2.0);
+        assertThat(registry.get("cache.gets").tag("cache", "product.shortlist").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void fallbackRankingsAreNotCachedPastTheEmbeddingServiceRecovering(@TempDir Path directory) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CatalogSnapshots local = new CatalogSnapshots(repository, event -> { });
+        AtomicBoolean down = new AtomicBoolean();
+        EmbeddingModel model = new StubEmbeddingModel(text -> {
+            if (down.get()) {
+                throw new IllegalStateException("embedding service down");
+            }
+            return StubEmbeddingModel.hashed(text);
+        });
+        // The threshold keeps the breaker closed, so only the per-request fallback is exercised.
+        EmbeddingCircuitBreaker breaker = new EmbeddingCircuitBreaker(registry, 100, Duration.ofSeconds(30),
+                Duration.ofSeconds(5), Duration.ofSeconds(10), 2, 16);
+        QueryEmbeddingCache queries = new QueryEmbeddingCache(model, breaker, registry, DataSize.ofMegabytes(1),
+                Duration.ofMinutes(5));
+        ProductEmbeddingStore store = new ProductEmbeddingStore(directory.resolve("embeddings.bin"));
+        SemanticRerankService localReranker = new SemanticRerankService(model, queries, store, hybrid, breaker,
+                16, "auto", 4096, Duration.ofSeconds(5));
+        SemanticSearchService localSearch = new SemanticSearchService(local, store, queries, breaker,
+                16, 100, 64, 4, 1000, "none", 4);
+        ProductSearchService service = new ProductSearchService(local, repository, localReranker, localSearch, hybrid,
+                new SearchResultCache(registry, 100, Duration.ofMinutes(1)), "columnar");
+        ProductSearchService uncachedService = new ProductSearchService(local, repository, localReranker,
+                localSearch, hybrid, uncached(), "columnar");
+        QueryFilter filter = QueryFilter.builder().type("front").build();
+        localReranker.refreshEmbeddings(local.current().index().select(filter, 1.0, Integer.MAX_VALUE));
+        awaitUntil(() -> semanticHits(localSearch, local, filter).complete(), "complete coverage");
+
+        down.set(true);
+        List<Long> fallback = ids(service.finalResults("steam quiet", filter, 5, 1.0));
+        down.set(false);
+        List<Long> recovered = ids(service.finalResults("steam quiet", filter, 5, 1.0));
+
+        List<Long> semantic = ids(uncachedService.finalResults("steam quiet", filter, 5, 1.0));
+        assertThat(fallback).isNotEqualTo(semantic);
+        assertThat(recovered).isEqualTo(semantic);
+        assertThat(registry.get("cache.gets").tag("cache", "product.shortlist").tag("result", "hit")
+                .functionCounter().count()).isZero();
+    }
+
+    private static SemanticSearchService.Hits semanticHits(SemanticSearchService search, CatalogSnapshots snapshots,
+                                                           QueryFilter filter) {
+        return search.search(snapshots.current(), "quiet washer", filter, 1.0, 5,
+                SemanticSearchService.FilterMode.PRE);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition, String what) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail(what + " not reached within 5 s");
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static SearchResultCache uncached() {
+        return new SearchResultCache(new SimpleMeterRegistry(), 0, Duration.ZERO);
+    }
+
+    private static double squaredDistance(Product p, double w, double h, double d) {
+        double dw = p.getWidthCm() - w;
+        double dh = p.getHeightCm() - h;
+        double dd = p.getDepthCm() - d;
+        return dw * dw + dh * dh + dd * dd;
+    }
+
+    private static List<Long> ids(List<Product> products) {
+        return products.stream().map(Product::getId).toList();
+    }
+}
@@ -0,0 +1,48 @@
+package org.lime.chatbotwithai.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdminTokenFilterTests {
+
+    @Test
+    void adminEndpointsNeedTheConfiguredBearerToken() throws Exception {
+        AdminTokenFilter filter = new AdminTokenFilter("s3cret");
+
+        assertThat(status(filter, "/api/admin/catalog/import", null)).isEqualTo(401);
+        assertThat(status(filter, "/api/admin/catalog/semantic-recall", "Bearer wrong")).isEqualTo(401);
+        assertThat(status(filter, "/api/admin/catalog/import", "Bearer s3cret")).isEqualTo(200);
+        assertThat(status(filter, "/api/search", null)).isEqualTo(200);
+    }
+
+    @Test
+    void adminPathsAreMatchedTheWayTheRouterSeesThem() throws Exception {
+        AdminTokenFilter filter = new AdminTokenFilter("s3cret");
+
+        assertThat(status(filter, "/api/admin;x/catalog/import", null)).isEqualTo(401);
+        assertThat(status(filter, "/api/%61dmin/catalog/import", null)).isEqualTo(401);
+        assertThat(status(filter, "/api//admin/catalog/semantic-recall", null)).isEqualTo(401);
+    }
+
+    @Test
+    void adminEndpointsAreOffWithoutAToken() throws Exception {
+        AdminTokenFilter filter = new AdminTokenFilter("");
+
+        assertThat(status(filter, "/api/admin/catalog/import", "Bearer ")).isEqualTo(403);
+        assertThat(status(filter, "/api/conversations", null)).isEqualTo(200);
+    }
+
+    private static int status(AdminTokenFilter filter, String path, String authorization) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        if (authorization != null) {
+            request.addHeader("Authorization", authorization);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+}
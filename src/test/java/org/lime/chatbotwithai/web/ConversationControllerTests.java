@@ -0,0 +1,96 @@
+package org.lime.chatbotwithai.web;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.Test;
+import org.lime.chatbotwithai.conversation.ConversationService;
+import org.lime.chatbotwithai.conversation.ConversationTurnResponse;
+import org.lime.chatbotwithai.conversation.ConversationTurnResponse.AssistantMessage;
+import org.lime.chatbotwithai.conversation.ConversationTurnResponse.ResultBlock;
+import org.lime.chatbotwithai.conversation.StreamedTurn;
+import org.lime.chatbotwithai.conversation.UserReplyRequest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class ConversationControllerTests {
+
+    private static final Pattern EVENT = Pattern.compile("^event:(\\w+)$", Pattern.MULTILINE);
+
+    private final ConversationService service = mock(ConversationService.class);
+    private final MockMvc mvc = MockMvcBuilders
+            .standaloneSetup(new ConversationController(service, Duration.ofSeconds(10)))
+            .build();
+
+    @Test
+    void streamSendsTheTurnThenTokensThenTheResultThenTheCompleteResponse() throws Exception {
+        ConversationTurnResponse head = ConversationTurnResponse.builder().sessionId("s1").status("completed").build();
+        ResultBlock result = new ResultBlock("Quiet and within budget.", List.of());
+        CompletableFuture<ResultBlock> shortlist = new CompletableFuture<>();
+        // The shortlist finishes after the message, as when reranking outlasts the closing sentence.
+        Flux<String> tokens = Flux.just("All ", "set!")
+                .concatWith(Mono.fromRunnable(() -> shortlist.complete(result)));
+        when(service.streamUserReply(eq("s1"), any())).thenReturn(new StreamedTurn(head, tokens, shortlist,
+                text -> head.toBuilder().assistant(new AssistantMessage(text, null)).result(result).build()));
+
+        MvcResult started = mvc.perform(post("/api/conversations/s1/messages/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"message\":\"front loader, 8kg, under 600 euros\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        started.getAsyncResult(5_000);
+        String body = started.getResponse().getContentAsString();
+
+        assertThat(events(body)).containsExactly("turn", "token", "token", "result", "done");
+        assertThat(body).contains("{\"text\":\"All \"}").contains("\"text\":\"All set!\"");
+    }
+
+    @Test
+    void aDisconnectedClientStopsTheGeneration() throws Exception {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        ConversationTurnResponse head = ConversationTurnResponse.builder().sessionId("s1").status("collecting").build();
+        Flux<String> endless = Flux.<String>never().doOnCancel(() -> cancelled.set(true));
+        when(service.streamUserReply(eq("s1"), any())).thenReturn(new StreamedTurn(head, endless,
+                CompletableFuture.completedFuture(null), text -> head));
+
+        MvcResult started = mvc.perform(post("/api/conversations/s1/messages/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"message\":\"under 600 euros\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(events(started.getResponse().getContentAsString())).containsExactly("turn");
+        assertThat(cancelled).isFalse();
+
+        MockAsyncContext context = (MockAsyncContext) started.getRequest().getAsyncContext();
+        for (AsyncListener listener : context.getListeners()) {
+            listener.onError(new AsyncEvent(context, new IOException("Broken pipe")));
+        }
+
+        assertThat(cancelled).isTrue();
+    }
+
+    private static List<String> events(String body) {
+        Matcher matcher = EVENT.matcher(body);
+        return matcher.results().map(match -> match.group(1)).toList();
+    }
+}